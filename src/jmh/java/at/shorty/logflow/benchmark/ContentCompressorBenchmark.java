@@ -0,0 +1,69 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.data.ContentCodec;
+import at.shorty.logflow.ingest.data.ContentCompressor;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentCompressorBenchmark {
+
+    private static final int CONTENTS = 4096;
+    private static final String[] TEMPLATES = {
+            "Handled request GET /api/v1/users/%d in %d ms (status=200, bytes=%d, agent=Mozilla/5.0)",
+            "Connection to database pool refused after %d retries, backing off for %d ms (node=db-%d)",
+            "Scheduled job cleanup-expired-sessions finished, removed %d sessions in %d ms (shard=%d)",
+            "User %d logged in from 10.0.%d.%d using password authentication, session created",
+            "Request %d failed: java.net.SocketTimeoutException: Read timed out after %d ms\n\tat java.base/sun.nio.ch.NioSocketImpl.timedRead(NioSocketImpl.java:288)\n\tat java.base/sun.nio.ch.NioSocketImpl.implRead(NioSocketImpl.java:314)\n\tat java.base/java.net.Socket$SocketInputStream.read(Socket.java:1099)\n\tat at.shorty.logflow.client.LogClient.send(LogClient.java:%d)"
+    };
+
+    @Param({"NONE", "LZ4", "ZSTD"})
+    private ContentCodec codec;
+
+    private ContentCompressor contentCompressor;
+    private String[] contents;
+    private int next;
+
+    @Setup
+    public void setup() {
+        contentCompressor = new ContentCompressor(null, codec);
+        contents = new String[CONTENTS];
+        var random = ThreadLocalRandom.current();
+        for (int i = 0; i < CONTENTS; i++) {
+            contents[i] = String.format(TEMPLATES[i % TEMPLATES.length], random.nextInt(100_000), random.nextInt(1000), random.nextInt(100_000));
+        }
+        for (int i = 0; i < CONTENTS * 8; i++) {
+            contentCompressor.compress("cluster_5", contents[i % CONTENTS]);
+        }
+        contentCompressor.train();
+    }
+
+    @TearDown
+    public void tearDown() {
+        long rawBytes = 0;
+        long storedBytes = 0;
+        for (var content : contents) {
+            var compressed = contentCompressor.compress("cluster_5", content);
+            var raw = content.getBytes(StandardCharsets.UTF_8).length;
+            rawBytes += raw;
+            storedBytes += compressed == null ? raw : compressed.length;
+        }
+        System.out.println();
+        System.out.printf("codec=%s ratio=%.2f dictionaries=%d%n", codec, (double) rawBytes / storedBytes, contentCompressor.getDictionaryCount());
+        contentCompressor.close();
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return contentCompressor.compress("cluster_5", contents[next++ & (CONTENTS - 1)]);
+    }
+
+}
@@ -0,0 +1,46 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.util.DataCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class DataCacheBenchmark {
+
+    private static final int KEYS = 64;
+
+    private DataCache<String, String> dataCache;
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        dataCache = new DataCache<>(10_000, Duration.ofSeconds(5), Duration.ofMinutes(1), Duration.ofSeconds(1), ForkJoinPool.commonPool()) {
+            @Override
+            public String getData(String reference) {
+                Blackhole.consumeCPU(1000);
+                return reference;
+            }
+        };
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "token-" + i;
+        }
+    }
+
+    @Benchmark
+    public String get() {
+        return dataCache.get(keys[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+}
@@ -0,0 +1,56 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.IngestHandler;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.ingest.packet.PacketHandler;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestHandlerBenchmark {
+
+    private IngestHandler ingestHandler;
+    private InPacketLog validPacket;
+    private InPacketLog invalidPacket;
+
+    @Setup
+    public void setup() {
+        ingestHandler = new IngestHandler(new PacketHandler(), null, null, null, null, new LogflowMetrics(), 10, Set.of(), StorageMode.PLAIN);
+        validPacket = packet("cluster_5", new String[]{"node", "status", "running"});
+        invalidPacket = packet("cluster-5", new String[]{"node", "status", "running"});
+    }
+
+    @Benchmark
+    public OutPacketLogResponse validateValid() {
+        return ingestHandler.validatePacketAndReturnResponse(validPacket);
+    }
+
+    @Benchmark
+    public OutPacketLogResponse validateInvalid() {
+        return ingestHandler.validatePacketAndReturnResponse(invalidPacket);
+    }
+
+    private static InPacketLog packet(String context, String[] tags) {
+        var inPacketLog = new InPacketLog();
+        inPacketLog.setTimestamp(new Date(1691572414000L));
+        inPacketLog.setLevel(Level.INFO);
+        inPacketLog.setSource("node-1");
+        inPacketLog.setContext(context);
+        inPacketLog.setTags(tags);
+        inPacketLog.setContent("Node 1 is running");
+        return inPacketLog;
+    }
+
+}
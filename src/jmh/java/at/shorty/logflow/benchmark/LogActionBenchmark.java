@@ -0,0 +1,102 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import at.shorty.logflow.ingest.data.LogAction;
+import at.shorty.logflow.ingest.data.LogDictionary;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogActionBenchmark {
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    @Param({"PLAIN", "DICTIONARY"})
+    private StorageMode storageMode;
+
+    private HikariConnectionPool connectionPool;
+    private LogAction logAction;
+    private List<InPacketLog> batch;
+
+    @Setup
+    public void setup() throws SQLException {
+        connectionPool = new HikariConnectionPool("jdbc:h2:mem:logflow_benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", 2);
+        try (var connection = connectionPool.getConnection(); var statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS logs (" +
+                    "id BIGINT NOT NULL AUTO_INCREMENT, " +
+                    "time_stamp TIMESTAMP NOT NULL, " +
+                    "source VARCHAR(255) NOT NULL, " +
+                    "source_ip VARCHAR(46) NOT NULL, " +
+                    "context VARCHAR(255) NOT NULL, " +
+                    "tags VARCHAR(4096) NOT NULL, " +
+                    "metadata TEXT, " +
+                    "level VARCHAR(15) NOT NULL, " +
+                    "content TEXT, " +
+                    "content_blob BLOB, " +
+                    "PRIMARY KEY (id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS log_dictionary (" +
+                    "id INT NOT NULL AUTO_INCREMENT, " +
+                    "kind TINYINT NOT NULL, " +
+                    "name VARCHAR(255) NOT NULL, " +
+                    "PRIMARY KEY (id), " +
+                    "UNIQUE KEY log_dictionary_kind_name (kind, name))");
+            statement.execute("CREATE TABLE IF NOT EXISTS logs_dict (" +
+                    "id BIGINT NOT NULL AUTO_INCREMENT, " +
+                    "time_stamp TIMESTAMP NOT NULL, " +
+                    "source_id INT NOT NULL, " +
+                    "source_ip VARCHAR(46) NOT NULL, " +
+                    "context_id INT NOT NULL, " +
+                    "metadata TEXT, " +
+                    "level TINYINT NOT NULL, " +
+                    "content TEXT, " +
+                    "content_blob BLOB, " +
+                    "PRIMARY KEY (id))");
+            statement.execute("CREATE TABLE IF NOT EXISTS logs_dict_tags (" +
+                    "tag_id INT NOT NULL, " +
+                    "log_id BIGINT NOT NULL, " +
+                    "PRIMARY KEY (tag_id, log_id), " +
+                    "KEY logs_dict_tags_log (log_id, tag_id))");
+        }
+        logAction = new LogAction(connectionPool, storageMode, new LogDictionary());
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            var inPacketLog = new InPacketLog();
+            inPacketLog.setTimestamp(new Date());
+            inPacketLog.setLevel(Level.INFO);
+            inPacketLog.setSource("node-1");
+            inPacketLog.setSourceIp("127.0.0.1");
+            inPacketLog.setContext("cluster_5");
+            inPacketLog.setTags(new String[]{"node", "status"});
+            inPacketLog.setContent("Node 1 is running");
+            batch.add(inPacketLog);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        connectionPool.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void log() throws SQLException {
+        for (int i = 0; i < 100 / batchSize; i++) {
+            logAction.log(batch);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.source.IngestSource;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LogflowMetricsBenchmark {
+
+    private LogflowMetrics metrics;
+
+    @Setup
+    public void setup() {
+        metrics = new LogflowMetrics();
+    }
+
+    @Benchmark
+    public void recordLatency() {
+        metrics.getParseLatency().record(12_345);
+    }
+
+    @Benchmark
+    public void recordAccepted() {
+        metrics.accepted(IngestSource.Type.SOCKET, "cluster_5");
+    }
+
+}
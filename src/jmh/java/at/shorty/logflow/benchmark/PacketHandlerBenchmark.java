@@ -0,0 +1,40 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.packet.PacketHandler;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PacketHandlerBenchmark {
+
+    private static final String JSON = "{\"timestamp\":1691572414000,\"level\":\"INFO\",\"source\":\"node-1\",\"content\":\"Tm9kZSAxIGlzIHJ1bm5pbmc=\",\"context\":\"cluster_5\",\"tags\":[\"node\",\"status\",\"running\"],\"metadata\":\"healthcheck:ok\"}";
+
+    private PacketHandler packetHandler;
+    private byte[] jsonBytes;
+
+    @Setup
+    public void setup() {
+        packetHandler = new PacketHandler();
+        jsonBytes = JSON.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public InPacketLog handleJsonInput() throws IOException {
+        return packetHandler.handleJsonInput(JSON, InPacketLog.class);
+    }
+
+    @Benchmark
+    public InPacketLog handleLogInput() throws IOException {
+        return packetHandler.handleLogInput(jsonBytes, 0, jsonBytes.length);
+    }
+
+}
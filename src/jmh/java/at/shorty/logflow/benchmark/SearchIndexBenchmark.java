@@ -0,0 +1,97 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.search.SearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchIndexBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int PRELOADED_DOCUMENTS = 250_000;
+    private static final String[] WORDS = {"node", "cluster", "started", "stopped", "timeout", "connection", "refused", "request", "handled", "error", "retry", "disk"};
+
+    private Path directory;
+    private SearchIndex searchIndex;
+    private List<InPacketLog> batch;
+    private long nextId;
+    private List<String> terms;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("logflow-search-benchmark");
+        searchIndex = new SearchIndex(directory, 0);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            var content = new StringBuilder();
+            for (int j = 0; j < 12; j++) {
+                content.append(WORDS[(i * 7 + j * 3) % WORDS.length]).append(' ');
+            }
+            content.append("request-").append(i);
+            var inPacketLog = new InPacketLog();
+            inPacketLog.setTimestamp(new Date());
+            inPacketLog.setLevel(Level.INFO);
+            inPacketLog.setSource("node-" + (i % 4));
+            inPacketLog.setSourceIp("127.0.0.1");
+            inPacketLog.setContext("cluster_5");
+            inPacketLog.setTags(new String[]{"node", "status"});
+            inPacketLog.setContent(content.toString());
+            batch.add(inPacketLog);
+        }
+        terms = SearchIndex.parseQuery("timeout connection tag:node");
+        for (int i = 0; i < PRELOADED_DOCUMENTS / BATCH_SIZE; i++) {
+            index();
+        }
+        while (searchIndex.stats().segments() < PRELOADED_DOCUMENTS / 100_000) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        System.out.println();
+        System.out.println(searchIndex.stats());
+        searchIndex.close();
+        try (var files = Files.walk(directory)) {
+            for (var path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void index() {
+        var ids = new long[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            ids[i] = ++nextId;
+        }
+        searchIndex.add(ids, batch);
+    }
+
+    @Benchmark
+    public long[] search() {
+        return searchIndex.search(terms, null, null, 0, 1000);
+    }
+
+    @Benchmark
+    public long[] searchDeepPage() {
+        return searchIndex.search(terms, null, null, PRELOADED_DOCUMENTS / 2, 1000);
+    }
+
+}
@@ -0,0 +1,83 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.query.LogQuery;
+import at.shorty.logflow.store.SegmentLogStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentLogStoreBenchmark {
+
+    private static final int PRELOADED_LOGS = 100_000;
+
+    @Param({"1", "100"})
+    private int batchSize;
+
+    private Path directory;
+    private SegmentLogStore segmentLogStore;
+    private List<InPacketLog> batch;
+    private LogQuery logQuery;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("logflow-store-benchmark");
+        segmentLogStore = new SegmentLogStore(directory, 64 * 1024 * 1024, 0, null, null);
+        segmentLogStore.start();
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            var inPacketLog = new InPacketLog();
+            inPacketLog.setTimestamp(new Date());
+            inPacketLog.setLevel(Level.INFO);
+            inPacketLog.setSource("node-1");
+            inPacketLog.setSourceIp("127.0.0.1");
+            inPacketLog.setContext("cluster_5");
+            inPacketLog.setTags(new String[]{"node", "status"});
+            inPacketLog.setContent("Node 1 is running");
+            batch.add(inPacketLog);
+        }
+        for (int i = 0; i < PRELOADED_LOGS / batchSize; i++) {
+            segmentLogStore.append(batch);
+        }
+        logQuery = new LogQuery(null, List.of("cluster_5"), null, null, List.of("status"), null, null, null, null, null, 1000);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        segmentLogStore.close();
+        try (var files = Files.walk(directory)) {
+            for (var path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void append() throws IOException {
+        for (int i = 0; i < 100 / batchSize; i++) {
+            segmentLogStore.append(batch);
+        }
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws IOException {
+        segmentLogStore.read(logQuery, blackhole::consume);
+    }
+
+}
@@ -0,0 +1,45 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.auth.TokenData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenDataBenchmark {
+
+    private TokenData wildcardTokenData;
+    private TokenData listTokenData;
+
+    @Setup
+    public void setup() {
+        wildcardTokenData = new TokenData(UUID.randomUUID(), "token", new String[]{"*"}, new String[]{"*"});
+        var contexts = new String[32];
+        for (int i = 0; i < contexts.length; i++) {
+            contexts[i] = "context_" + i;
+        }
+        listTokenData = new TokenData(UUID.randomUUID(), "token", contexts, contexts);
+    }
+
+    @Benchmark
+    public boolean isAllowedToPushWildcard() {
+        return wildcardTokenData.isAllowedToPush("context_31");
+    }
+
+    @Benchmark
+    public boolean isAllowedToPushListed() {
+        return listTokenData.isAllowedToPush("context_31");
+    }
+
+    @Benchmark
+    public boolean isAllowedToPushDenied() {
+        return listTokenData.isAllowedToPush("other_context");
+    }
+
+}
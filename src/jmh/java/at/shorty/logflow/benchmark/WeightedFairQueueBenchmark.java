@@ -0,0 +1,44 @@
+package at.shorty.logflow.benchmark;
+
+import at.shorty.logflow.ingest.data.WeightedFairQueue;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeightedFairQueueBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+    private static final Object LOG = new Object();
+
+    private WeightedFairQueue<Object> queue;
+    private List<Object> batch;
+
+    @Setup
+    public void setup() {
+        queue = new WeightedFairQueue<>(new int[]{1, 8, 1}, new int[]{BATCH_SIZE * 4, BATCH_SIZE * 4, BATCH_SIZE * 4}, BATCH_SIZE);
+        batch = new ArrayList<>(BATCH_SIZE);
+    }
+
+    /**
+     * Fills a batch across three lanes and drains it again, per log.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void offerAndPoll() throws InterruptedException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            queue.offer(i % 3, LOG);
+        }
+        while (queue.poll(batch, 0, 0) != -1) {
+            batch.clear();
+        }
+    }
+
+}
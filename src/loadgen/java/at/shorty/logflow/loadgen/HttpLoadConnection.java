@@ -0,0 +1,70 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Posts every log to {@code /log} as its own request. Requests are not answered in order, so every request completes its
+ * own log, and there is no limit on concurrent requests: the client opens as many connections as the schedule needs.
+ */
+public class HttpLoadConnection extends LoadConnection {
+
+    private final ObjectMapper objectMapper;
+    private HttpClient httpClient;
+    private URI uri;
+
+    public HttpLoadConnection(LoadgenConfig config, LoadRecorder recorder, ObjectMapper objectMapper) {
+        super(config, recorder);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void open() {
+        var builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+        if (config.insecure()) {
+            builder.sslContext(InsecureTrust.sslContext());
+        }
+        httpClient = builder.build();
+        uri = URI.create((config.ssl() ? "https://" : "http://") + config.host() + ":" + config.port() + "/log");
+    }
+
+    @Override
+    public void send(InPacketLog inPacketLog, long intendedNanos) throws IOException {
+        inPacketLog.setContent(Base64.getEncoder().encodeToString(inPacketLog.getContent().getBytes(StandardCharsets.UTF_8)));
+        var request = HttpRequest.newBuilder(uri)
+                .header("Authorization", config.token())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(inPacketLog)))
+                .build();
+        var pendingLog = new PendingLog(0, intendedNanos, System.nanoTime());
+        inFlight.incrementAndGet();
+        recorder.sent(intendedNanos);
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).whenComplete((response, throwable) -> {
+            inFlight.decrementAndGet();
+            if (throwable != null) {
+                recorder.error(pendingLog, throwable.getCause() == null ? throwable.toString() : throwable.getCause().toString());
+                return;
+            }
+            try {
+                var outPacketLogResponse = objectMapper.readValue(response.body(), OutPacketLogResponse.class);
+                recorder.complete(pendingLog, outPacketLogResponse.isSuccess(), outPacketLogResponse.getMessage());
+            } catch (IOException e) {
+                recorder.complete(pendingLog, false, "HTTP " + response.statusCode());
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,52 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection to one of the ingest endpoints that records the latency of every log it sends.
+ */
+public abstract class LoadConnection implements Closeable {
+
+    protected final LoadgenConfig config;
+    protected final LoadRecorder recorder;
+    protected final AtomicInteger inFlight = new AtomicInteger();
+    private volatile String failure;
+
+    protected LoadConnection(LoadgenConfig config, LoadRecorder recorder) {
+        this.config = config;
+        this.recorder = recorder;
+    }
+
+    public abstract void open() throws IOException;
+
+    public abstract void send(InPacketLog inPacketLog, long intendedNanos) throws IOException;
+
+    /**
+     * Called by the sender whenever it has caught up with the schedule, so buffered logs are written together.
+     */
+    public void flush() throws IOException {
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    protected String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Marks the connection as broken.
+     */
+    protected void fail(String message) {
+        if (failure == null) {
+            failure = message;
+            System.err.println("Connection failed: " + message);
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.metrics.LatencyHistogram;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records ack latencies of logs scheduled inside the measurement window. The corrected latency is measured from the time
+ * a log was scheduled to be sent, so a stalled connection shows up as latency instead of silently lowering the send
+ * rate (coordinated omission). The uncorrected latency is measured from the time the log was actually written.
+ */
+@Getter
+public class LoadRecorder {
+
+    private static final int MAX_FAILURE_MESSAGES = 100;
+
+    private final LatencyHistogram correctedLatency = new LatencyHistogram();
+    private final LatencyHistogram uncorrectedLatency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final Map<String, LongAdder> failureMessages = new ConcurrentHashMap<>();
+    private volatile long measureFromNanos;
+
+    public void startMeasuring(long measureFromNanos) {
+        this.measureFromNanos = measureFromNanos;
+    }
+
+    public boolean isMeasured(long intendedNanos) {
+        return intendedNanos >= measureFromNanos;
+    }
+
+    public void sent(long intendedNanos) {
+        if (isMeasured(intendedNanos)) {
+            sent.increment();
+        }
+    }
+
+    public void complete(PendingLog pendingLog, boolean success, String message) {
+        completed.increment();
+        if (!isMeasured(pendingLog.intendedNanos())) {
+            return;
+        }
+        var now = System.nanoTime();
+        correctedLatency.record(now - pendingLog.intendedNanos());
+        uncorrectedLatency.record(now - pendingLog.sentNanos());
+        if (success) {
+            acked.increment();
+        } else {
+            failed.increment();
+            failure(message);
+        }
+    }
+
+    public void error(PendingLog pendingLog, String message) {
+        completed.increment();
+        if (isMeasured(pendingLog.intendedNanos())) {
+            errors.increment();
+            failure(message);
+        }
+    }
+
+    private void failure(String message) {
+        var key = message == null ? "(no message)" : message;
+        var counter = failureMessages.get(key);
+        if (counter == null) {
+            if (failureMessages.size() >= MAX_FAILURE_MESSAGES) {
+                key = "(other)";
+            }
+            counter = failureMessages.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public Map<String, Long> failureCounts() {
+        var counts = new TreeMap<String, Long>();
+        failureMessages.forEach((message, counter) -> counts.put(message, counter.sum()));
+        return counts;
+    }
+
+}
@@ -0,0 +1,32 @@
+package at.shorty.logflow.loadgen;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+
+public record LoadSummary(String transport, String protocol, boolean ssl, boolean pipelined, int connections, double targetRate, int durationSeconds,
+                          int warmupSeconds, long sent, long acked, long failed, long errors, long unanswered, double achievedRate,
+                          Latency correctedLatency, Latency uncorrectedLatency, Map<String, Long> failures) {
+
+    /**
+     * Latency percentiles in microseconds.
+     */
+    @JsonPropertyOrder({"count", "mean", "p50", "p90", "p99", "p99.9", "p99.99", "max"})
+    public record Latency(long count, double mean, double p50, double p90, double p99, @JsonProperty("p99.9") double p999,
+                          @JsonProperty("p99.99") double p9999, double max) {
+
+        public static Latency of(Histogram histogram) {
+            return new Latency(histogram.getTotalCount(), micros(histogram.getMean()), micros(histogram.getValueAtPercentile(50)),
+                    micros(histogram.getValueAtPercentile(90)), micros(histogram.getValueAtPercentile(99)),
+                    micros(histogram.getValueAtPercentile(99.9)), micros(histogram.getValueAtPercentile(99.99)), micros(histogram.getMaxValue()));
+        }
+
+        private static double micros(double nanos) {
+            return Math.round(nanos / 100d) / 10d;
+        }
+
+    }
+
+}
@@ -0,0 +1,128 @@
+package at.shorty.logflow.loadgen;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: every connection sends its share of the target rate on a fixed schedule, independent of how
+ * fast the server answers, and latencies are measured from the scheduled send time.
+ */
+public class Loadgen {
+
+    public static void main(String[] args) throws Exception {
+        var config = LoadgenArgsParser.parse(args);
+        var summary = new Loadgen().run(config);
+        var objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        if (config.out() == null) {
+            System.out.println(objectMapper.writeValueAsString(summary));
+        } else {
+            objectMapper.writeValue(Path.of(config.out()).toFile(), summary);
+        }
+    }
+
+    public LoadSummary run(LoadgenConfig config) throws IOException, InterruptedException {
+        var objectMapper = new ObjectMapper();
+        var recorder = new LoadRecorder();
+        var connections = new ArrayList<LoadConnection>();
+        for (int i = 0; i < config.connections(); i++) {
+            var connection = switch (config.transport()) {
+                case SOCKET -> new SocketLoadConnection(config, recorder, objectMapper);
+                case WS -> new WebSocketLoadConnection(config, recorder, objectMapper);
+                case HTTP -> new HttpLoadConnection(config, recorder, objectMapper);
+            };
+            connection.open();
+            connections.add(connection);
+        }
+        System.err.printf("Opened %d %s connections, sending %.0f logs/s for %ds (+%ds warmup)%n", connections.size(),
+                config.transport().name().toLowerCase(), config.rate(), config.durationSeconds(), config.warmupSeconds());
+
+        var startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        var measureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(config.warmupSeconds());
+        var endNanos = measureFromNanos + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+        recorder.startMeasuring(measureFromNanos);
+        var senders = new ArrayList<Thread>();
+        for (int i = 0; i < connections.size(); i++) {
+            var connection = connections.get(i);
+            var generator = new LogGenerator(config, i);
+            var offsetNanos = (long) (i * 1e9 / config.rate());
+            var intervalNanos = connections.size() * 1e9 / config.rate();
+            var sender = new Thread(() -> send(connection, generator, startNanos + offsetNanos, intervalNanos, endNanos), "Loadgen Sender #" + i);
+            sender.start();
+            senders.add(sender);
+        }
+        var reportNanos = startNanos;
+        var lastCompleted = 0L;
+        while (senders.stream().anyMatch(Thread::isAlive)) {
+            reportNanos += TimeUnit.SECONDS.toNanos(1);
+            parkUntil(reportNanos);
+            var completed = recorder.getCompleted().sum();
+            System.err.printf("%4ds  %8d responses/s  %8d in flight  p99 %.1f ms%n", TimeUnit.NANOSECONDS.toSeconds(reportNanos - startNanos),
+                    completed - lastCompleted, inFlight(connections), recorder.getCorrectedLatency().snapshot().getValueAtPercentile(99) / 1e6);
+            lastCompleted = completed;
+        }
+        for (var sender : senders) {
+            sender.join();
+        }
+        var drainUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(config.drainSeconds());
+        while (inFlight(connections) > 0 && System.nanoTime() < drainUntil) {
+            Thread.sleep(10);
+        }
+        var unanswered = inFlight(connections);
+        for (var connection : connections) {
+            connection.close();
+        }
+
+        var corrected = recorder.getCorrectedLatency().snapshot();
+        if (config.histogramOut() != null) {
+            try (var printStream = new PrintStream(Files.newOutputStream(Path.of(config.histogramOut())))) {
+                corrected.outputPercentileDistribution(printStream, 1000d);
+            }
+        }
+        var acked = recorder.getAcked().sum();
+        var failed = recorder.getFailed().sum();
+        return new LoadSummary(config.transport().name().toLowerCase(), config.binary() ? "binary" : "json", config.ssl(), config.pipelined(),
+                config.connections(), config.rate(), config.durationSeconds(), config.warmupSeconds(), recorder.getSent().sum(), acked, failed,
+                recorder.getErrors().sum(), unanswered, (double) (acked + failed) / config.durationSeconds(), LoadSummary.Latency.of(corrected),
+                LoadSummary.Latency.of(recorder.getUncorrectedLatency().snapshot()), recorder.failureCounts());
+    }
+
+    private void send(LoadConnection connection, LogGenerator generator, long firstNanos, double intervalNanos, long endNanos) {
+        try {
+            for (long i = 0; ; i++) {
+                var intendedNanos = firstNanos + (long) (i * intervalNanos);
+                if (intendedNanos >= endNanos) {
+                    break;
+                }
+                if (intendedNanos > System.nanoTime()) {
+                    connection.flush();
+                    parkUntil(intendedNanos);
+                }
+                connection.send(generator.next(), intendedNanos);
+            }
+            connection.flush();
+        } catch (IOException e) {
+            connection.fail(e.toString());
+        }
+    }
+
+    private static void parkUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static int inFlight(List<LoadConnection> connections) {
+        return connections.stream().mapToInt(LoadConnection::getInFlight).sum();
+    }
+
+}
@@ -0,0 +1,91 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.log.Level;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+
+public class LoadgenArgsParser {
+
+    public static LoadgenConfig parse(String[] args) {
+        var parser = new DefaultParser();
+
+        var options = new Options();
+        options.addOption("transport", true, "socket (default), ws or http");
+        options.addOption("host", true, "Logflow host (default localhost)");
+        options.addOption("port", true, "Logflow port (default 7200 for socket, 2086 otherwise)");
+        options.addOption(Option.builder("token").hasArg().required().desc("Auth token with push permission for all contexts").build());
+        options.addOption("ssl", false, "Use SSL/TLS");
+        options.addOption("insecure", false, "Trust all server certificates");
+        options.addOption("binary", false, "Use the binary socket protocol");
+        options.addOption("pipelined", false, "Use pipelined acks (socket and ws)");
+        options.addOption("connections", true, "Concurrent connections (default 1)");
+        options.addOption("rate", true, "Target logs per second over all connections (default 1000)");
+        options.addOption("duration", true, "Measured seconds (default 30)");
+        options.addOption("warmup", true, "Seconds sent at the target rate before measuring (default 5)");
+        options.addOption("drain", true, "Max. seconds to wait for outstanding responses (default 10)");
+        options.addOption("payload", true, "Content length in bytes, fixed or min-max (default 64-512)");
+        options.addOption("contexts", true, "Weighted contexts, context:weight,... (default loadgen)");
+        options.addOption("tags", true, "Weighted tags, tag:weight,... (default load,test,bench)");
+        options.addOption("tagsPerLog", true, "Tags per log, fixed or min-max (default 0-2)");
+        options.addOption("levels", true, "Weighted levels (default INFO:90,WARN:8,ERROR:2)");
+        options.addOption("seed", true, "Random seed (default 1)");
+        options.addOption("out", true, "Write the JSON summary to this file instead of stdout");
+        options.addOption("histogram", true, "Write the corrected latency distribution (HdrHistogram format) to this file");
+
+        try {
+            var commandLine = parser.parse(options, args);
+            var transport = Transport.valueOf(commandLine.getOptionValue("transport", "socket").toUpperCase());
+            var binary = commandLine.hasOption("binary");
+            var pipelined = commandLine.hasOption("pipelined");
+            if (binary && transport != Transport.SOCKET) {
+                throw new ParseException("-binary is only supported with -transport socket");
+            }
+            if (pipelined && transport == Transport.HTTP) {
+                throw new ParseException("-pipelined is not supported with -transport http");
+            }
+            var payload = range(commandLine.getOptionValue("payload", "64-512"));
+            var tagsPerLog = range(commandLine.getOptionValue("tagsPerLog", "0-2"));
+            return new LoadgenConfig(
+                    transport,
+                    commandLine.getOptionValue("host", "localhost"),
+                    Integer.parseInt(commandLine.getOptionValue("port", transport == Transport.SOCKET ? "7200" : "2086")),
+                    commandLine.getOptionValue("token"),
+                    commandLine.hasOption("ssl"),
+                    commandLine.hasOption("insecure"),
+                    binary,
+                    pipelined,
+                    Integer.parseInt(commandLine.getOptionValue("connections", "1")),
+                    Double.parseDouble(commandLine.getOptionValue("rate", "1000")),
+                    Integer.parseInt(commandLine.getOptionValue("duration", "30")),
+                    Integer.parseInt(commandLine.getOptionValue("warmup", "5")),
+                    Integer.parseInt(commandLine.getOptionValue("drain", "10")),
+                    payload[0],
+                    payload[1],
+                    WeightedChoice.parse(commandLine.getOptionValue("contexts", "loadgen"), String::valueOf),
+                    WeightedChoice.parse(commandLine.getOptionValue("tags", "load,test,bench"), String::valueOf),
+                    tagsPerLog[0],
+                    tagsPerLog[1],
+                    WeightedChoice.parse(commandLine.getOptionValue("levels", "INFO:90,WARN:8,ERROR:2"), level -> Level.valueOf(level.toUpperCase())),
+                    Long.parseLong(commandLine.getOptionValue("seed", "1")),
+                    commandLine.getOptionValue("out"),
+                    commandLine.getOptionValue("histogram"));
+        } catch (ParseException | IllegalArgumentException exception) {
+            new HelpFormatter().printHelp("loadgen", options);
+            throw new RuntimeException("Failed to parse arguments", exception);
+        }
+    }
+
+    private static int[] range(String value) {
+        var separator = value.indexOf('-');
+        var min = Integer.parseInt(separator < 0 ? value : value.substring(0, separator));
+        var max = separator < 0 ? min : Integer.parseInt(value.substring(separator + 1));
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Invalid range " + value);
+        }
+        return new int[]{min, max};
+    }
+
+}
@@ -0,0 +1,10 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.log.Level;
+
+public record LoadgenConfig(Transport transport, String host, int port, String token, boolean ssl, boolean insecure, boolean binary, boolean pipelined,
+                            int connections, double rate, int durationSeconds, int warmupSeconds, int drainSeconds, int minPayload, int maxPayload,
+                            WeightedChoice<String> contexts, WeightedChoice<String> tags, int minTags, int maxTags, WeightedChoice<Level> levels,
+                            long seed, String out, String histogramOut) {
+
+}
@@ -0,0 +1,51 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Random;
+
+public class LogGenerator {
+
+    private static final String[] WORDS = {"user", "request", "handled", "in", "ms", "cache", "miss", "for", "key", "session", "created",
+            "order", "payment", "failed", "retrying", "connection", "to", "database", "established", "timeout", "after", "id", "node", "ok"};
+
+    private final LoadgenConfig config;
+    private final Random random;
+    private final String source;
+    private final String text;
+
+    public LogGenerator(LoadgenConfig config, int connection) {
+        this.config = config;
+        this.random = new Random(config.seed() + connection);
+        this.source = "loadgen-" + connection;
+        var builder = new StringBuilder(config.maxPayload() * 2 + 16);
+        while (builder.length() < config.maxPayload() * 2) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            if (random.nextInt(4) == 0) {
+                builder.append(random.nextInt(100_000)).append(' ');
+            }
+        }
+        this.text = builder.toString();
+    }
+
+    public InPacketLog next() {
+        var inPacketLog = new InPacketLog();
+        inPacketLog.setTimestamp(new Date());
+        inPacketLog.setLevel(config.levels().next(random));
+        inPacketLog.setSource(source);
+        inPacketLog.setContext(config.contexts().next(random));
+        var tagCount = Math.min(config.minTags() + random.nextInt(config.maxTags() - config.minTags() + 1), config.tags().size());
+        var tags = new LinkedHashSet<String>();
+        while (tags.size() < tagCount) {
+            tags.add(config.tags().next(random));
+        }
+        inPacketLog.setTags(tags.toArray(String[]::new));
+        var length = config.minPayload() + random.nextInt(config.maxPayload() - config.minPayload() + 1);
+        var offset = random.nextInt(text.length() - length + 1);
+        inPacketLog.setContent(text.substring(offset, offset + length));
+        return inPacketLog;
+    }
+
+}
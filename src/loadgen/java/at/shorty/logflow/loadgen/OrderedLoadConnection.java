@@ -0,0 +1,78 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketAck;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A connection that answers logs in the order they were sent, either one response per log or cumulative acks.
+ */
+public abstract class OrderedLoadConnection extends LoadConnection {
+
+    private final ConcurrentLinkedQueue<PendingLog> pendingLogs = new ConcurrentLinkedQueue<>();
+    private long sequence;
+
+    protected OrderedLoadConnection(LoadgenConfig config, LoadRecorder recorder) {
+        super(config, recorder);
+    }
+
+    protected abstract void write(InPacketLog inPacketLog) throws IOException;
+
+    @Override
+    public void send(InPacketLog inPacketLog, long intendedNanos) throws IOException {
+        var failure = getFailure();
+        if (failure != null) {
+            throw new IOException(failure);
+        }
+        var pendingLog = new PendingLog(++sequence, intendedNanos, System.nanoTime());
+        if (config.pipelined()) {
+            inPacketLog.setSequence(pendingLog.sequence());
+        }
+        inFlight.incrementAndGet();
+        pendingLogs.add(pendingLog);
+        recorder.sent(intendedNanos);
+        write(inPacketLog);
+    }
+
+    protected void response(OutPacketLogResponse outPacketLogResponse) {
+        var pendingLog = pendingLogs.poll();
+        if (pendingLog == null) {
+            fail("Unexpected response " + outPacketLogResponse);
+            return;
+        }
+        inFlight.decrementAndGet();
+        recorder.complete(pendingLog, outPacketLogResponse.isSuccess(), outPacketLogResponse.getMessage());
+    }
+
+    protected void ack(OutPacketAck outPacketAck) {
+        var nacks = new HashMap<Long, OutPacketLogResponse>();
+        if (outPacketAck.getNacks() != null) {
+            outPacketAck.getNacks().forEach(nack -> nacks.put(nack.getSequence(), nack));
+        }
+        PendingLog pendingLog;
+        while ((pendingLog = pendingLogs.peek()) != null && pendingLog.sequence() <= outPacketAck.getAck()) {
+            pendingLogs.poll();
+            inFlight.decrementAndGet();
+            var nack = nacks.get(pendingLog.sequence());
+            recorder.complete(pendingLog, nack == null, nack == null ? null : nack.getMessage());
+        }
+    }
+
+    /**
+     * Marks the connection as broken and counts all logs still waiting for a response as errors.
+     */
+    @Override
+    protected void fail(String message) {
+        super.fail(message);
+        PendingLog pendingLog;
+        while ((pendingLog = pendingLogs.poll()) != null) {
+            inFlight.decrementAndGet();
+            recorder.error(pendingLog, message);
+        }
+    }
+
+}
@@ -0,0 +1,5 @@
+package at.shorty.logflow.loadgen;
+
+public record PendingLog(long sequence, long intendedNanos, long sentNanos) {
+
+}
@@ -0,0 +1,129 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.ingest.packet.binary.BinaryPacketCodec;
+import at.shorty.logflow.ingest.packet.impl.InPacketAuth;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketAck;
+import at.shorty.logflow.ingest.packet.impl.OutPacketAuthResponse;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class SocketLoadConnection extends OrderedLoadConnection {
+
+    private final ObjectMapper objectMapper;
+    private Socket socket;
+    private OutputStream outputStream;
+    private Thread reader;
+
+    public SocketLoadConnection(LoadgenConfig config, LoadRecorder recorder, ObjectMapper objectMapper) {
+        super(config, recorder);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void open() throws IOException {
+        if (config.ssl()) {
+            var socketFactory = config.insecure() ? InsecureTrust.sslContext().getSocketFactory() : SSLSocketFactory.getDefault();
+            socket = socketFactory.createSocket(config.host(), config.port());
+        } else {
+            socket = new Socket(config.host(), config.port());
+        }
+        socket.setTcpNoDelay(true);
+        outputStream = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        var inputStream = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+        var inPacketAuth = new InPacketAuth();
+        inPacketAuth.setToken(config.token());
+        inPacketAuth.setPipelined(config.pipelined());
+        if (config.binary()) {
+            inPacketAuth.setProtocol(BinaryPacketCodec.PROTOCOL_NAME);
+        }
+        outputStream.write(objectMapper.writeValueAsBytes(inPacketAuth));
+        outputStream.write('\n');
+        outputStream.flush();
+        var authResponse = objectMapper.readValue(readLine(inputStream), OutPacketAuthResponse.class);
+        if (!authResponse.isSuccess()) {
+            throw new IOException("Authentication failed");
+        }
+        if (authResponse.isPipelined() != config.pipelined()) {
+            throw new IOException("Server does not support pipelined acks");
+        }
+        reader = new Thread(() -> read(inputStream), "Loadgen Reader " + socket.getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    @Override
+    protected void write(InPacketLog inPacketLog) throws IOException {
+        if (config.binary()) {
+            outputStream.write(BinaryPacketCodec.encodeLog(inPacketLog));
+        } else {
+            inPacketLog.setContent(Base64.getEncoder().encodeToString(inPacketLog.getContent().getBytes(StandardCharsets.UTF_8)));
+            outputStream.write(objectMapper.writeValueAsBytes(inPacketLog));
+            outputStream.write('\n');
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    private void read(InputStream inputStream) {
+        try {
+            while (true) {
+                if (config.binary()) {
+                    var payload = ByteBuffer.wrap(BinaryPacketCodec.readFrame(inputStream));
+                    if (config.pipelined()) {
+                        ack(BinaryPacketCodec.decodeAck(payload));
+                    } else {
+                        response(BinaryPacketCodec.decodeResponse(payload));
+                    }
+                } else {
+                    var line = readLine(inputStream);
+                    var node = objectMapper.readTree(line);
+                    if (node.has("ack")) {
+                        ack(objectMapper.treeToValue(node, OutPacketAck.class));
+                    } else {
+                        response(objectMapper.treeToValue(node, OutPacketLogResponse.class));
+                    }
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (!socket.isClosed()) {
+                fail(e.toString());
+            }
+        }
+    }
+
+    private static byte[] readLine(InputStream inputStream) throws IOException {
+        var line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = inputStream.read()) != '\n') {
+            if (b == -1) {
+                throw new IOException("Connection closed by server");
+            }
+            line.write(b);
+        }
+        return line.toByteArray();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+}
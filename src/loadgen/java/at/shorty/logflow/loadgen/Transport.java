@@ -0,0 +1,9 @@
+package at.shorty.logflow.loadgen;
+
+public enum Transport {
+
+    SOCKET,
+    WS,
+    HTTP
+
+}
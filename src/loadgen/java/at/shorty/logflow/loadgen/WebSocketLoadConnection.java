@@ -0,0 +1,122 @@
+package at.shorty.logflow.loadgen;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketAck;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Sends logs as newline-separated JSON, all logs written since the last flush go into one text frame.
+ */
+public class WebSocketLoadConnection extends OrderedLoadConnection implements WebSocket.Listener {
+
+    private static final int MAX_FRAME_CHARS = 64 * 1024;
+
+    private final ObjectMapper objectMapper;
+    private final StringBuilder frame = new StringBuilder();
+    private final StringBuilder received = new StringBuilder();
+    private WebSocket webSocket;
+
+    public WebSocketLoadConnection(LoadgenConfig config, LoadRecorder recorder, ObjectMapper objectMapper) {
+        super(config, recorder);
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void open() throws IOException {
+        var httpClient = HttpClient.newBuilder();
+        if (config.insecure()) {
+            httpClient.sslContext(InsecureTrust.sslContext());
+        }
+        var uri = URI.create((config.ssl() ? "wss://" : "ws://") + config.host() + ":" + config.port() + "/ws");
+        try {
+            webSocket = httpClient.build().newWebSocketBuilder()
+                    .header("Authorization", config.token())
+                    .header("X-Logflow-Pipelined", String.valueOf(config.pipelined()))
+                    .buildAsync(uri, this)
+                    .join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to connect to " + uri, e.getCause());
+        }
+    }
+
+    @Override
+    protected void write(InPacketLog inPacketLog) throws IOException {
+        inPacketLog.setContent(Base64.getEncoder().encodeToString(inPacketLog.getContent().getBytes(StandardCharsets.UTF_8)));
+        frame.append(objectMapper.writeValueAsString(inPacketLog)).append('\n');
+        if (frame.length() >= MAX_FRAME_CHARS) {
+            flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (frame.isEmpty()) {
+            return;
+        }
+        try {
+            webSocket.sendText(frame.toString(), true).join();
+        } catch (CompletionException e) {
+            throw new IOException("Failed to send frame", e.getCause());
+        }
+        frame.setLength(0);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        received.append(data);
+        if (last) {
+            try {
+                var lineStart = 0;
+                while (lineStart < received.length()) {
+                    var lineEnd = received.indexOf("\n", lineStart);
+                    if (lineEnd == -1) {
+                        lineEnd = received.length();
+                    }
+                    if (lineEnd > lineStart) {
+                        var node = objectMapper.readTree(received.substring(lineStart, lineEnd));
+                        if (node.has("ack")) {
+                            ack(objectMapper.treeToValue(node, OutPacketAck.class));
+                        } else {
+                            response(objectMapper.treeToValue(node, OutPacketLogResponse.class));
+                        }
+                    }
+                    lineStart = lineEnd + 1;
+                }
+            } catch (IOException e) {
+                fail(e.toString());
+            }
+            received.setLength(0);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        fail("Connection closed (" + statusCode + " " + reason + ")");
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        fail(error.toString());
+    }
+
+    @Override
+    public void close() {
+        if (webSocket != null) {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(e -> null);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package at.shorty.logflow.loadgen;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+public class WeightedChoice<T> {
+
+    private final List<T> values;
+    private final double[] cumulativeWeights;
+
+    private WeightedChoice(List<T> values, double[] cumulativeWeights) {
+        this.values = values;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    /**
+     * Parses {@code value:weight,value,...}, a missing weight counts as 1.
+     */
+    public static <T> WeightedChoice<T> parse(String spec, Function<String, T> parser) {
+        var entries = spec.split(",");
+        var values = new Object[entries.length];
+        var cumulativeWeights = new double[entries.length];
+        var total = 0d;
+        for (int i = 0; i < entries.length; i++) {
+            var separator = entries[i].lastIndexOf(':');
+            var weight = separator < 0 ? 1 : Double.parseDouble(entries[i].substring(separator + 1));
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weight of " + entries[i] + " must be positive");
+            }
+            values[i] = parser.apply(separator < 0 ? entries[i] : entries[i].substring(0, separator));
+            total += weight;
+            cumulativeWeights[i] = total;
+        }
+        @SuppressWarnings("unchecked")
+        var list = (List<T>) List.of(values);
+        return new WeightedChoice<>(list, cumulativeWeights);
+    }
+
+    public T next(Random random) {
+        var point = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+        var index = Arrays.binarySearch(cumulativeWeights, point);
+        return values.get(index < 0 ? -index - 1 : Math.min(index + 1, values.size() - 1));
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public List<T> values() {
+        return values;
+    }
+
+}
@@ -3,8 +3,34 @@ package at.shorty.logflow;
 import at.shorty.logflow.auth.AuthHandler;
 import at.shorty.logflow.hikari.HikariConnectionPool;
 import at.shorty.logflow.ingest.IngestHandler;
+import at.shorty.logflow.ingest.data.ContentCodec;
+import at.shorty.logflow.ingest.data.ContentCompressor;
+import at.shorty.logflow.ingest.data.ContextGroups;
+import at.shorty.logflow.ingest.data.DictionaryMigration;
+import at.shorty.logflow.ingest.data.LogBatchWriter;
+import at.shorty.logflow.ingest.data.LogDictionary;
+import at.shorty.logflow.ingest.data.LogPartitions;
+import at.shorty.logflow.ingest.data.LogRetention;
+import at.shorty.logflow.ingest.data.LogSink;
+import at.shorty.logflow.ingest.data.MetadataExtractor;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.ingest.limit.RateLimiter;
 import at.shorty.logflow.ingest.packet.PacketHandler;
+import at.shorty.logflow.ingest.spool.LogSpool;
+import at.shorty.logflow.ingest.socket.NioIngestServer;
 import at.shorty.logflow.ingest.source.IngestSource;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import at.shorty.logflow.query.QueryHandler;
+import at.shorty.logflow.relay.RelayForwarder;
+import at.shorty.logflow.rollup.LogRollups;
+import at.shorty.logflow.rollup.RollupHandler;
+import at.shorty.logflow.search.SearchIndex;
+import at.shorty.logflow.store.JdbcLogStore;
+import at.shorty.logflow.store.LogStore;
+import at.shorty.logflow.store.LogStoreType;
+import at.shorty.logflow.store.SegmentLogStore;
+import at.shorty.logflow.tail.TailBroadcaster;
+import at.shorty.logflow.tail.TailHandler;
 import at.shorty.logflow.util.LogflowArgsParser;
 import io.javalin.Javalin;
 import io.javalin.community.ssl.SSLPlugin;
@@ -13,10 +39,19 @@ import lombok.extern.slf4j.Slf4j;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.URI;
+import java.nio.file.Path;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
 
 @Slf4j
 public class Logflow {
@@ -29,6 +64,8 @@ public class Logflow {
         var noSocketIngest = commandLine.hasOption("noSocketIngest");
         var webUseSSL = commandLine.hasOption("webUseSSL");
         var socketUseSSL = commandLine.hasOption("socketUseSSL");
+        var migrateToDictionary = commandLine.hasOption("migrateToDictionary");
+        var relayUpstream = commandLine.getOptionValue("relay");
         log.info("Starting Logflow...");
 
         var localAuthToken = System.getenv("LOGFLOW_LOCAL_AUTH_TOKEN");
@@ -37,20 +74,142 @@ public class Logflow {
         var password = System.getenv("LOGFLOW_HIKARI_PASSWORD");
         var poolSize = Optional.ofNullable(System.getenv("LOGFLOW_HIKARI_POOL_SIZE"));
         var poolSizeInt = poolSize.map(Integer::parseInt).orElse(10);
+        var batchSize = Optional.ofNullable(System.getenv("LOGFLOW_BATCH_SIZE")).map(Integer::parseInt).orElse(500);
+        var batchLingerMillis = Optional.ofNullable(System.getenv("LOGFLOW_BATCH_LINGER_MS")).map(Long::parseLong).orElse(10L);
+        var batchWriters = Optional.ofNullable(System.getenv("LOGFLOW_BATCH_WRITERS")).map(Integer::parseInt).orElse(2);
+        var storageMode = Optional.ofNullable(System.getenv("LOGFLOW_STORAGE_MODE")).map(String::toUpperCase).map(StorageMode::valueOf).orElse(StorageMode.PLAIN);
+        var partitionDays = Optional.ofNullable(System.getenv("LOGFLOW_PARTITION_DAYS")).map(Integer::parseInt).orElse(1);
+        var retentionDays = Optional.ofNullable(System.getenv("LOGFLOW_RETENTION_DAYS")).map(Integer::parseInt).orElse(0);
+        var contextRetentionDays = Optional.ofNullable(System.getenv("LOGFLOW_RETENTION_CONTEXTS")).map(LogRetention::parsePolicies).orElse(Map.of());
+        var rollupFlushSeconds = Optional.ofNullable(System.getenv("LOGFLOW_ROLLUP_FLUSH_SECONDS")).map(Integer::parseInt).orElse(10);
+        var tailBufferSize = Optional.ofNullable(System.getenv("LOGFLOW_TAIL_BUFFER_SIZE")).map(Integer::parseInt).orElse(65536);
+        var searchIndexDir = System.getenv("LOGFLOW_SEARCH_INDEX_DIR");
+        var spoolDir = System.getenv("LOGFLOW_SPOOL_DIR");
+        var spoolMaxAttempts = Optional.ofNullable(System.getenv("LOGFLOW_SPOOL_MAX_ATTEMPTS")).map(Integer::parseInt).orElse(20);
+        var spoolMaxMegabytes = Optional.ofNullable(System.getenv("LOGFLOW_SPOOL_MAX_MB")).map(Long::parseLong).orElse(0L);
+        var tokenRateLimit = Optional.ofNullable(System.getenv("LOGFLOW_TOKEN_RATE_LIMIT")).map(Double::parseDouble).orElse(0.0);
+        var ipRateLimit = Optional.ofNullable(System.getenv("LOGFLOW_IP_RATE_LIMIT")).map(Double::parseDouble).orElse(0.0);
+        var maxInFlight = Optional.ofNullable(System.getenv("LOGFLOW_MAX_IN_FLIGHT")).map(Integer::parseInt).orElse(batchSize * 64);
+        var logStoreType = Optional.ofNullable(System.getenv("LOGFLOW_STORE")).map(String::toUpperCase).map(LogStoreType::valueOf).orElse(LogStoreType.JDBC);
+        var storeDir = Optional.ofNullable(System.getenv("LOGFLOW_STORE_DIR")).orElse("data");
+        var storeSegmentMegabytes = Optional.ofNullable(System.getenv("LOGFLOW_STORE_SEGMENT_MB")).map(Integer::parseInt).orElse(64);
+        var contentCodec = Optional.ofNullable(System.getenv("LOGFLOW_CONTENT_COMPRESSION")).map(String::toUpperCase).map(ContentCodec::valueOf).orElse(ContentCodec.NONE);
+        var ackFlushMillis = Optional.ofNullable(System.getenv("LOGFLOW_ACK_FLUSH_MS")).map(Long::parseLong).orElse(10L);
+        var relayToken = System.getenv("LOGFLOW_RELAY_TOKEN");
+        var relayConnections = Optional.ofNullable(System.getenv("LOGFLOW_RELAY_CONNECTIONS")).map(Integer::parseInt).orElse(2);
+        var trustedRelays = Optional.ofNullable(System.getenv("LOGFLOW_TRUSTED_RELAYS")).map(value -> Set.of(value.split(","))).orElse(Set.of());
+        var contextGroups = new ContextGroups(System.getenv("LOGFLOW_CONTEXT_GROUPS"),
+                Optional.ofNullable(System.getenv("LOGFLOW_CONTEXT_GROUP_WEIGHTS")).map(ContextGroups::parseValues).orElse(Map.of()),
+                Optional.ofNullable(System.getenv("LOGFLOW_CONTEXT_GROUP_QUEUES")).map(ContextGroups::parseValues).orElse(Map.of()),
+                Optional.ofNullable(System.getenv("LOGFLOW_CONTEXT_GROUP_POOLS")).map(ContextGroups::parseValues).orElse(Map.of()));
+        var metadataExtractor = new MetadataExtractor(System.getenv("LOGFLOW_METADATA_FIELDS"), System.getenv("LOGFLOW_METADATA_CONTEXT_FIELDS"));
+        var socketEventLoops = Optional.ofNullable(System.getenv("LOGFLOW_SOCKET_EVENT_LOOPS")).map(Integer::parseInt).orElse(Runtime.getRuntime().availableProcessors());
         if (localAuthToken == null) {
             localAuthToken = UUID.randomUUID().toString();
             log.warn("No local auth token provided, using random token: {}", localAuthToken);
         }
-        if (jdbcUrl == null || username == null || password == null) {
-            throw new RuntimeException("Failed to start Logflow: Missing environment variables, required: LOGFLOW_HIKARI_JDBC_URL, LOGFLOW_HIKARI_USERNAME, LOGFLOW_HIKARI_PASSWORD");
+        var hasDatabase = jdbcUrl != null && username != null && password != null;
+        if (relayUpstream != null && relayToken == null) {
+            throw new RuntimeException("Failed to start Logflow: Missing environment variable LOGFLOW_RELAY_TOKEN, required in relay mode");
+        }
+        if (!hasDatabase && logStoreType == LogStoreType.JDBC && relayUpstream == null) {
+            throw new RuntimeException("Failed to start Logflow: Missing environment variables, required: LOGFLOW_HIKARI_JDBC_URL, LOGFLOW_HIKARI_USERNAME, LOGFLOW_HIKARI_PASSWORD (or set LOGFLOW_STORE=segment)");
+        }
+        var logPartitions = new LogPartitions(partitionDays);
+        HikariConnectionPool connectionPool = null;
+        if (hasDatabase) {
+            log.info("Initializing Hikari pool...");
+            connectionPool = new HikariConnectionPool(jdbcUrl, username, password, poolSizeInt);
+            log.info("Hikari pool initialized");
+            setupDatabase(connectionPool, storageMode, logPartitions);
+        } else {
+            log.warn("No database configured, only the local auth token is accepted and rollups are disabled");
         }
-        log.info("Initializing Hikari pool...");
-        var connectionPool = new HikariConnectionPool(jdbcUrl, username, password, poolSizeInt);
-        log.info("Hikari pool initialized");
 
         var packetHandler = new PacketHandler();
-        var authHandler = new AuthHandler(localAuthToken, connectionPool);
-        var ingestHandler = new IngestHandler(packetHandler, authHandler, connectionPool);
+        RelayForwarder relayForwarder = null;
+        if (relayUpstream != null) {
+            log.info("Relaying logs to {} ({} connections)", relayUpstream, relayConnections);
+            relayForwarder = new RelayForwarder(URI.create(relayUpstream), relayToken, packetHandler.getObjectMapper(), batchSize, batchLingerMillis, batchSize * 64);
+            relayForwarder.start(relayConnections);
+            logStoreType = null;
+        }
+        var authHandler = new AuthHandler(localAuthToken, connectionPool, relayForwarder);
+        var logDictionary = new LogDictionary();
+        if (logStoreType != null) {
+            log.info("Using {} log store", logStoreType.name().toLowerCase());
+        }
+        if (logStoreType == LogStoreType.JDBC) {
+            log.info("Using {} storage mode", storageMode.name().toLowerCase());
+        }
+        ContentCompressor contentCompressor = null;
+        if (logStoreType == LogStoreType.JDBC) {
+            log.info("Using {} content compression", contentCodec.name().toLowerCase());
+            contentCompressor = new ContentCompressor(connectionPool, contentCodec);
+            contentCompressor.start(Duration.ofMinutes(10));
+        }
+        if (migrateToDictionary) {
+            if (logStoreType != LogStoreType.JDBC) {
+                log.warn("Not migrating to dictionary storage (Only supported with LOGFLOW_STORE=jdbc)");
+            } else if (storageMode == StorageMode.DICTIONARY) {
+                new DictionaryMigration(connectionPool, logDictionary, contentCompressor, batchSize).start();
+            } else {
+                log.warn("Not migrating to dictionary storage (Set LOGFLOW_STORAGE_MODE=dictionary to enable)");
+            }
+        }
+        var horizonDays = LogRetention.horizonDays(retentionDays, contextRetentionDays);
+        LogRetention logRetention = null;
+        if (logStoreType == LogStoreType.JDBC) {
+            logRetention = new LogRetention(connectionPool, storageMode, logDictionary, logPartitions, retentionDays, contextRetentionDays);
+            logRetention.start(Duration.ofHours(1));
+        }
+        LogRollups logRollups = null;
+        if (connectionPool != null && logStoreType != null) {
+            logRollups = new LogRollups(connectionPool);
+            logRollups.start(Duration.ofSeconds(rollupFlushSeconds));
+        }
+        var searchIndex = searchIndexDir == null || logStoreType == null ? null : openSearchIndex(searchIndexDir, horizonDays);
+        var metrics = new LogflowMetrics();
+        LogStore logStore = null;
+        LogBatchWriter logBatchWriter = null;
+        var groupConnectionPools = new ArrayList<HikariConnectionPool>();
+        if (logStoreType != null) {
+            logStore = logStoreType == LogStoreType.SEGMENT
+                    ? openSegmentStore(storeDir, storeSegmentMegabytes, horizonDays, searchIndex, metadataExtractor)
+                    : new JdbcLogStore(connectionPool, storageMode, logDictionary, searchIndex, contentCompressor, metadataExtractor);
+            if (searchIndex != null) {
+                searchIndex.backfill(logStore);
+            }
+            var groupLogStores = new ArrayList<LogStore>();
+            for (int i = 0; i < contextGroups.size(); i++) {
+                var groupPoolSize = contextGroups.poolSize(i);
+                if (groupPoolSize > 0 && logStoreType == LogStoreType.JDBC) {
+                    log.info("Using a dedicated pool of {} connections for context group {}", groupPoolSize, contextGroups.getNames().get(i));
+                    var groupConnectionPool = new HikariConnectionPool(jdbcUrl, username, password, groupPoolSize);
+                    groupConnectionPools.add(groupConnectionPool);
+                    groupLogStores.add(new JdbcLogStore(groupConnectionPool, storageMode, logDictionary, searchIndex, contentCompressor, metadataExtractor));
+                } else {
+                    if (groupPoolSize > 0) {
+                        log.warn("Not using a dedicated pool for context group {} (Only supported with LOGFLOW_STORE=jdbc)", contextGroups.getNames().get(i));
+                    }
+                    groupLogStores.add(logStore);
+                }
+            }
+            logBatchWriter = new LogBatchWriter(groupLogStores, logRollups, searchIndex, metrics, contextGroups, batchSize, batchLingerMillis, batchSize * 64);
+            logBatchWriter.start(batchWriters);
+        }
+        LogSink logSink = relayForwarder == null ? logBatchWriter : relayForwarder;
+        var logSpool = spoolDir == null ? null : openSpool(spoolDir, logSink, batchSize * 16, spoolMaxAttempts, spoolMaxMegabytes);
+        var queryExecutor = Executors.newFixedThreadPool(4, runnable -> {
+            var thread = new Thread(runnable, "Logflow Query");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var tailBroadcaster = new TailBroadcaster(packetHandler.getObjectMapper(), tailBufferSize);
+        var rateLimiter = new RateLimiter(tokenRateLimit, ipRateLimit, maxInFlight);
+        var ingestHandler = new IngestHandler(packetHandler, authHandler, logSpool == null ? logSink : logSpool, tailBroadcaster, rateLimiter, metrics, ackFlushMillis, trustedRelays, logStoreType == LogStoreType.JDBC ? storageMode : StorageMode.PLAIN);
+        registerGauges(metrics, connectionPool, authHandler, contextGroups, logBatchWriter, relayForwarder, tailBroadcaster, rateLimiter, logSpool, searchIndex, contentCompressor);
+        metrics.registerMBean();
 
         var sslKeystorePath = System.getProperty("javax.net.ssl.keyStore");
         var sslKeystorePassword = System.getProperty("javax.net.ssl.keyStorePassword");
@@ -93,11 +252,30 @@ public class Logflow {
                     })
                     .start(Integer.parseInt(webPort));
             if (!noWsIngest) {
-                app.ws("/ws", ws -> ws.onConnect(ctx -> ingestHandler.wsIngest(ws, ctx)));
+                app.ws("/ws", ingestHandler::wsIngest);
             }
             if (!noHttpIngest) {
                 app.post("/log", ingestHandler::httpIngest);
+                app.post("/log/bulk", ingestHandler::httpBulkIngest);
+            }
+            if (logRollups != null) {
+                var rollupHandler = new RollupHandler(authHandler, logRollups, packetHandler.getObjectMapper(), queryExecutor);
+                app.get("/rollups", rollupHandler::getRollups);
             }
+            if (logStore != null) {
+                var queryHandler = new QueryHandler(authHandler, logStore, packetHandler.getObjectMapper(), queryExecutor, metadataExtractor);
+                app.get("/query", queryHandler::query);
+            }
+            app.get("/auth/token", authHandler::tokenInfo);
+            if (searchIndex != null) {
+                app.get("/search/stats", ctx -> ctx.json(searchIndex.stats()));
+            }
+            if (logSpool != null) {
+                app.get("/spool/stats", ctx -> ctx.json(logSpool.stats()));
+            }
+            app.get("/metrics", ctx -> ctx.contentType("text/plain; version=0.0.4; charset=utf-8").result(metrics.toPrometheus()));
+            var tailHandler = new TailHandler(authHandler, tailBroadcaster, packetHandler.getObjectMapper());
+            app.ws("/tail", tailHandler::wsTail);
         }
 
         if (!noSocketIngest) {
@@ -124,18 +302,15 @@ public class Logflow {
                         log.info("SSL socket server started");
                         while (true) {
                             var socket = sslServerSocket.accept();
-                            ingestHandler.ingest(IngestSource.from(socket), false);
+                            ingestHandler.ingest(IngestSource.from(socket));
                         }
                     } catch (IOException e) {
                         log.error("Failed to start SSL socket server", e);
                     }
                 } else {
-                    try (var serverSocket = new ServerSocket(Integer.parseInt(finalSocketPort))) {
-                        log.info("Socket server started");
-                        while (true) {
-                            var socket = serverSocket.accept();
-                            ingestHandler.ingest(IngestSource.from(socket), false);
-                        }
+                    try {
+                        var nioIngestServer = new NioIngestServer(ingestHandler, socketEventLoops);
+                        nioIngestServer.bind(Integer.parseInt(finalSocketPort));
                     } catch (IOException e) {
                         log.error("Failed to start socket server", e);
                     }
@@ -144,21 +319,133 @@ public class Logflow {
         }
 
         log.info("Adding shutdown hook...");
+        var finalLogRetention = logRetention;
+        var finalLogRollups = logRollups;
+        var finalContentCompressor = contentCompressor;
+        var finalRelayForwarder = relayForwarder;
+        var finalLogBatchWriter = logBatchWriter;
+        var finalLogStore = logStore;
+        var finalConnectionPool = connectionPool;
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             log.info("Shutting down Logflow...");
-            connectionPool.close();
+            if (finalLogRetention != null) {
+                finalLogRetention.close();
+            }
+            tailBroadcaster.close();
+            rateLimiter.close();
+            if (logSpool != null) {
+                logSpool.close();
+            }
+            if (finalRelayForwarder != null) {
+                finalRelayForwarder.close();
+            }
+            if (finalLogBatchWriter != null) {
+                finalLogBatchWriter.close();
+                finalLogStore.close();
+                groupConnectionPools.forEach(HikariConnectionPool::close);
+            }
+            if (finalContentCompressor != null) {
+                finalContentCompressor.close();
+            }
+            if (searchIndex != null) {
+                searchIndex.close();
+            }
+            if (finalLogRollups != null) {
+                finalLogRollups.close();
+            }
+            if (finalConnectionPool != null) {
+                finalConnectionPool.close();
+            }
             log.info("Logflow shutdown");
         }));
         log.info("Logflow started");
-        setupDatabase(connectionPool);
     }
 
-    private void setupDatabase(HikariConnectionPool connectionPool) {
+    private void registerGauges(LogflowMetrics metrics, HikariConnectionPool connectionPool, AuthHandler authHandler, ContextGroups contextGroups,
+                                LogBatchWriter logBatchWriter, RelayForwarder relayForwarder, TailBroadcaster tailBroadcaster, RateLimiter rateLimiter, LogSpool logSpool, SearchIndex searchIndex, ContentCompressor contentCompressor) {
+        if (connectionPool != null) {
+            metrics.gauge("logflow_hikari_connections", "Database pool connections by state", "state=\"active\"", connectionPool::getActiveConnections);
+            metrics.gauge("logflow_hikari_connections", "Database pool connections by state", "state=\"idle\"", connectionPool::getIdleConnections);
+            metrics.gauge("logflow_hikari_connections", "Database pool connections by state", "state=\"waiting\"", connectionPool::getThreadsAwaitingConnection);
+        }
+        var tokenDataCache = authHandler.getTokenDataCache();
+        metrics.gauge("logflow_auth_cache_hit_ratio", "Hit ratio of the token cache", "", () -> tokenDataCache.stats().hitRate());
+        metrics.gauge("logflow_auth_cache_size", "Tokens in the token cache", "", tokenDataCache::size);
+        if (logBatchWriter != null) {
+            metrics.gauge("logflow_batch_queue_size", "Logs waiting for the batch writer", "", logBatchWriter::getQueueSize);
+            for (int i = 0; i < contextGroups.size(); i++) {
+                var group = i;
+                var labels = "group=\"" + contextGroups.getNames().get(i) + "\"";
+                metrics.gauge("logflow_group_queue_size", "Logs waiting for the batch writer by context group", labels, () -> logBatchWriter.getQueueSize(group));
+                metrics.gauge("logflow_group_rejected_logs", "Logs rejected because the queue of their context group was full", labels, () -> logBatchWriter.getRejectedLogs(group));
+                metrics.histogram("logflow_group_queue_wait_seconds", "Time logs waited in the queue of their context group", labels, logBatchWriter.getWaitLatency(group));
+            }
+        }
+        if (relayForwarder != null) {
+            metrics.gauge("logflow_relay_queue_size", "Logs waiting to be forwarded upstream", "", relayForwarder::getQueueSize);
+            metrics.gauge("logflow_relay_forwarded_logs", "Logs accepted by the upstream", "", relayForwarder::getForwardedLogs);
+            metrics.gauge("logflow_relay_rejected_logs", "Logs rejected by the upstream", "", relayForwarder::getRejectedLogs);
+            metrics.gauge("logflow_relay_failed_requests", "Failed requests to the upstream", "", relayForwarder::getFailedRequests);
+            metrics.gauge("logflow_relay_auth_failures", "Requests the upstream rejected because of the relay token", "", relayForwarder::getAuthFailures);
+            metrics.gauge("logflow_relay_sent_bytes", "Compressed bytes sent to the upstream", "", relayForwarder::getSentBytes);
+            metrics.gauge("logflow_relay_upstream_available", "Whether the last request to the upstream succeeded", "", () -> relayForwarder.isUpstreamAvailable() ? 1 : 0);
+        }
+        metrics.gauge("logflow_tail_subscribers", "Live tail subscribers", "", tailBroadcaster::getSubscriberCount);
+        metrics.gauge("logflow_tail_overruns", "Live tail ring buffer overruns", "", tailBroadcaster::getOverruns);
+        metrics.gauge("logflow_rate_limit_in_flight", "Admitted logs waiting to be stored", "", rateLimiter::getInFlight);
+        metrics.gauge("logflow_rate_limit_throttled_logs", "Logs rejected by token or IP rate limits", "", rateLimiter::getThrottledLogs);
+        metrics.gauge("logflow_rate_limit_shed_logs", "Logs shed because too many were in flight", "", rateLimiter::getShedLogs);
+        if (logSpool != null) {
+            metrics.gauge("logflow_spool_pending_logs", "Spooled logs not yet drained to the log store", "", () -> logSpool.stats().pendingLogs());
+            metrics.gauge("logflow_spool_bytes", "Size of the spool on disk", "", () -> logSpool.stats().spoolBytes());
+            metrics.gauge("logflow_spool_dead_lettered_logs", "Spooled logs moved to the dead letter journal", "", () -> logSpool.stats().deadLetteredLogs());
+            metrics.gauge("logflow_spool_rejected_logs", "Logs rejected because the spool was full", "", () -> logSpool.stats().rejectedLogs());
+        }
+        if (searchIndex != null) {
+            metrics.gauge("logflow_search_indexed_documents", "Logs in the search index", "", () -> searchIndex.stats().indexedDocuments());
+        }
+        if (contentCompressor != null) {
+            metrics.gauge("logflow_content_compression_ratio", "Raw to stored size of compressed content", "", contentCompressor::getCompressionRatio);
+        }
+    }
+
+    private SearchIndex openSearchIndex(String directory, int retentionDays) {
+        try {
+            var searchIndex = new SearchIndex(Path.of(directory), retentionDays);
+            searchIndex.start();
+            return searchIndex;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open search index in " + directory, e);
+        }
+    }
+
+    private LogSpool openSpool(String directory, LogSink logSink, int drainBatchSize, int maxAttempts, long maxMegabytes) {
+        try {
+            var logSpool = new LogSpool(Path.of(directory), logSink, drainBatchSize, maxAttempts, Math.multiplyExact(maxMegabytes, 1024 * 1024));
+            logSpool.start();
+            return logSpool;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open spool in " + directory, e);
+        }
+    }
+
+    private LogStore openSegmentStore(String directory, int segmentMegabytes, int retentionDays, SearchIndex searchIndex, MetadataExtractor metadataExtractor) {
+        try {
+            var segmentLogStore = new SegmentLogStore(Path.of(directory), Math.multiplyExact(segmentMegabytes, 1024 * 1024), retentionDays, searchIndex, metadataExtractor);
+            segmentLogStore.start();
+            return segmentLogStore;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open log store in " + directory, e);
+        }
+    }
+
+    private void setupDatabase(HikariConnectionPool connectionPool, StorageMode storageMode, LogPartitions logPartitions) {
         log.info("Setting up database...");
         try (var connection = connectionPool.getConnection()) {
             log.info("Creating tables...");
+            var partitionClause = logPartitions.isSupported(connection) ? logPartitions.partitionClause(System.currentTimeMillis() / 1000) : "";
             try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS logs (" +
-                    "id INT NOT NULL AUTO_INCREMENT, " +
+                    "id BIGINT NOT NULL AUTO_INCREMENT, " +
                     "time_stamp TIMESTAMP NOT NULL, " +
                     "source VARCHAR(255) NOT NULL, " +
                     "source_ip VARCHAR(46) NOT NULL, " +
@@ -167,7 +454,46 @@ public class Logflow {
                     "metadata TEXT, " +
                     "level VARCHAR(15) NOT NULL, " +
                     "content TEXT, " +
-                    "PRIMARY KEY (id))")) {
+                    "content_blob MEDIUMBLOB, " +
+                    "PRIMARY KEY (id, time_stamp), " +
+                    "KEY logs_context_time (context, time_stamp), " +
+                    "KEY logs_level_time (level, time_stamp))" + partitionClause)) {
+                statement.execute();
+            }
+            upgradeLogTable(connection, logPartitions, StorageMode.PLAIN);
+            try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS log_content_dictionaries (" +
+                    "id INT NOT NULL AUTO_INCREMENT, " +
+                    "context VARCHAR(255) NOT NULL, " +
+                    "created_at TIMESTAMP NOT NULL, " +
+                    "dictionary MEDIUMBLOB NOT NULL, " +
+                    "PRIMARY KEY (id), " +
+                    "KEY log_content_dictionaries_context (context, id))")) {
+                statement.execute();
+            }
+            try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS log_metadata (" +
+                    "field VARCHAR(64) NOT NULL, " +
+                    "log_id BIGINT NOT NULL, " +
+                    "time_stamp TIMESTAMP NOT NULL, " +
+                    "string_value VARCHAR(255), " +
+                    "long_value BIGINT, " +
+                    "double_value DOUBLE, " +
+                    "PRIMARY KEY (field, log_id), " +
+                    "KEY log_metadata_string (field, string_value, log_id), " +
+                    "KEY log_metadata_long (field, long_value, log_id), " +
+                    "KEY log_metadata_double (field, double_value, log_id), " +
+                    "KEY log_metadata_log (log_id), " +
+                    "KEY log_metadata_time (time_stamp))")) {
+                statement.execute();
+            }
+            try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS log_rollups (" +
+                    "resolution TINYINT NOT NULL, " +
+                    "context VARCHAR(255) NOT NULL, " +
+                    "bucket TIMESTAMP NOT NULL, " +
+                    "source VARCHAR(255) NOT NULL, " +
+                    "level TINYINT NOT NULL, " +
+                    "count BIGINT NOT NULL, " +
+                    "PRIMARY KEY (resolution, context, bucket, source, level), " +
+                    "KEY log_rollups_resolution_bucket (resolution, bucket))")) {
                 statement.execute();
             }
             try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS users (" +
@@ -191,10 +517,117 @@ public class Logflow {
                     "PRIMARY KEY (id))")) {
                 statement.execute();
             }
+            if (storageMode == StorageMode.DICTIONARY) {
+                setupDictionaryTables(connection, logPartitions, partitionClause);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
         log.info("Database setup complete");
     }
 
+    private void upgradeLogTable(Connection connection, LogPartitions logPartitions, StorageMode storageMode) throws SQLException {
+        var table = storageMode.getTableName();
+        var metaData = connection.getMetaData();
+        var tableIdentifier = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+        try (var columns = metaData.getColumns(connection.getCatalog(), null, tableIdentifier, metaData.storesUpperCaseIdentifiers() ? "ID" : "id")) {
+            if (columns.next() && columns.getInt("DATA_TYPE") != Types.BIGINT) {
+                log.info("Changing {}.id to BIGINT...", table);
+                try (var statement = connection.prepareStatement("ALTER TABLE " + table + " MODIFY id BIGINT NOT NULL AUTO_INCREMENT")) {
+                    statement.execute();
+                }
+            }
+        }
+        try (var columns = metaData.getColumns(connection.getCatalog(), null, tableIdentifier, metaData.storesUpperCaseIdentifiers() ? "CONTENT_BLOB" : "content_blob")) {
+            if (!columns.next()) {
+                log.info("Adding {}.content_blob...", table);
+                try (var statement = connection.prepareStatement("ALTER TABLE " + table + " ADD COLUMN content_blob MEDIUMBLOB")) {
+                    statement.execute();
+                }
+            }
+        }
+        var indexes = new HashSet<String>();
+        try (var indexInfo = metaData.getIndexInfo(connection.getCatalog(), null, tableIdentifier, false, true)) {
+            while (indexInfo.next()) {
+                var indexName = indexInfo.getString("INDEX_NAME");
+                if (indexName != null) {
+                    indexes.add(indexName.toLowerCase());
+                }
+            }
+        }
+        var contextIndex = table + "_context_time";
+        var levelIndex = table + "_level_time";
+        if (!indexes.contains(contextIndex)) {
+            log.info("Creating index {}...", contextIndex);
+            try (var statement = connection.prepareStatement("CREATE INDEX " + contextIndex + " ON " + table + " (" + storageMode.getContextColumn() + ", time_stamp)")) {
+                statement.execute();
+            }
+        }
+        if (!indexes.contains(levelIndex)) {
+            log.info("Creating index {}...", levelIndex);
+            try (var statement = connection.prepareStatement("CREATE INDEX " + levelIndex + " ON " + table + " (level, time_stamp)")) {
+                statement.execute();
+            }
+        }
+        if (logPartitions.isSupported(connection) && !logPartitions.isPartitioned(connection, table)) {
+            log.warn("Table {} is not partitioned, retention will delete rows in chunks instead of dropping partitions", table);
+        }
+    }
+
+    private void setupDictionaryTables(Connection connection, LogPartitions logPartitions, String partitionClause) throws SQLException {
+        log.info("Creating dictionary tables...");
+        try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS log_dictionary (" +
+                "id INT NOT NULL AUTO_INCREMENT, " +
+                "kind TINYINT NOT NULL, " +
+                "name VARCHAR(255) NOT NULL, " +
+                "PRIMARY KEY (id), " +
+                "UNIQUE KEY log_dictionary_kind_name (kind, name))")) {
+            statement.execute();
+        }
+        try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS logs_dict (" +
+                "id BIGINT NOT NULL AUTO_INCREMENT, " +
+                "time_stamp TIMESTAMP NOT NULL, " +
+                "source_id INT NOT NULL, " +
+                "source_ip VARCHAR(46) NOT NULL, " +
+                "context_id INT NOT NULL, " +
+                "metadata TEXT, " +
+                "level TINYINT NOT NULL, " +
+                "content TEXT, " +
+                "content_blob MEDIUMBLOB, " +
+                "PRIMARY KEY (id, time_stamp), " +
+                "KEY logs_dict_context_time (context_id, time_stamp), " +
+                "KEY logs_dict_level_time (level, time_stamp))" + partitionClause)) {
+            statement.execute();
+        }
+        upgradeLogTable(connection, logPartitions, StorageMode.DICTIONARY);
+        try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS logs_dict_tags (" +
+                "tag_id INT NOT NULL, " +
+                "log_id BIGINT NOT NULL, " +
+                "PRIMARY KEY (tag_id, log_id), " +
+                "KEY logs_dict_tags_log (log_id, tag_id))")) {
+            statement.execute();
+        }
+        try (var statement = connection.prepareStatement("CREATE TABLE IF NOT EXISTS log_migrations (" +
+                "name VARCHAR(64) NOT NULL, " +
+                "last_id BIGINT NOT NULL, " +
+                "PRIMARY KEY (name))")) {
+            statement.execute();
+        }
+        long maxLegacyId;
+        try (var statement = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM logs"); var resultSet = statement.executeQuery()) {
+            resultSet.next();
+            maxLegacyId = resultSet.getLong(1);
+        }
+        long maxDictionaryId;
+        try (var statement = connection.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM logs_dict"); var resultSet = statement.executeQuery()) {
+            resultSet.next();
+            maxDictionaryId = resultSet.getLong(1);
+        }
+        if (maxLegacyId > maxDictionaryId) {
+            try (var statement = connection.prepareStatement("ALTER TABLE logs_dict AUTO_INCREMENT = " + (maxLegacyId + 1))) {
+                statement.execute();
+            }
+        }
+    }
+
 }
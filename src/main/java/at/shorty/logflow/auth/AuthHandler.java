@@ -1,13 +1,19 @@
 package at.shorty.logflow.auth;
 
 import at.shorty.logflow.hikari.HikariConnectionPool;
+import at.shorty.logflow.relay.RelayForwarder;
 import at.shorty.logflow.util.DataCache;
+import io.javalin.http.Context;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Slf4j
 @RequiredArgsConstructor
@@ -15,15 +21,21 @@ public class AuthHandler {
 
     private final String localAuthToken;
     private final HikariConnectionPool connectionPool;
+    private final RelayForwarder relayForwarder;
+    private final ExecutorService loaderExecutor = Executors.newFixedThreadPool(4, runnable -> {
+        var thread = new Thread(runnable, "Logflow Auth Loader");
+        thread.setDaemon(true);
+        return thread;
+    });
     @Getter
-    private final DataCache<String, TokenData> tokenDataCache = new DataCache<>() {
+    private final DataCache<String, TokenData> tokenDataCache = new DataCache<>(10_000, Duration.ofSeconds(5), Duration.ofMinutes(1), Duration.ofSeconds(1), loaderExecutor) {
         @Override
         public TokenData getData(String reference) {
             if (reference.equals(localAuthToken)) {
                 return new TokenData(UUID.fromString(localAuthToken), localAuthToken, new String[]{"*"}, new String[]{"*"});
             }
             if (connectionPool == null)
-                return null;
+                return relayForwarder == null ? null : relayForwarder.fetchTokenData(reference);
             try (var connection = connectionPool.getConnection()) {
                 var statement = connection.prepareStatement("SELECT * FROM tokens WHERE token = ?");
                 statement.setString(1, reference);
@@ -33,8 +45,9 @@ public class AuthHandler {
                 }
             } catch (SQLException e) {
                 log.error("Failed to get token data - connection is null", e);
+                throw new IllegalStateException("Failed to get token data", e);
             }
-            return null;
+            return relayForwarder == null ? null : relayForwarder.fetchTokenData(reference);
         }
     };
 
@@ -42,8 +55,30 @@ public class AuthHandler {
         if (token.length() > 1024) {
             return false;
         }
-        var tokenData = tokenDataCache.get(token, 1500);
+        var tokenData = tokenDataCache.get(token);
         return localAuthToken.equals(token) || tokenData != null;
     }
 
+    public void tokenInfo(Context handler) {
+        var token = handler.header("Authorization");
+        if (token == null) {
+            handler.status(401);
+            return;
+        }
+        handler.future(() -> authenticateAsync(token).thenAccept(tokenData -> {
+            if (tokenData == null) {
+                handler.status(401);
+                return;
+            }
+            handler.json(new TokenInfo(tokenData.uuid(), tokenData.readContexts(), tokenData.pushContexts()));
+        }));
+    }
+
+    public CompletableFuture<TokenData> authenticateAsync(String token) {
+        if (token.length() > 1024) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return tokenDataCache.getAsync(token);
+    }
+
 }
@@ -10,6 +10,10 @@ public record TokenData(UUID uuid, String token, String[] readContexts, String[]
                 return true;
             }
         }
+        return canReadAll();
+    }
+
+    public boolean canReadAll() {
         return readContexts.length == 1 && readContexts[0].equals("*");
     }
 
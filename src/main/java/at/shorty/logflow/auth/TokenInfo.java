@@ -0,0 +1,6 @@
+package at.shorty.logflow.auth;
+
+import java.util.UUID;
+
+public record TokenInfo(UUID uuid, String[] readContexts, String[] pushContexts) {
+}
@@ -27,6 +27,21 @@ public class HikariConnectionPool {
         }
     }
 
+    public int getActiveConnections() {
+        var poolMXBean = dataSource.getHikariPoolMXBean();
+        return poolMXBean == null ? 0 : poolMXBean.getActiveConnections();
+    }
+
+    public int getIdleConnections() {
+        var poolMXBean = dataSource.getHikariPoolMXBean();
+        return poolMXBean == null ? 0 : poolMXBean.getIdleConnections();
+    }
+
+    public int getThreadsAwaitingConnection() {
+        var poolMXBean = dataSource.getHikariPoolMXBean();
+        return poolMXBean == null ? 0 : poolMXBean.getThreadsAwaitingConnection();
+    }
+
     public void close() {
         dataSource.close();
     }
@@ -0,0 +1,47 @@
+package at.shorty.logflow.ingest;
+
+import at.shorty.logflow.ingest.packet.impl.OutPacketAck;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AckWindow {
+
+    private long nextSequence = 1;
+    private long acked;
+    private List<OutPacketLogResponse> nacks = new ArrayList<>();
+    private boolean flushScheduled;
+
+    public synchronized long assign(Long sequence) {
+        var assigned = sequence == null ? nextSequence : sequence;
+        nextSequence = assigned + 1;
+        return assigned;
+    }
+
+    public synchronized boolean complete(long sequence, OutPacketLogResponse outPacketLogResponse) {
+        acked = Math.max(acked, sequence);
+        if (!outPacketLogResponse.isSuccess()) {
+            var nack = new OutPacketLogResponse();
+            nack.setMessage(outPacketLogResponse.getMessage());
+            nack.setRetryAfter(outPacketLogResponse.getRetryAfter());
+            nack.setSequence(sequence);
+            nacks.add(nack);
+        }
+        if (flushScheduled) {
+            return false;
+        }
+        flushScheduled = true;
+        return true;
+    }
+
+    public synchronized OutPacketAck drain() {
+        flushScheduled = false;
+        var outPacketAck = new OutPacketAck();
+        outPacketAck.setAck(acked);
+        outPacketAck.setNacks(nacks);
+        nacks = new ArrayList<>();
+        return outPacketAck;
+    }
+
+}
@@ -1,37 +1,110 @@
 package at.shorty.logflow.ingest;
 
 import at.shorty.logflow.auth.AuthHandler;
-import at.shorty.logflow.hikari.HikariConnectionPool;
-import at.shorty.logflow.ingest.data.LogAction;
+import at.shorty.logflow.auth.TokenData;
+import at.shorty.logflow.ingest.data.LogSink;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.ingest.limit.RateLimiter;
 import at.shorty.logflow.ingest.packet.PacketHandler;
+import at.shorty.logflow.ingest.packet.binary.BinaryPacketCodec;
 import at.shorty.logflow.ingest.packet.impl.InPacketAuth;
 import at.shorty.logflow.ingest.packet.impl.InPacketLog;
 import at.shorty.logflow.ingest.packet.impl.OutPacketAuthResponse;
 import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
 import at.shorty.logflow.ingest.source.IngestSource;
+import at.shorty.logflow.ingest.source.WsOutputStream;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import at.shorty.logflow.tail.TailBroadcaster;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import io.javalin.http.Context;
 import io.javalin.websocket.WsConfig;
 import io.javalin.websocket.WsContext;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.*;
-import java.net.InetAddress;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.net.SocketException;
-import java.sql.SQLException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 @Slf4j
 @RequiredArgsConstructor
 public class IngestHandler {
 
+    private static final int MAX_BULK_PACKETS = 10000;
+    private static final boolean[] NAME_CHARACTERS = new boolean[128];
+    private static final OutPacketLogResponse OK_RESPONSE = new OutPacketLogResponse();
+    private static final String OK_RESPONSE_JSON = "{\"success\":true,\"message\":\"OK\"}";
+    private static final byte[] OK_RESPONSE_JSON_LINE = (OK_RESPONSE_JSON + "\n").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OK_RESPONSE_BINARY;
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            NAME_CHARACTERS[c] = true;
+            NAME_CHARACTERS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            NAME_CHARACTERS[c] = true;
+        }
+        NAME_CHARACTERS['_'] = true;
+        OK_RESPONSE.setSuccess(true);
+        OK_RESPONSE.setMessage("OK");
+        OK_RESPONSE_BINARY = BinaryPacketCodec.encodeResponse(OK_RESPONSE);
+    }
+
     private final PacketHandler packetHandler;
     private final AuthHandler authHandler;
-    private final HikariConnectionPool connectionPool;
+    private final LogSink logSink;
+    private final TailBroadcaster tailBroadcaster;
+    private final RateLimiter rateLimiter;
+    @Getter
+    private final LogflowMetrics metrics;
+    private final long ackFlushMillis;
+    private final Set<String> trustedRelays;
+    private final StorageMode storageMode;
+    private final Map<String, IngestSession> wsSessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ackFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Ack Flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    public void wsIngest(WsConfig ws, WsContext ctx) throws IOException {
+    public void wsIngest(WsConfig ws) {
+        ws.onConnect(this::wsConnect);
+        ws.onMessage(ctx -> wsMessage(ctx, ctx.message()));
+        ws.onBinaryMessage(ctx -> wsMessage(ctx, new String(ctx.data(), ctx.offset(), ctx.length(), StandardCharsets.UTF_8)));
+        ws.onClose(ctx -> {
+            var session = wsSessions.remove(ctx.getSessionId());
+            if (session != null) {
+                metrics.connectionClosed(IngestSource.Type.WEBSOCKET);
+                log.info("{} connection closed ({})", IngestSource.Type.WEBSOCKET.friendlyName, session.getIngestSource().address().getHostAddress());
+            }
+        });
+    }
+
+    private void wsConnect(WsContext ctx) throws IOException {
         var token = ctx.header("Authorization");
         if (token == null) {
             log.warn("Failed to authenticate websocket connection from {} (no auth token provided)", ctx.host());
@@ -47,39 +120,38 @@ public class IngestHandler {
             log.warn("Failed to authenticate websocket connection from {} (invalid auth token)", ctx.host());
             return;
         }
-        var address = InetAddress.getByName(ctx.host());
-        var pipedOutputStream = new PipedOutputStream();
-        var pipedInputStream = new PipedInputStream(pipedOutputStream);
-        var outputStream = new OutputStream() {
-            @Override
-            public void write(int b) {
-                ctx.send(b);
-            }
+        var address = ((InetSocketAddress) ctx.session.getRemoteAddress()).getAddress();
+        var ingestSource = new IngestSource(address, null, new WsOutputStream(ctx.session), (v) -> {
+            ctx.closeSession();
+            return null;
+        }, IngestSource.Type.WEBSOCKET);
+        var session = new IngestSession(ingestSource);
+        session.setAuthenticated(true);
+        session.setAuthToken(token);
+        if ("true".equalsIgnoreCase(ctx.header("X-Logflow-Pipelined"))) {
+            session.setAckWindow(new AckWindow());
+        }
+        wsSessions.put(ctx.getSessionId(), session);
+        metrics.connectionOpened(IngestSource.Type.WEBSOCKET);
+        log.info("Successfully authenticated websocket connection from {}", ctx.host());
+    }
 
-            @Override
-            public void write(byte @NotNull [] b) {
-                ctx.send(new String(b));
-            }
-        };
-        ws.onMessage(msgCtx -> {
-            try {
-                pipedOutputStream.write((msgCtx.message() + "\n").getBytes());
-            } catch (IOException e) {
-                log.warn("Failed to write to piped output stream", e);
+    private void wsMessage(WsContext ctx, String message) throws IOException {
+        var session = wsSessions.get(ctx.getSessionId());
+        if (session == null) {
+            return;
+        }
+        var lineStart = 0;
+        while (lineStart < message.length()) {
+            var lineEnd = message.indexOf('\n', lineStart);
+            if (lineEnd == -1) {
+                lineEnd = message.length();
             }
-        });
-        log.info("Successfully authenticated websocket connection from {}", ctx.host());
-        var ingestSource = new IngestSource(address, pipedInputStream, outputStream, (v) -> {
-            try {
-                pipedInputStream.close();
-                pipedOutputStream.close();
-                ctx.closeSession();
-            } catch (IOException e) {
-                log.warn("Failed to close piped streams and wsContext", e);
+            if (lineEnd > lineStart) {
+                handleLine(session, message.substring(lineStart, lineEnd));
             }
-            return null;
-        }, IngestSource.Type.WEBSOCKET);
-        ingest(ingestSource, true);
+            lineStart = lineEnd + 1;
+        }
     }
 
     public void httpIngest(Context handler) {
@@ -89,102 +161,127 @@ public class IngestHandler {
             handler.status(401);
             return;
         }
-        if (!authHandler.authenticate(authToken)) {
-            log.warn("Failed to authenticate HTTP request from {} (invalid auth token)", handler.req().getRemoteAddr());
-            handler.status(401);
-            return;
-        }
-        var logAction = new LogAction(connectionPool);
+        InPacketLog inPacketLog;
         try {
-            var inPacketLog = packetHandler.getObjectMapper().readValue(handler.body(), InPacketLog.class);
+            var body = handler.bodyAsBytes();
+            var parseStart = System.nanoTime();
+            inPacketLog = packetHandler.handleLogInput(body, 0, body.length);
             inPacketLog.setSourceIp(handler.ip());
-            if (inPacketLog.getContent() != null) {
-                inPacketLog.setContent(new String(Base64.getDecoder().decode(inPacketLog.getContent())));
-            }
-            if (inPacketLog.getTags() == null) {
-                inPacketLog.setTags(new String[0]);
+            decodeContent(inPacketLog);
+            metrics.getParseLatency().recordSince(parseStart);
+        } catch (IOException | IllegalArgumentException e) {
+            metrics.packet(IngestSource.Type.HTTP, LogflowMetrics.Outcome.REJECTED);
+            log.warn("Invalid packet received ({}) -> {}", handler.ip(), handler.body());
+            return;
+        }
+        var authStart = System.nanoTime();
+        handler.future(() -> authHandler.authenticateAsync(authToken).thenCompose(tokenData -> {
+            metrics.getAuthLatency().recordSince(authStart);
+            if (tokenData == null) {
+                metrics.packet(IngestSource.Type.HTTP, LogflowMetrics.Outcome.REJECTED);
+                log.warn("Failed to authenticate HTTP request from {} (invalid auth token)", inPacketLog.getSourceIp());
+                handler.status(401);
+                return CompletableFuture.completedFuture(null);
             }
-            var outPacketLogResponse = validatePacketAndReturnResponse(inPacketLog);
-            var json = packetHandler.getObjectMapper().writeValueAsString(outPacketLogResponse);
-            handler.result(json);
-            if (!outPacketLogResponse.isSuccess()) {
-                log.warn("Failed to log from {} -> Reason: {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), outPacketLogResponse.getMessage());
-                return;
+            return handleLog(inPacketLog, tokenData, IngestSource.Type.HTTP).thenAccept(outPacketLogResponse -> {
+                try {
+                    handler.result(outPacketLogResponse == OK_RESPONSE ? OK_RESPONSE_JSON : packetHandler.getObjectMapper().writeValueAsString(outPacketLogResponse));
+                } catch (JsonProcessingException e) {
+                    log.warn("Failed to write response to {}", inPacketLog.getSourceIp(), e);
+                    handler.status(500);
+                }
+            });
+        }));
+    }
+
+    public void httpBulkIngest(Context handler) {
+        var authToken = handler.req().getHeader("Authorization");
+        if (authToken == null) {
+            log.warn("Failed to authenticate HTTP request from {} (no auth token provided)", handler.req().getRemoteAddr());
+            handler.status(401);
+            return;
+        }
+        var sourceIp = handler.ip();
+        List<InPacketLog> inPacketLogs;
+        var parseStart = System.nanoTime();
+        try (var inputStream = decodeBody(handler)) {
+            inPacketLogs = packetHandler.handleLogStream(inputStream, MAX_BULK_PACKETS);
+            metrics.getParseLatency().record(System.nanoTime() - parseStart, inPacketLogs.size());
+        } catch (IOException e) {
+            metrics.packet(IngestSource.Type.HTTP, LogflowMetrics.Outcome.REJECTED);
+            log.warn("Invalid bulk request received ({}) -> {}", sourceIp, e.getMessage());
+            handler.status(400);
+            return;
+        }
+        var authStart = System.nanoTime();
+        handler.future(() -> authHandler.authenticateAsync(authToken).thenCompose(tokenData -> {
+            metrics.getAuthLatency().recordSince(authStart);
+            if (tokenData == null) {
+                for (int i = 0; i < inPacketLogs.size(); i++) {
+                    metrics.packet(IngestSource.Type.HTTP, LogflowMetrics.Outcome.REJECTED);
+                }
+                log.warn("Failed to authenticate HTTP request from {} (invalid auth token)", sourceIp);
+                handler.status(401);
+                return CompletableFuture.completedFuture(null);
             }
-            var tokenData = authHandler.getTokenDataCache().get(authToken, 5000);
-            if (!tokenData.isAllowedToPush(inPacketLog.getContext())) {
-                log.warn("Failed to log from {} -> Reason: No permissions - Context not allowed", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp() + " (token affected: " + tokenData.uuid() + ")");
-                return;
+            var responses = new ArrayList<CompletableFuture<OutPacketLogResponse>>(inPacketLogs.size());
+            var trustedRelay = trustedRelays.contains(sourceIp);
+            for (var inPacketLog : inPacketLogs) {
+                if (!trustedRelay || inPacketLog.getSourceIp() == null) {
+                    inPacketLog.setSourceIp(sourceIp);
+                }
+                try {
+                    decodeContent(inPacketLog);
+                } catch (IllegalArgumentException e) {
+                    metrics.packet(IngestSource.Type.HTTP, LogflowMetrics.Outcome.REJECTED);
+                    responses.add(CompletableFuture.completedFuture(failedResponse("Content is not valid Base64")));
+                    continue;
+                }
+                responses.add(handleLog(inPacketLog, tokenData, IngestSource.Type.HTTP));
             }
-            logAction.log(inPacketLog);
-            log.debug("Received log from {} -> {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), inPacketLog.getContent());
-        } catch (JsonProcessingException e) {
-            log.warn("Invalid packet received ({}) -> {}", handler.ip(), handler.body());
-        } catch (SQLException e) {
-            log.warn("Failed to save log from {} -> {}", handler.ip(), e.getMessage());
+            return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).thenAccept(v -> {
+                try {
+                    handler.result(packetHandler.getObjectMapper().writeValueAsString(responses.stream().map(CompletableFuture::join).toList()));
+                } catch (JsonProcessingException e) {
+                    log.warn("Failed to write response to {}", sourceIp, e);
+                    handler.status(500);
+                }
+            });
+        }));
+    }
+
+    private InputStream decodeBody(Context handler) throws IOException {
+        var inputStream = handler.req().getInputStream();
+        var contentEncoding = handler.header("Content-Encoding");
+        if (contentEncoding == null) {
+            return inputStream;
         }
+        return switch (contentEncoding.toLowerCase()) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(inputStream);
+            case "deflate" -> new InflaterInputStream(inputStream);
+            case "identity" -> inputStream;
+            default -> throw new IOException("Unsupported content encoding " + contentEncoding);
+        };
     }
 
-    public void ingest(IngestSource ingestSource, boolean preAuth) {
+    public void ingest(IngestSource ingestSource) {
         new Thread(() -> {
-            String authToken = null;
-            var logAction = new LogAction(connectionPool);
-            try (var bufferedReader = new BufferedReader(new InputStreamReader(ingestSource.inputStream()))) {
-                String line;
-                var authenticated = preAuth;
-                while ((line = bufferedReader.readLine()) != null) {
-                    if (!authenticated) {
-                        try {
-                            var inPacketAuth = packetHandler.handleJsonInput(line, InPacketAuth.class);
-                            authenticated = authHandler.authenticate(inPacketAuth.getToken());
-                            authToken = inPacketAuth.getToken();
-                            var outPacketAuthResponse = new OutPacketAuthResponse();
-                            outPacketAuthResponse.setSuccess(authenticated);
-                            var json = packetHandler.getObjectMapper().writeValueAsString(outPacketAuthResponse);
-                            ingestSource.outputStream().write((json + "\n").getBytes());
-                            if (authenticated) {
-                                log.info("Successfully authenticated {} connection from {}", ingestSource.type().friendlyName.toLowerCase(), ingestSource.address().getHostAddress());
-                            } else {
-                                log.warn("Failed to authenticate {} connection from {}", ingestSource.type().friendlyName.toLowerCase(), ingestSource.address().getHostAddress());
-                                ingestSource.close().apply(null);
-                            }
-                        } catch (JsonProcessingException e) {
-                            log.warn("Invalid packet received at authentication stage ({}) -> {}", ingestSource.address().getHostAddress(), line);
-                            ingestSource.close().apply(null);
+            var session = new IngestSession(ingestSource);
+            metrics.connectionOpened(ingestSource.type());
+            try (var inputStream = new BufferedInputStream(ingestSource.inputStream())) {
+                while (true) {
+                    if (session.isBinary()) {
+                        var frame = BinaryPacketCodec.readFrame(inputStream);
+                        if (frame == null) {
+                            break;
                         }
+                        handleFrame(session, ByteBuffer.wrap(frame));
                     } else {
-                        try {
-                            if (authToken == null) {
-                                log.warn("Failed to log from {} -> Reason: No auth token", ingestSource.address().getHostAddress());
-                                continue;
-                            }
-                            var inPacketLog = packetHandler.handleJsonInput(line, InPacketLog.class);
-                            inPacketLog.setSourceIp(ingestSource.address().getHostAddress());
-                            if (inPacketLog.getContent() != null) {
-                                inPacketLog.setContent(new String(Base64.getDecoder().decode(inPacketLog.getContent())));
-                            }
-                            if (inPacketLog.getTags() == null) {
-                                inPacketLog.setTags(new String[0]);
-                            }
-                            var outPacketLogResponse = validatePacketAndReturnResponse(inPacketLog);
-                            var json = packetHandler.getObjectMapper().writeValueAsString(outPacketLogResponse);
-                            ingestSource.outputStream().write((json + "\n").getBytes());
-                            if (!outPacketLogResponse.isSuccess()) {
-                                log.warn("Failed to log from {} -> Reason: {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), outPacketLogResponse.getMessage());
-                                continue;
-                            }
-                            var tokenData = authHandler.getTokenDataCache().get(authToken, 5000);
-                            if (!tokenData.isAllowedToPush(inPacketLog.getContext())) {
-                                log.warn("Failed to log from {} -> Reason: No permissions - Context not allowed", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp() + " (token affected: " + tokenData.uuid() + ")");
-                                return;
-                            }
-                            logAction.log(inPacketLog);
-                            log.debug("Received log from {} -> {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), inPacketLog.getContent());
-                        } catch (JsonProcessingException e) {
-                            log.warn("Invalid packet received ({}) -> {}", ingestSource.address().getHostAddress(), line);
-                        } catch (SQLException e) {
-                            log.warn("Failed to save log from {} -> {}", ingestSource.address().getHostAddress(), e.getMessage());
+                        var line = readLine(inputStream);
+                        if (line == null) {
+                            break;
                         }
+                        handleLine(session, line);
                     }
                 }
             } catch (SocketException e) {
@@ -192,51 +289,342 @@ public class IngestHandler {
             } catch (IOException e) {
                 log.warn("Unexpected exception while reading", e);
             }
+            metrics.connectionClosed(ingestSource.type());
             log.info("{} connection closed ({})", ingestSource.type().friendlyName, ingestSource.address().getHostAddress());
         }).start();
     }
 
+    private String readLine(InputStream inputStream) throws IOException {
+        var line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = inputStream.read()) != '\n') {
+            if (b == -1) {
+                return line.size() == 0 ? null : line.toString(StandardCharsets.UTF_8);
+            }
+            line.write(b);
+        }
+        var bytes = line.toByteArray();
+        var length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Handles the auth packet of a socket connection without blocking the calling thread on a token lookup. Further
+     * lines must not be handled before the returned future completes.
+     */
+    public CompletableFuture<Void> authenticate(IngestSession session, String line) {
+        var ingestSource = session.getIngestSource();
+        InPacketAuth inPacketAuth;
+        try {
+            inPacketAuth = packetHandler.handleJsonInput(line, InPacketAuth.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid packet received at authentication stage ({}) -> {}", ingestSource.address().getHostAddress(), line);
+            ingestSource.close().apply(null);
+            return CompletableFuture.completedFuture(null);
+        }
+        var token = inPacketAuth.getToken();
+        var tokenData = token == null ? CompletableFuture.<TokenData>completedFuture(null) : authHandler.authenticateAsync(token);
+        return tokenData.thenAccept(data -> {
+            var authenticated = data != null;
+            session.setAuthenticated(authenticated);
+            session.setAuthToken(token);
+            session.setBinary(authenticated && BinaryPacketCodec.PROTOCOL_NAME.equals(inPacketAuth.getProtocol()));
+            if (authenticated && inPacketAuth.isPipelined()) {
+                session.setAckWindow(new AckWindow());
+            }
+            var outPacketAuthResponse = new OutPacketAuthResponse();
+            outPacketAuthResponse.setSuccess(authenticated);
+            outPacketAuthResponse.setPipelined(session.getAckWindow() != null);
+            try {
+                var json = packetHandler.getObjectMapper().writeValueAsString(outPacketAuthResponse);
+                ingestSource.outputStream().write((json + "\n").getBytes());
+            } catch (IOException e) {
+                log.debug("Failed to write auth response to {} -> {}", ingestSource.address().getHostAddress(), e.getMessage());
+                ingestSource.close().apply(null);
+                return;
+            }
+            if (authenticated) {
+                log.info("Successfully authenticated {} connection from {}", ingestSource.type().friendlyName.toLowerCase(), ingestSource.address().getHostAddress());
+            } else {
+                log.warn("Failed to authenticate {} connection from {}", ingestSource.type().friendlyName.toLowerCase(), ingestSource.address().getHostAddress());
+                ingestSource.close().apply(null);
+            }
+        });
+    }
+
+    public void handleLine(IngestSession session, String line) throws IOException {
+        var ingestSource = session.getIngestSource();
+        if (!session.isAuthenticated()) {
+            authenticate(session, line).join();
+            return;
+        }
+        try {
+            if (session.getAuthToken() == null) {
+                metrics.packet(ingestSource.type(), LogflowMetrics.Outcome.REJECTED);
+                log.warn("Failed to log from {} -> Reason: No auth token", ingestSource.address().getHostAddress());
+                nackInvalid(session, "No auth token");
+                return;
+            }
+            var parseStart = System.nanoTime();
+            var inPacketLog = packetHandler.handleLogInput(line);
+            inPacketLog.setSourceIp(session.getSourceIp());
+            decodeContent(inPacketLog);
+            metrics.getParseLatency().recordSince(parseStart);
+            queueResponse(session, inPacketLog);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            metrics.packet(ingestSource.type(), LogflowMetrics.Outcome.REJECTED);
+            log.warn("Invalid packet received ({}) -> {}", session.getSourceIp(), line);
+            nackInvalid(session, "Invalid packet");
+        }
+    }
+
+    public void handleLine(IngestSession session, byte[] bytes, int offset, int length) throws IOException {
+        if (!session.isAuthenticated() || session.getAuthToken() == null) {
+            handleLine(session, new String(bytes, offset, length, StandardCharsets.UTF_8));
+            return;
+        }
+        try {
+            var parseStart = System.nanoTime();
+            var inPacketLog = packetHandler.handleLogInput(bytes, offset, length);
+            inPacketLog.setSourceIp(session.getSourceIp());
+            decodeContent(inPacketLog);
+            metrics.getParseLatency().recordSince(parseStart);
+            queueResponse(session, inPacketLog);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            metrics.packet(session.getIngestSource().type(), LogflowMetrics.Outcome.REJECTED);
+            log.warn("Invalid packet received ({}) -> {}", session.getSourceIp(), new String(bytes, offset, length, StandardCharsets.UTF_8));
+            nackInvalid(session, "Invalid packet");
+        }
+    }
+
+    public void handleFrame(IngestSession session, ByteBuffer payload) {
+        try {
+            var parseStart = System.nanoTime();
+            var inPacketLog = BinaryPacketCodec.decodeLog(payload);
+            inPacketLog.setSourceIp(session.getSourceIp());
+            metrics.getParseLatency().recordSince(parseStart);
+            queueResponse(session, inPacketLog);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            metrics.packet(session.getIngestSource().type(), LogflowMetrics.Outcome.REJECTED);
+            log.warn("Invalid binary packet received ({}) -> {}", session.getSourceIp(), e.getMessage());
+            nackInvalid(session, "Invalid packet");
+        }
+    }
+
+    private void queueResponse(IngestSession session, InPacketLog inPacketLog) {
+        var authStart = System.nanoTime();
+        var tokenData = authHandler.getTokenDataCache().getAsync(session.getAuthToken());
+        var type = session.getIngestSource().type();
+        CompletableFuture<OutPacketLogResponse> response;
+        if (tokenData.isDone() && session.getTokenLookup().isDone()) {
+            metrics.getAuthLatency().recordSince(authStart);
+            response = handleLog(inPacketLog, tokenData.join(), type);
+        } else {
+            // Cache miss: resume on the session's thread once loaded, after the logs that were queued before this one
+            var handled = session.getTokenLookup().thenCombine(tokenData, (v, data) -> data).thenApplyAsync(data -> {
+                metrics.getAuthLatency().recordSince(authStart);
+                return handleLog(inPacketLog, data, type);
+            }, session.getExecutor());
+            session.setTokenLookup(handled.handle((future, e) -> null));
+            response = handled.thenCompose(future -> future);
+        }
+        // A failed response would leave the ack chain failed, so the connection would never be answered again
+        response = response.exceptionally(throwable -> {
+            metrics.packet(type, LogflowMetrics.Outcome.FAILED);
+            log.warn("Failed to handle log from {} -> {}", session.getSourceIp(), throwable.getMessage());
+            return failedResponse("Failed to save log");
+        });
+        var ackWindow = session.getAckWindow();
+        if (ackWindow == null) {
+            session.setAckChain(session.getAckChain().thenCombine(response, (v, outPacketLogResponse) -> outPacketLogResponse)
+                    .thenAccept(outPacketLogResponse -> writeResponse(session, outPacketLogResponse)));
+            return;
+        }
+        var sequence = ackWindow.assign(inPacketLog.getSequence());
+        session.setAckChain(session.getAckChain().thenCombine(response, (v, outPacketLogResponse) -> outPacketLogResponse)
+                .thenAccept(outPacketLogResponse -> completeAck(session, sequence, outPacketLogResponse)));
+    }
+
+    private void nackInvalid(IngestSession session, String message) {
+        var ackWindow = session.getAckWindow();
+        if (ackWindow == null) {
+            return;
+        }
+        var sequence = ackWindow.assign(null);
+        var outPacketLogResponse = failedResponse(message);
+        session.setAckChain(session.getAckChain().thenRun(() -> completeAck(session, sequence, outPacketLogResponse)));
+    }
+
+    private void completeAck(IngestSession session, long sequence, OutPacketLogResponse outPacketLogResponse) {
+        if (session.getAckWindow().complete(sequence, outPacketLogResponse)) {
+            ackFlusher.schedule(() -> flushAcks(session), ackFlushMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushAcks(IngestSession session) {
+        var outPacketAck = session.getAckWindow().drain();
+        var outputStream = session.getIngestSource().outputStream();
+        try {
+            var bytes = session.isBinary() ? BinaryPacketCodec.encodeAck(outPacketAck) : (packetHandler.getObjectMapper().writeValueAsString(outPacketAck) + "\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (outputStream) {
+                outputStream.write(bytes);
+            }
+        } catch (IOException e) {
+            log.debug("Failed to write acks to {} -> {}", session.getSourceIp(), e.getMessage());
+        }
+    }
+
+    private void decodeContent(InPacketLog inPacketLog) {
+        if (inPacketLog.getContent() != null) {
+            inPacketLog.setContent(new String(Base64.getDecoder().decode(inPacketLog.getContent()), StandardCharsets.UTF_8));
+        }
+    }
+
+    private CompletableFuture<OutPacketLogResponse> handleLog(InPacketLog inPacketLog, TokenData tokenData, IngestSource.Type type) {
+        if (inPacketLog.getTags() == null) {
+            inPacketLog.setTags(new String[0]);
+        }
+        if (tokenData == null) {
+            metrics.packet(type, LogflowMetrics.Outcome.REJECTED);
+            log.warn("Failed to log from {} -> Reason: Invalid auth token", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp());
+            return CompletableFuture.completedFuture(failedResponse("Invalid auth token"));
+        }
+        var validateStart = System.nanoTime();
+        var outPacketLogResponse = validate(inPacketLog);
+        metrics.getValidateLatency().recordSince(validateStart);
+        if (!outPacketLogResponse.isSuccess()) {
+            metrics.packet(type, LogflowMetrics.Outcome.REJECTED);
+            log.warn("Failed to log from {} -> Reason: {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), outPacketLogResponse.getMessage());
+            return CompletableFuture.completedFuture(outPacketLogResponse);
+        }
+        if (!tokenData.isAllowedToPush(inPacketLog.getContext())) {
+            metrics.packet(type, LogflowMetrics.Outcome.REJECTED);
+            log.warn("Failed to log from {} -> Reason: No permissions - Context not allowed", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp() + " (token affected: " + tokenData.uuid() + ")");
+            return CompletableFuture.completedFuture(failedResponse("No permissions - Context not allowed"));
+        }
+        if (rateLimiter != null) {
+            var admission = rateLimiter.admit(tokenData.uuid(), inPacketLog.getSourceIp(), inPacketLog.getLevel());
+            if (!admission.admitted()) {
+                metrics.packet(type, LogflowMetrics.Outcome.REJECTED);
+                if (log.isDebugEnabled()) {
+                    log.debug("Rejected log from {} -> {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), admission.message());
+                }
+                var throttledResponse = failedResponse(admission.message());
+                throttledResponse.setRetryAfter(admission.retryAfterMillis());
+                return CompletableFuture.completedFuture(throttledResponse);
+            }
+        }
+        tailBroadcaster.publish(inPacketLog);
+        var future = logSink.submit(inPacketLog);
+        if (rateLimiter != null) {
+            future = future.whenComplete((v, throwable) -> rateLimiter.release());
+        }
+        return future.handle((v, throwable) -> {
+            var cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof RejectedExecutionException) {
+                metrics.packet(type, LogflowMetrics.Outcome.REJECTED);
+                if (log.isDebugEnabled()) {
+                    log.debug("Rejected log from {} -> {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), cause.getMessage());
+                }
+                var throttledResponse = failedResponse(cause.getMessage());
+                throttledResponse.setRetryAfter(RateLimiter.SHED_RETRY_MILLIS);
+                return throttledResponse;
+            }
+            if (throwable != null) {
+                metrics.packet(type, LogflowMetrics.Outcome.FAILED);
+                log.warn("Failed to save log from {} -> {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), throwable.getMessage());
+                return failedResponse("Failed to save log");
+            }
+            metrics.accepted(type, inPacketLog.getContext());
+            if (log.isDebugEnabled()) {
+                log.debug("Received log from {} -> {}", inPacketLog.getSource() + "@" + inPacketLog.getSourceIp(), inPacketLog.getContent());
+            }
+            return outPacketLogResponse;
+        });
+    }
+
+    private void writeResponse(IngestSession session, OutPacketLogResponse outPacketLogResponse) {
+        var outputStream = session.getIngestSource().outputStream();
+        try {
+            byte[] bytes;
+            if (outPacketLogResponse == OK_RESPONSE) {
+                bytes = session.isBinary() ? OK_RESPONSE_BINARY : OK_RESPONSE_JSON_LINE;
+            } else {
+                bytes = session.isBinary() ? BinaryPacketCodec.encodeResponse(outPacketLogResponse) : (packetHandler.getObjectMapper().writeValueAsString(outPacketLogResponse) + "\n").getBytes(StandardCharsets.UTF_8);
+            }
+            synchronized (outputStream) {
+                outputStream.write(bytes);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private OutPacketLogResponse failedResponse(String message) {
+        var outPacketLogResponse = new OutPacketLogResponse();
+        outPacketLogResponse.setSuccess(false);
+        outPacketLogResponse.setMessage(message);
+        return outPacketLogResponse;
+    }
+
+    /**
+     * @return a response of its own, which the caller may change
+     */
     @NotNull
     public OutPacketLogResponse validatePacketAndReturnResponse(InPacketLog inPacketLog) {
-        var outPacketLogResponse = new OutPacketLogResponse();
+        var outPacketLogResponse = validate(inPacketLog);
+        if (outPacketLogResponse != OK_RESPONSE) {
+            return outPacketLogResponse;
+        }
+        var okResponse = new OutPacketLogResponse();
+        okResponse.setSuccess(true);
+        okResponse.setMessage(OK_RESPONSE.getMessage());
+        return okResponse;
+    }
+
+    /**
+     * Returns the shared {@link #OK_RESPONSE} for valid logs, so it must not escape this class.
+     */
+    private OutPacketLogResponse validate(InPacketLog inPacketLog) {
+        var tagsLength = Math.max(inPacketLog.getTags().length - 1, 0);
         for (String tag : inPacketLog.getTags()) {
-            if (!tag.matches("^[a-zA-Z0-9_]*$")) {
-                outPacketLogResponse.setSuccess(false);
-                outPacketLogResponse.setMessage("Tag " + tag + " contains invalid characters (only a-z, A-Z, 0-9 and _ are allowed)");
-                return outPacketLogResponse;
+            if (!isValidName(tag)) {
+                return failedResponse("Tag " + tag + " contains invalid characters (only a-z, A-Z, 0-9 and _ are allowed)");
+            }
+            if (storageMode == StorageMode.DICTIONARY && tag.length() > 255) {
+                return failedResponse("Tag " + tag + " is too long (max. 255 characters)");
             }
+            tagsLength += tag.length();
         }
-        if (String.join(",", inPacketLog.getTags()).length() > 4096) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Tags are too long (max. 4096 characters in total)");
-            return outPacketLogResponse;
+        if (tagsLength > 4096) {
+            return failedResponse("Tags are too long (max. 4096 characters in total)");
         }
         if (inPacketLog.getSource() == null || inPacketLog.getSource().isEmpty()) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Source is null or empty");
+            return failedResponse("Source is null or empty");
         } else if (inPacketLog.getTimestamp() == null) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Timestamp is null");
+            return failedResponse("Timestamp is null");
         } else if (inPacketLog.getLevel() == null) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Level is null");
+            return failedResponse("Level is null");
         } else if (inPacketLog.getContext() == null || inPacketLog.getContext().isEmpty()) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Context is null or empty");
+            return failedResponse("Context is null or empty");
         } else if (inPacketLog.getSource().length() > 255) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Source is too long (max. 255 characters)");
+            return failedResponse("Source is too long (max. 255 characters)");
         } else if (inPacketLog.getContext().length() > 255) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Context is too long (max. 255 characters)");
-        } else if (!inPacketLog.getContext().matches("^[a-zA-Z0-9_]*$")) {
-            outPacketLogResponse.setSuccess(false);
-            outPacketLogResponse.setMessage("Context contains invalid characters (only a-z, A-Z, 0-9 and _ are allowed)");
-        } else {
-            outPacketLogResponse.setSuccess(true);
-            outPacketLogResponse.setMessage("OK");
+            return failedResponse("Context is too long (max. 255 characters)");
+        } else if (!isValidName(inPacketLog.getContext())) {
+            return failedResponse("Context contains invalid characters (only a-z, A-Z, 0-9 and _ are allowed)");
         }
-        return outPacketLogResponse;
+        return OK_RESPONSE;
+    }
+
+    private static boolean isValidName(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            var c = name.charAt(i);
+            if (c >= NAME_CHARACTERS.length || !NAME_CHARACTERS[c]) {
+                return false;
+            }
+        }
+        return true;
     }
 
 }
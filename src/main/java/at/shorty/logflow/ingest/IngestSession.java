@@ -0,0 +1,29 @@
+package at.shorty.logflow.ingest;
+
+import at.shorty.logflow.ingest.source.IngestSource;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@Getter
+@Setter
+public class IngestSession {
+
+    private final IngestSource ingestSource;
+    private final String sourceIp;
+    private boolean authenticated;
+    private String authToken;
+    private boolean binary;
+    private AckWindow ackWindow;
+    private CompletableFuture<Void> ackChain = CompletableFuture.completedFuture(null);
+    private CompletableFuture<?> tokenLookup = CompletableFuture.completedFuture(null);
+    private Executor executor = Runnable::run;
+
+    public IngestSession(IngestSource ingestSource) {
+        this.ingestSource = ingestSource;
+        this.sourceIp = ingestSource.address().getHostAddress();
+    }
+
+}
@@ -0,0 +1,7 @@
+package at.shorty.logflow.ingest.data;
+
+public enum ContentCodec {
+    NONE,
+    LZ4,
+    ZSTD
+}
@@ -0,0 +1,299 @@
+package at.shorty.logflow.ingest.data;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+public class ContentCompressor {
+
+    private static final int MIN_COMPRESS_BYTES = 64;
+    private static final int SAMPLE_RATE = 8;
+    private static final int MAX_SAMPLES = 4000;
+    private static final int MIN_TRAINING_SAMPLES = 500;
+    private static final int DICTIONARY_BYTES = 16 * 1024;
+    private static final int ZSTD_LEVEL = 3;
+    private static final long RETRAIN_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final long SAMPLE_WARM_UP_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long MAX_SAMPLE_BYTES = 64L * 1024 * 1024;
+
+    @Getter
+    private final ContentCodec codec;
+    private final HikariConnectionPool connectionPool;
+    private final LZ4Compressor lz4Compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor lz4Decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+    private final Map<String, ActiveDictionary> activeDictionaries = new ConcurrentHashMap<>();
+    private final Map<Integer, ZstdDictDecompress> decompressDictionaries = new ConcurrentHashMap<>();
+    private final Map<String, Samples> samples = new ConcurrentHashMap<>();
+    private final AtomicLong sampleBytes = new AtomicLong();
+    private final AtomicInteger localDictionaryIds = new AtomicInteger();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Compression Trainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ContentCompressor(HikariConnectionPool connectionPool, ContentCodec codec) {
+        this.connectionPool = connectionPool;
+        this.codec = codec;
+    }
+
+    public void start(Duration trainInterval) {
+        if (codec != ContentCodec.ZSTD) {
+            return;
+        }
+        loadDictionaries();
+        executor.scheduleWithFixedDelay(this::train, trainInterval.toMillis(), trainInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public byte[] compress(String context, String content) {
+        if (codec == ContentCodec.NONE || content == null || content.length() < MIN_COMPRESS_BYTES) {
+            return null;
+        }
+        var raw = content.getBytes(StandardCharsets.UTF_8);
+        int dictionaryId = 0;
+        byte[] compressed;
+        if (codec == ContentCodec.LZ4) {
+            compressed = lz4Compressor.compress(raw);
+        } else {
+            var activeDictionary = activeDictionaries.get(context);
+            if (ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
+                sample(context, activeDictionary, raw);
+            }
+            if (activeDictionary == null) {
+                compressed = Zstd.compress(raw, ZSTD_LEVEL);
+            } else {
+                dictionaryId = activeDictionary.id();
+                compressed = Zstd.compress(raw, activeDictionary.dictionary());
+            }
+        }
+        var blob = new ByteArrayOutputStream(compressed.length + 8);
+        blob.write(codec.ordinal());
+        writeVarInt(blob, dictionaryId);
+        writeVarInt(blob, raw.length);
+        blob.writeBytes(compressed);
+        rawBytes.add(raw.length);
+        if (blob.size() >= raw.length) {
+            storedBytes.add(raw.length);
+            return null;
+        }
+        storedBytes.add(blob.size());
+        return blob.toByteArray();
+    }
+
+    /**
+     * Samples are only collected shortly before a context is (re)trained, so contexts with a fresh dictionary do not
+     * keep raw content in memory until their next retraining.
+     */
+    private void sample(String context, ActiveDictionary activeDictionary, byte[] raw) {
+        if (activeDictionary != null && System.currentTimeMillis() - activeDictionary.createdAt() < RETRAIN_MILLIS - SAMPLE_WARM_UP_MILLIS) {
+            return;
+        }
+        if (sampleBytes.get() + raw.length > MAX_SAMPLE_BYTES) {
+            return;
+        }
+        sampleBytes.addAndGet(samples.computeIfAbsent(context, key -> new Samples()).add(raw));
+    }
+
+    public String decompress(Connection connection, byte[] blob) throws SQLException {
+        var buffer = ByteBuffer.wrap(blob);
+        var blobCodec = ContentCodec.values()[buffer.get()];
+        var dictionaryId = readVarInt(buffer);
+        var rawLength = readVarInt(buffer);
+        var compressed = new byte[buffer.remaining()];
+        buffer.get(compressed);
+        byte[] raw;
+        if (blobCodec == ContentCodec.LZ4) {
+            raw = lz4Decompressor.decompress(compressed, rawLength);
+        } else if (dictionaryId == 0) {
+            raw = Zstd.decompress(compressed, rawLength);
+        } else {
+            raw = Zstd.decompress(compressed, decompressDictionary(connection, dictionaryId), rawLength);
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    public double getCompressionRatio() {
+        var stored = storedBytes.sum();
+        return stored == 0 ? 1 : (double) rawBytes.sum() / stored;
+    }
+
+    public int getDictionaryCount() {
+        return activeDictionaries.size();
+    }
+
+    public void train() {
+        var now = System.currentTimeMillis();
+        for (var entry : samples.entrySet()) {
+            var context = entry.getKey();
+            var activeDictionary = activeDictionaries.get(context);
+            if (activeDictionary != null && now - activeDictionary.createdAt() < RETRAIN_MILLIS) {
+                continue;
+            }
+            var contextSamples = entry.getValue().drainIfAtLeast(MIN_TRAINING_SAMPLES);
+            if (contextSamples == null) {
+                continue;
+            }
+            var contextSampleBytes = 0;
+            for (var sample : contextSamples) {
+                contextSampleBytes += sample.length;
+            }
+            sampleBytes.addAndGet(-contextSampleBytes);
+            try {
+                var trainer = new ZstdDictTrainer(contextSampleBytes, DICTIONARY_BYTES);
+                for (var sample : contextSamples) {
+                    trainer.addSample(sample);
+                }
+                var dictionary = trainer.trainSamples();
+                var id = saveDictionary(context, now, dictionary);
+                decompressDictionaries.put(id, new ZstdDictDecompress(dictionary));
+                activeDictionaries.put(context, new ActiveDictionary(id, now, new ZstdDictCompress(dictionary, ZSTD_LEVEL)));
+                log.info("Trained content dictionary {} for context {} ({} samples, {} KiB)", id, context, contextSamples.size(), dictionary.length / 1024);
+            } catch (RuntimeException | SQLException e) {
+                log.warn("Failed to train content dictionary for context {} -> {}", context, e.getMessage());
+            }
+        }
+    }
+
+    private int saveDictionary(String context, long createdAt, byte[] dictionary) throws SQLException {
+        if (connectionPool == null) {
+            return localDictionaryIds.incrementAndGet();
+        }
+        try (var connection = connectionPool.getConnection();
+             var statement = connection.prepareStatement("INSERT INTO log_content_dictionaries (context, created_at, dictionary) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            connection.setAutoCommit(true);
+            statement.setString(1, context);
+            statement.setTimestamp(2, new Timestamp(createdAt));
+            statement.setBytes(3, dictionary);
+            statement.executeUpdate();
+            try (var generatedKeys = statement.getGeneratedKeys()) {
+                generatedKeys.next();
+                return generatedKeys.getInt(1);
+            }
+        }
+    }
+
+    private void loadDictionaries() {
+        try (var connection = connectionPool.getConnection();
+             var statement = connection.prepareStatement("SELECT id, context, created_at, dictionary FROM log_content_dictionaries WHERE id IN (SELECT MAX(id) FROM log_content_dictionaries GROUP BY context)");
+             var resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                var id = resultSet.getInt(1);
+                var dictionary = resultSet.getBytes(4);
+                decompressDictionaries.put(id, new ZstdDictDecompress(dictionary));
+                activeDictionaries.put(resultSet.getString(2), new ActiveDictionary(id, resultSet.getTimestamp(3).getTime(), new ZstdDictCompress(dictionary, ZSTD_LEVEL)));
+            }
+            log.info("Loaded {} content dictionaries", activeDictionaries.size());
+        } catch (SQLException e) {
+            log.warn("Failed to load content dictionaries, they will be retrained -> {}", e.getMessage());
+        }
+    }
+
+    private ZstdDictDecompress decompressDictionary(Connection connection, int id) throws SQLException {
+        var dictionary = decompressDictionaries.get(id);
+        if (dictionary != null) {
+            return dictionary;
+        }
+        try (var statement = connection.prepareStatement("SELECT dictionary FROM log_content_dictionaries WHERE id = ?")) {
+            statement.setInt(1, id);
+            try (var resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException("Content dictionary " + id + " not found");
+                }
+                dictionary = new ZstdDictDecompress(resultSet.getBytes(1));
+            }
+        }
+        decompressDictionaries.put(id, dictionary);
+        return dictionary;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream outputStream, int value) {
+        while ((value & ~0x7F) != 0) {
+            outputStream.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        outputStream.write(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        var value = 0;
+        var shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private record ActiveDictionary(int id, long createdAt, ZstdDictCompress dictionary) {
+    }
+
+    private static class Samples {
+
+        private final List<byte[]> values = new ArrayList<>();
+        private long seen;
+
+        /**
+         * @return the change of the sampled bytes
+         */
+        private synchronized long add(byte[] value) {
+            seen++;
+            if (values.size() < MAX_SAMPLES) {
+                values.add(value);
+                return value.length;
+            }
+            var index = ThreadLocalRandom.current().nextLong(seen);
+            if (index < MAX_SAMPLES) {
+                return value.length - values.set((int) index, value).length;
+            }
+            return 0;
+        }
+
+        private synchronized List<byte[]> drainIfAtLeast(int minimum) {
+            if (values.size() < minimum) {
+                return null;
+            }
+            var drained = new ArrayList<>(values);
+            values.clear();
+            seen = 0;
+            return drained;
+        }
+
+    }
+
+}
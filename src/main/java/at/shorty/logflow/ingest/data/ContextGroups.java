@@ -0,0 +1,111 @@
+package at.shorty.logflow.ingest.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assignment of contexts to write groups. Every group has its own write queue with a weight and a capacity, contexts
+ * that are not assigned to a group share the group {@value #DEFAULT_GROUP}.
+ */
+public class ContextGroups {
+
+    public static final String DEFAULT_GROUP = "default";
+
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> groupByContext = new HashMap<>();
+    private final Map<String, Integer> weights;
+    private final Map<String, Integer> capacities;
+    private final Map<String, Integer> poolSizes;
+
+    /**
+     * @param groups     {@code group=context|context,...}
+     * @param weights    weight per group, groups without a weight get 1
+     * @param capacities queue capacity per group, groups without a capacity get the default capacity
+     * @param poolSizes  dedicated connection pool size per group, groups without one share the main connection pool
+     */
+    public ContextGroups(String groups, Map<String, Integer> weights, Map<String, Integer> capacities, Map<String, Integer> poolSizes) {
+        names.add(DEFAULT_GROUP);
+        if (groups != null) {
+            for (var group : groups.split(",")) {
+                if (group.isBlank()) {
+                    continue;
+                }
+                var separator = group.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Invalid context group (expected group=context|context): " + group);
+                }
+                var name = group.substring(0, separator).trim();
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+                for (var context : group.substring(separator + 1).split("\\|")) {
+                    groupByContext.put(context.trim(), names.indexOf(name));
+                }
+            }
+        }
+        for (var name : weights.keySet()) {
+            checkGroup(name);
+        }
+        for (var name : capacities.keySet()) {
+            checkGroup(name);
+        }
+        for (var name : poolSizes.keySet()) {
+            checkGroup(name);
+        }
+        this.weights = weights;
+        this.capacities = capacities;
+        this.poolSizes = poolSizes;
+    }
+
+    public static Map<String, Integer> parseValues(String values) {
+        var parsed = new HashMap<String, Integer>();
+        for (var value : values.split(",")) {
+            if (value.isBlank()) {
+                continue;
+            }
+            var separator = value.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid context group setting (expected group:value): " + value);
+            }
+            var number = Integer.parseInt(value.substring(separator + 1).trim());
+            if (number <= 0) {
+                throw new IllegalArgumentException("Context group setting must be positive: " + value);
+            }
+            parsed.put(value.substring(0, separator).trim(), number);
+        }
+        return parsed;
+    }
+
+    private void checkGroup(String name) {
+        if (!names.contains(name)) {
+            throw new IllegalArgumentException("Unknown context group " + name + " (define it in LOGFLOW_CONTEXT_GROUPS)");
+        }
+    }
+
+    public int groupOf(String context) {
+        return groupByContext.getOrDefault(context, 0);
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public int[] weights() {
+        return names.stream().mapToInt(name -> weights.getOrDefault(name, 1)).toArray();
+    }
+
+    public int[] capacities(int defaultCapacity) {
+        return names.stream().mapToInt(name -> capacities.getOrDefault(name, defaultCapacity)).toArray();
+    }
+
+    public int poolSize(int group) {
+        return poolSizes.getOrDefault(names.get(group), 0);
+    }
+
+}
@@ -0,0 +1,103 @@
+package at.shorty.logflow.ingest.data;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+@Slf4j
+@RequiredArgsConstructor
+public class DictionaryMigration {
+
+    private static final String NAME = "logs_to_logs_dict";
+    private static final String[] NO_TAGS = new String[0];
+
+    private final HikariConnectionPool connectionPool;
+    private final LogDictionary logDictionary;
+    private final ContentCompressor contentCompressor;
+    private final int chunkSize;
+
+    public void start() {
+        var thread = new Thread(this::run, "Logflow Dictionary Migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        try (var logAction = new LogAction(connectionPool, StorageMode.DICTIONARY, logDictionary, contentCompressor);
+             var connection = connectionPool.getConnection()) {
+            var lastId = readProgress(connection);
+            if (lastId < 0) {
+                log.info("Dictionary migration already completed");
+                return;
+            }
+            log.info("Migrating logs to dictionary storage (starting after id {})...", lastId);
+            var migrated = 0L;
+            while (true) {
+                var inPacketLogs = new ArrayList<InPacketLog>(chunkSize);
+                var ids = new long[chunkSize];
+                try (var statement = connection.prepareStatement("SELECT id, time_stamp, source, source_ip, context, tags, metadata, level, content, content_blob FROM logs WHERE id > ? ORDER BY id LIMIT ?")) {
+                    statement.setLong(1, lastId);
+                    statement.setInt(2, chunkSize);
+                    try (var resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            ids[inPacketLogs.size()] = resultSet.getLong(1);
+                            var inPacketLog = new InPacketLog();
+                            inPacketLog.setTimestamp(new Date(resultSet.getTimestamp(2).getTime()));
+                            inPacketLog.setSource(resultSet.getString(3));
+                            inPacketLog.setSourceIp(resultSet.getString(4));
+                            inPacketLog.setContext(resultSet.getString(5));
+                            var tags = resultSet.getString(6);
+                            inPacketLog.setTags(tags.isEmpty() ? NO_TAGS : tags.split(","));
+                            inPacketLog.setMetadata(resultSet.getString(7));
+                            inPacketLog.setLevel(Level.valueOf(resultSet.getString(8)));
+                            var contentBlob = resultSet.getBytes(10);
+                            inPacketLog.setContent(contentBlob == null ? resultSet.getString(9) : contentCompressor.decompress(connection, contentBlob));
+                            inPacketLogs.add(inPacketLog);
+                        }
+                    }
+                }
+                if (inPacketLogs.isEmpty()) {
+                    break;
+                }
+                var size = inPacketLogs.size();
+                logAction.migrate(inPacketLogs, size == chunkSize ? ids : Arrays.copyOf(ids, size));
+                lastId = ids[size - 1];
+                migrated += size;
+                saveProgress(connection, lastId);
+                log.info("Migrated {} logs to dictionary storage (last id {})", migrated, lastId);
+            }
+            saveProgress(connection, -1);
+            log.info("Dictionary migration complete ({} logs migrated)", migrated);
+        } catch (SQLException | IllegalArgumentException e) {
+            log.error("Dictionary migration failed, it will resume on the next start", e);
+        }
+    }
+
+    private long readProgress(Connection connection) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT last_id FROM log_migrations WHERE name = ?")) {
+            statement.setString(1, NAME);
+            try (var resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong(1) : 0;
+            }
+        }
+    }
+
+    private void saveProgress(Connection connection, long lastId) throws SQLException {
+        connection.setAutoCommit(true);
+        try (var statement = connection.prepareStatement("INSERT INTO log_migrations (name, last_id) VALUES (?, ?) ON DUPLICATE KEY UPDATE last_id = ?")) {
+            statement.setString(1, NAME);
+            statement.setLong(2, lastId);
+            statement.setLong(3, lastId);
+            statement.executeUpdate();
+        }
+    }
+
+}
@@ -4,33 +4,207 @@ import at.shorty.logflow.hikari.HikariConnectionPool;
 import at.shorty.logflow.ingest.packet.impl.InPacketLog;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
 
-public class LogAction {
+public class LogAction implements AutoCloseable {
 
     private final HikariConnectionPool connectionPool;
+    private final StorageMode storageMode;
+    private final LogDictionary logDictionary;
+    private final ContentCompressor contentCompressor;
+    private final MetadataExtractor metadataExtractor;
     private Connection connection;
 
     public LogAction(HikariConnectionPool connectionPool) {
+        this(connectionPool, StorageMode.PLAIN, null);
+    }
+
+    public LogAction(HikariConnectionPool connectionPool, StorageMode storageMode, LogDictionary logDictionary) {
+        this(connectionPool, storageMode, logDictionary, null);
+    }
+
+    public LogAction(HikariConnectionPool connectionPool, StorageMode storageMode, LogDictionary logDictionary, ContentCompressor contentCompressor) {
+        this(connectionPool, storageMode, logDictionary, contentCompressor, null);
+    }
+
+    public LogAction(HikariConnectionPool connectionPool, StorageMode storageMode, LogDictionary logDictionary, ContentCompressor contentCompressor, MetadataExtractor metadataExtractor) {
         this.connectionPool = connectionPool;
+        this.storageMode = storageMode;
+        this.logDictionary = logDictionary;
+        this.contentCompressor = contentCompressor;
+        this.metadataExtractor = metadataExtractor;
         this.connection = connectionPool.getConnection();
     }
 
-    public void log(InPacketLog inPacketLog) throws SQLException {
+    public long log(InPacketLog inPacketLog) throws SQLException {
+        return log(List.of(inPacketLog))[0];
+    }
+
+    public long[] log(List<InPacketLog> inPacketLogs) throws SQLException {
+        ensureConnection();
+        if (storageMode == StorageMode.DICTIONARY) {
+            return logDictionary(inPacketLogs, null);
+        }
+        return logPlain(inPacketLogs);
+    }
+
+    public void migrate(List<InPacketLog> inPacketLogs, long[] ids) throws SQLException {
+        ensureConnection();
+        logDictionary(inPacketLogs, ids);
+    }
+
+    private void ensureConnection() throws SQLException {
         if (connection == null || !connection.isValid(1)) {
             connection = connectionPool.getConnection();
+            if (connection == null) {
+                throw new SQLException("No connection available");
+            }
         }
-        try (var statement = connection.prepareStatement("INSERT INTO logs (time_stamp, source, source_ip, context, tags, metadata, level, content) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
-            statement.setTimestamp(1, new Timestamp(inPacketLog.getTimestamp().getTime()));
-            statement.setString(2, inPacketLog.getSource());
-            statement.setString(3, inPacketLog.getSourceIp());
-            statement.setString(4, inPacketLog.getContext());
-            statement.setString(5, String.join(",", inPacketLog.getTags()));
-            statement.setString(6, inPacketLog.getMetadata());
-            statement.setString(7, inPacketLog.getLevel().name());
-            statement.setString(8, inPacketLog.getContent());
-            statement.execute();
+    }
+
+    private long[] logPlain(List<InPacketLog> inPacketLogs) throws SQLException {
+        connection.setAutoCommit(false);
+        try (var statement = connection.prepareStatement("INSERT INTO logs (time_stamp, source, source_ip, context, tags, metadata, level, content, content_blob) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (var inPacketLog : inPacketLogs) {
+                statement.setTimestamp(1, new Timestamp(inPacketLog.getTimestamp().getTime()));
+                statement.setString(2, inPacketLog.getSource());
+                statement.setString(3, inPacketLog.getSourceIp());
+                statement.setString(4, inPacketLog.getContext());
+                statement.setString(5, String.join(",", inPacketLog.getTags()));
+                statement.setString(6, inPacketLog.getMetadata());
+                statement.setString(7, inPacketLog.getLevel().name());
+                setContent(statement, 8, inPacketLog);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            var ids = generatedIds(statement, inPacketLogs.size());
+            logMetadata(inPacketLogs, ids);
+            connection.commit();
+            return ids;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private void setContent(PreparedStatement statement, int index, InPacketLog inPacketLog) throws SQLException {
+        var compressed = contentCompressor == null ? null : contentCompressor.compress(inPacketLog.getContext(), inPacketLog.getContent());
+        statement.setString(index, compressed == null ? inPacketLog.getContent() : null);
+        statement.setBytes(index + 1, compressed);
+    }
+
+    private void logMetadata(List<InPacketLog> inPacketLogs, long[] ids) throws SQLException {
+        if (metadataExtractor == null || !metadataExtractor.isEnabled()) {
+            return;
+        }
+        var metadataValues = new ArrayList<List<MetadataValue>>(ids.length);
+        var hasValues = false;
+        for (var inPacketLog : inPacketLogs) {
+            var extracted = metadataExtractor.extract(inPacketLog.getContext(), inPacketLog.getMetadata());
+            metadataValues.add(extracted);
+            hasValues |= !extracted.isEmpty();
+        }
+        if (!hasValues) {
+            return;
+        }
+        try (var statement = connection.prepareStatement("INSERT INTO log_metadata (field, log_id, time_stamp, string_value, long_value, double_value) VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                var timestamp = new Timestamp(inPacketLogs.get(i).getTimestamp().getTime());
+                for (var metadataValue : metadataValues.get(i)) {
+                    statement.setString(1, metadataValue.field());
+                    statement.setLong(2, ids[i]);
+                    statement.setTimestamp(3, timestamp);
+                    for (var type : MetadataType.values()) {
+                        statement.setObject(4 + type.ordinal(), type == metadataValue.type() ? metadataValue.value() : null);
+                    }
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private long[] generatedIds(Statement statement, int size) throws SQLException {
+        var ids = new long[size];
+        try (var generatedKeys = statement.getGeneratedKeys()) {
+            for (int i = 0; i < size && generatedKeys.next(); i++) {
+                ids[i] = generatedKeys.getLong(1);
+            }
+        }
+        return ids;
+    }
+
+    private long[] logDictionary(List<InPacketLog> inPacketLogs, long[] explicitIds) throws SQLException {
+        var size = inPacketLogs.size();
+        var sourceIds = new int[size];
+        var contextIds = new int[size];
+        var tagIds = new int[size][];
+        connection.setAutoCommit(true);
+        for (int i = 0; i < size; i++) {
+            var inPacketLog = inPacketLogs.get(i);
+            sourceIds[i] = logDictionary.idOf(connection, LogDictionary.Kind.SOURCE, inPacketLog.getSource());
+            contextIds[i] = logDictionary.idOf(connection, LogDictionary.Kind.CONTEXT, inPacketLog.getContext());
+            var tags = inPacketLog.getTags();
+            tagIds[i] = new int[tags.length];
+            for (int j = 0; j < tags.length; j++) {
+                tagIds[i][j] = logDictionary.idOf(connection, LogDictionary.Kind.TAG, tags[j]);
+            }
+        }
+        connection.setAutoCommit(false);
+        var sql = explicitIds == null
+                ? "INSERT INTO logs_dict (time_stamp, source_id, source_ip, context_id, metadata, level, content, content_blob) VALUES (?, ?, ?, ?, ?, ?, ?, ?)"
+                : "INSERT IGNORE INTO logs_dict (time_stamp, source_id, source_ip, context_id, metadata, level, content, content_blob, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (var statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+             var tagStatement = connection.prepareStatement("INSERT IGNORE INTO logs_dict_tags (tag_id, log_id) VALUES (?, ?)")) {
+            for (int i = 0; i < size; i++) {
+                var inPacketLog = inPacketLogs.get(i);
+                statement.setTimestamp(1, new Timestamp(inPacketLog.getTimestamp().getTime()));
+                statement.setInt(2, sourceIds[i]);
+                statement.setString(3, inPacketLog.getSourceIp());
+                statement.setInt(4, contextIds[i]);
+                statement.setString(5, inPacketLog.getMetadata());
+                statement.setInt(6, inPacketLog.getLevel().ordinal());
+                setContent(statement, 7, inPacketLog);
+                if (explicitIds != null) {
+                    statement.setLong(9, explicitIds[i]);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            var ids = explicitIds == null ? generatedIds(statement, size) : explicitIds;
+            var hasTags = false;
+            for (int i = 0; i < size; i++) {
+                for (var tagId : tagIds[i]) {
+                    tagStatement.setInt(1, tagId);
+                    tagStatement.setLong(2, ids[i]);
+                    tagStatement.addBatch();
+                    hasTags = true;
+                }
+            }
+            if (hasTags) {
+                tagStatement.executeBatch();
+            }
+            if (explicitIds == null) {
+                logMetadata(inPacketLogs, ids);
+            }
+            connection.commit();
+            return ids;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (connection != null) {
+            connection.close();
+            connection = null;
         }
     }
 }
@@ -0,0 +1,180 @@
+package at.shorty.logflow.ingest.data;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.metrics.LatencyHistogram;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import at.shorty.logflow.rollup.LogRollups;
+import at.shorty.logflow.search.SearchIndex;
+import at.shorty.logflow.store.LogStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+public class LogBatchWriter implements LogSink {
+
+    private final List<LogStore> logStores;
+    private final LogRollups logRollups;
+    private final SearchIndex searchIndex;
+    private final LogflowMetrics metrics;
+    private final ContextGroups contextGroups;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final WeightedFairQueue<PendingLog> queue;
+    private final LatencyHistogram[] waitLatencies;
+    private final LongAdder[] rejectedLogs;
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    /**
+     * @param logStores the log store of every context group, in the order of {@link ContextGroups#getNames()}
+     */
+    public LogBatchWriter(List<LogStore> logStores, LogRollups logRollups, SearchIndex searchIndex, LogflowMetrics metrics, ContextGroups contextGroups,
+                          int batchSize, long maxLingerMillis, int queueCapacity) {
+        this.logStores = logStores;
+        this.logRollups = logRollups;
+        this.searchIndex = searchIndex;
+        this.metrics = metrics;
+        this.contextGroups = contextGroups;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.queue = new WeightedFairQueue<>(contextGroups.weights(), contextGroups.capacities(queueCapacity), batchSize);
+        this.waitLatencies = new LatencyHistogram[contextGroups.size()];
+        this.rejectedLogs = new LongAdder[contextGroups.size()];
+        for (int i = 0; i < contextGroups.size(); i++) {
+            waitLatencies[i] = new LatencyHistogram();
+            rejectedLogs[i] = new LongAdder();
+        }
+    }
+
+    public void start(int writerThreads) {
+        running = true;
+        for (int i = 0; i < writerThreads; i++) {
+            var thread = new Thread(this::run, "Logflow Batch Writer #" + i);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> submit(InPacketLog inPacketLog) {
+        var group = contextGroups.groupOf(inPacketLog.getContext());
+        var pendingLog = new PendingLog(inPacketLog, new CompletableFuture<>(), System.nanoTime());
+        if (!running || !queue.offer(group, pendingLog)) {
+            rejectedLogs[group].increment();
+            pendingLog.future().completeExceptionally(new RejectedExecutionException("Log queue of context group " + contextGroups.getNames().get(group) + " is full"));
+        }
+        return pendingLog.future();
+    }
+
+    private void run() {
+        var batch = new ArrayList<PendingLog>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var group = queue.poll(batch, TimeUnit.MILLISECONDS.toNanos(100), maxLingerNanos);
+                if (group == -1) {
+                    continue;
+                }
+                var now = System.nanoTime();
+                for (var pendingLog : batch) {
+                    waitLatencies[group].record(now - pendingLog.enqueuedNanos());
+                }
+                flush(logStores.get(group), batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Failed to write batch of {} logs", batch.size(), e);
+                for (var pendingLog : batch) {
+                    pendingLog.future().completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(LogStore logStore, List<PendingLog> batch) {
+        if (searchIndex == null) {
+            store(logStore, batch);
+            return;
+        }
+        var mark = searchIndex.begin();
+        try {
+            store(logStore, batch);
+        } finally {
+            searchIndex.end(mark);
+        }
+    }
+
+    private void store(LogStore logStore, List<PendingLog> batch) {
+        var inPacketLogs = new ArrayList<InPacketLog>(batch.size());
+        for (var pendingLog : batch) {
+            inPacketLogs.add(pendingLog.inPacketLog());
+        }
+        long[] ids;
+        try {
+            var appendStart = System.nanoTime();
+            ids = logStore.append(inPacketLogs);
+            metrics.getStoreLatency().recordSince(appendStart);
+        } catch (IOException | RuntimeException e) {
+            // Unchecked failures (e.g. of the content compressor) must not kill the writer and leave the batch unanswered
+            log.warn("Failed to save batch of {} logs -> {}", batch.size(), e.getMessage());
+            for (var pendingLog : batch) {
+                pendingLog.future().completeExceptionally(e);
+            }
+            return;
+        }
+        for (var pendingLog : batch) {
+            if (logRollups != null) {
+                logRollups.record(pendingLog.inPacketLog());
+            }
+            pendingLog.future().complete(null);
+        }
+        if (searchIndex != null) {
+            // The logs are stored, a failing index update must not make senders retry them
+            try {
+                searchIndex.add(ids, inPacketLogs);
+            } catch (RuntimeException e) {
+                log.error("Failed to index batch of {} stored logs", batch.size(), e);
+            }
+        }
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueSize(int group) {
+        return queue.size(group);
+    }
+
+    public LatencyHistogram getWaitLatency(int group) {
+        return waitLatencies[group];
+    }
+
+    public long getRejectedLogs(int group) {
+        return rejectedLogs[group].sum();
+    }
+
+    public void close() {
+        running = false;
+        for (var thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record PendingLog(InPacketLog inPacketLog, CompletableFuture<Void> future, long enqueuedNanos) {
+    }
+
+}
@@ -0,0 +1,82 @@
+package at.shorty.logflow.ingest.data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class LogDictionary {
+
+    private final Map<Kind, Map<String, Integer>> ids = new EnumMap<>(Kind.class);
+    private final Map<Integer, String> values = new ConcurrentHashMap<>();
+
+    public LogDictionary() {
+        for (var kind : Kind.values()) {
+            ids.put(kind, new ConcurrentHashMap<>());
+        }
+    }
+
+    public int idOf(Connection connection, Kind kind, String value) throws SQLException {
+        var id = ids.get(kind).get(value);
+        if (id != null) {
+            return id;
+        }
+        try (var insert = connection.prepareStatement("INSERT IGNORE INTO log_dictionary (kind, name) VALUES (?, ?)")) {
+            insert.setInt(1, kind.ordinal());
+            insert.setString(2, value);
+            insert.executeUpdate();
+        }
+        id = findId(connection, kind, value);
+        if (id == null) {
+            throw new SQLException("Failed to resolve dictionary id for " + kind + " " + value);
+        }
+        return id;
+    }
+
+    public Integer findId(Connection connection, Kind kind, String value) throws SQLException {
+        var id = ids.get(kind).get(value);
+        if (id != null) {
+            return id;
+        }
+        try (var select = connection.prepareStatement("SELECT id FROM log_dictionary WHERE kind = ? AND name = ?")) {
+            select.setInt(1, kind.ordinal());
+            select.setString(2, value);
+            try (var resultSet = select.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                id = resultSet.getInt(1);
+            }
+        }
+        ids.get(kind).put(value, id);
+        values.put(id, value);
+        return id;
+    }
+
+    public String valueOf(Connection connection, int id) throws SQLException {
+        var value = values.get(id);
+        if (value != null) {
+            return value;
+        }
+        try (var select = connection.prepareStatement("SELECT kind, name FROM log_dictionary WHERE id = ?")) {
+            select.setInt(1, id);
+            try (var resultSet = select.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                value = resultSet.getString(2);
+                ids.get(Kind.values()[resultSet.getInt(1)]).put(value, id);
+                values.put(id, value);
+                return value;
+            }
+        }
+    }
+
+    public enum Kind {
+        SOURCE,
+        CONTEXT,
+        TAG
+    }
+
+}
@@ -0,0 +1,103 @@
+package at.shorty.logflow.ingest.data;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class LogPartitions {
+
+    private static final DateTimeFormatter PARTITION_NAME_FORMAT = DateTimeFormatter.ofPattern("'p'yyyyMMdd").withZone(ZoneOffset.UTC);
+    private static final String MAX_PARTITION = "pmax";
+    private static final int PARTITIONS_AHEAD = 3;
+
+    private final long bucketSeconds;
+
+    public LogPartitions(int bucketDays) {
+        this.bucketSeconds = TimeUnit.DAYS.toSeconds(bucketDays);
+    }
+
+    public boolean isSupported(Connection connection) throws SQLException {
+        return connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+    }
+
+    public String partitionClause(long nowSeconds) {
+        var clause = new StringBuilder(" PARTITION BY RANGE (UNIX_TIMESTAMP(time_stamp)) (");
+        var lowerBound = bucketStart(nowSeconds);
+        for (int i = 0; i < PARTITIONS_AHEAD; i++) {
+            clause.append(partitionDefinition(lowerBound)).append(", ");
+            lowerBound += bucketSeconds;
+        }
+        return clause.append("PARTITION ").append(MAX_PARTITION).append(" VALUES LESS THAN MAXVALUE)").toString();
+    }
+
+    public boolean isPartitioned(Connection connection, String table) throws SQLException {
+        return !list(connection, table).isEmpty();
+    }
+
+    public List<Partition> list(Connection connection, String table) throws SQLException {
+        var partitions = new ArrayList<Partition>();
+        try (var statement = connection.prepareStatement("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL ORDER BY PARTITION_ORDINAL_POSITION")) {
+            statement.setString(1, table);
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    var description = resultSet.getString(2);
+                    var upperBound = "MAXVALUE".equalsIgnoreCase(description) ? Long.MAX_VALUE : Long.parseLong(description);
+                    partitions.add(new Partition(resultSet.getString(1), upperBound));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    public void ensureAhead(Connection connection, String table, long nowSeconds) throws SQLException {
+        var partitions = list(connection, table);
+        var highestBound = partitions.stream().mapToLong(Partition::upperBound).filter(bound -> bound != Long.MAX_VALUE).max().orElse(bucketStart(nowSeconds));
+        var target = bucketStart(nowSeconds) + PARTITIONS_AHEAD * bucketSeconds;
+        while (highestBound < target) {
+            try (var statement = connection.prepareStatement("ALTER TABLE " + table + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO (" +
+                    partitionDefinition(highestBound) + ", PARTITION " + MAX_PARTITION + " VALUES LESS THAN MAXVALUE)")) {
+                statement.execute();
+            }
+            log.info("Added partition {} to {}", PARTITION_NAME_FORMAT.format(Instant.ofEpochSecond(highestBound)), table);
+            highestBound += bucketSeconds;
+        }
+    }
+
+    public List<Partition> expired(Connection connection, String table, long cutoffSeconds) throws SQLException {
+        var expired = new ArrayList<Partition>();
+        for (var partition : list(connection, table)) {
+            if (partition.upperBound() <= cutoffSeconds) {
+                expired.add(partition);
+            }
+        }
+        return expired;
+    }
+
+    public void drop(Connection connection, String table, Partition partition) throws SQLException {
+        try (var statement = connection.prepareStatement("ALTER TABLE " + table + " DROP PARTITION " + partition.name())) {
+            statement.execute();
+        }
+        log.info("Dropped partition {} of {}", partition.name(), table);
+    }
+
+    private String partitionDefinition(long lowerBound) {
+        return "PARTITION " + PARTITION_NAME_FORMAT.format(Instant.ofEpochSecond(lowerBound)) + " VALUES LESS THAN (" + (lowerBound + bucketSeconds) + ")";
+    }
+
+    private long bucketStart(long seconds) {
+        return seconds - Math.floorMod(seconds, bucketSeconds);
+    }
+
+    public record Partition(String name, long upperBound) {
+    }
+
+}
@@ -0,0 +1,237 @@
+package at.shorty.logflow.ingest.data;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class LogRetention {
+
+    private static final int DELETE_CHUNK_SIZE = 10_000;
+
+    private final HikariConnectionPool connectionPool;
+    private final StorageMode storageMode;
+    private final LogDictionary logDictionary;
+    private final LogPartitions logPartitions;
+    private final int retentionDays;
+    private final Map<String, Integer> contextRetentionDays;
+    private boolean hasMetadata;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LogRetention(HikariConnectionPool connectionPool, StorageMode storageMode, LogDictionary logDictionary, LogPartitions logPartitions, int retentionDays, Map<String, Integer> contextRetentionDays) {
+        this.connectionPool = connectionPool;
+        this.storageMode = storageMode;
+        this.logDictionary = logDictionary;
+        this.logPartitions = logPartitions;
+        this.retentionDays = retentionDays;
+        this.contextRetentionDays = contextRetentionDays;
+    }
+
+    public static Map<String, Integer> parsePolicies(String policies) {
+        var contextRetentionDays = new HashMap<String, Integer>();
+        for (var policy : policies.split(",")) {
+            if (policy.isBlank()) {
+                continue;
+            }
+            var separator = policy.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid retention policy (expected context:days): " + policy);
+            }
+            contextRetentionDays.put(policy.substring(0, separator).trim(), Integer.parseInt(policy.substring(separator + 1).trim()));
+        }
+        return contextRetentionDays;
+    }
+
+    public void start(Duration interval) {
+        executor.scheduleWithFixedDelay(this::run, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        var table = storageMode.getTableName();
+        try (var connection = connectionPool.getConnection()) {
+            if (connection == null) {
+                return;
+            }
+            connection.setAutoCommit(true);
+            var nowSeconds = System.currentTimeMillis() / 1000;
+            var partitioned = logPartitions.isSupported(connection) && logPartitions.isPartitioned(connection, table);
+            if (partitioned) {
+                logPartitions.ensureAhead(connection, table, nowSeconds);
+            }
+            var horizonDays = horizonDays();
+            var dropsPartitions = partitioned && horizonDays > 0;
+            hasMetadata = hasMetadata(connection);
+            if (dropsPartitions) {
+                for (var partition : logPartitions.expired(connection, table, cutoffSeconds(nowSeconds, horizonDays))) {
+                    if (storageMode == StorageMode.DICTIONARY) {
+                        deleteTagLinks(connection, partition);
+                    }
+                    logPartitions.drop(connection, table, partition);
+                    if (hasMetadata) {
+                        deleteMetadataBefore(connection, partition.upperBound());
+                    }
+                }
+            }
+            for (var policy : contextRetentionDays.entrySet()) {
+                if (dropsPartitions && policy.getValue() >= horizonDays) {
+                    continue;
+                }
+                var contextValue = contextValue(connection, policy.getKey());
+                if (contextValue == null) {
+                    continue;
+                }
+                var deleted = deleteChunked(connection, storageMode.getContextColumn() + " = ?", List.of(contextValue), cutoffSeconds(nowSeconds, policy.getValue()));
+                if (deleted > 0) {
+                    log.info("Deleted {} expired logs of context {}", deleted, policy.getKey());
+                }
+            }
+            if (retentionDays > 0 && !(dropsPartitions && retentionDays >= horizonDays)) {
+                var condition = new StringJoiner(", ", storageMode.getContextColumn() + " NOT IN (", ")");
+                var parameters = new ArrayList<>();
+                for (var context : contextRetentionDays.keySet()) {
+                    var contextValue = contextValue(connection, context);
+                    if (contextValue != null) {
+                        condition.add("?");
+                        parameters.add(contextValue);
+                    }
+                }
+                var deleted = deleteChunked(connection, parameters.isEmpty() ? "1 = 1" : condition.toString(), parameters, cutoffSeconds(nowSeconds, retentionDays));
+                if (deleted > 0) {
+                    log.info("Deleted {} expired logs", deleted);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.error("Failed to apply retention to {}", table, e);
+        }
+    }
+
+    public int horizonDays() {
+        return horizonDays(retentionDays, contextRetentionDays);
+    }
+
+    public static int horizonDays(int retentionDays, Map<String, Integer> contextRetentionDays) {
+        if (retentionDays <= 0) {
+            return 0;
+        }
+        var horizonDays = retentionDays;
+        for (var days : contextRetentionDays.values()) {
+            horizonDays = Math.max(horizonDays, days);
+        }
+        return horizonDays;
+    }
+
+    private long cutoffSeconds(long nowSeconds, int days) {
+        return nowSeconds - TimeUnit.DAYS.toSeconds(days);
+    }
+
+    private Object contextValue(Connection connection, String context) throws SQLException {
+        if (storageMode == StorageMode.DICTIONARY) {
+            return logDictionary.findId(connection, LogDictionary.Kind.CONTEXT, context);
+        }
+        return context;
+    }
+
+    private long deleteChunked(Connection connection, String condition, List<Object> parameters, long cutoffSeconds) throws SQLException {
+        var table = storageMode.getTableName();
+        var deleted = 0L;
+        while (true) {
+            var ids = new ArrayList<Long>(DELETE_CHUNK_SIZE);
+            try (var statement = connection.prepareStatement("SELECT id FROM " + table + " WHERE " + condition + " AND time_stamp < ? LIMIT " + DELETE_CHUNK_SIZE)) {
+                var index = 1;
+                for (var parameter : parameters) {
+                    statement.setObject(index++, parameter);
+                }
+                statement.setTimestamp(index, new Timestamp(TimeUnit.SECONDS.toMillis(cutoffSeconds)));
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return deleted;
+            }
+            deleteIds(connection, ids);
+            deleted += ids.size();
+        }
+    }
+
+    private void deleteTagLinks(Connection connection, LogPartitions.Partition partition) throws SQLException {
+        var lastId = Long.MIN_VALUE;
+        while (true) {
+            var ids = new ArrayList<Long>(DELETE_CHUNK_SIZE);
+            try (var statement = connection.prepareStatement("SELECT id FROM " + storageMode.getTableName() + " PARTITION (" + partition.name() + ") WHERE id > ? ORDER BY id LIMIT " + DELETE_CHUNK_SIZE)) {
+                statement.setLong(1, lastId);
+                try (var resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        ids.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            executeForIds(connection, "DELETE FROM logs_dict_tags WHERE log_id IN ", ids);
+            lastId = ids.get(ids.size() - 1);
+        }
+    }
+
+    private boolean hasMetadata(Connection connection) throws SQLException {
+        try (var statement = connection.prepareStatement("SELECT 1 FROM log_metadata LIMIT 1"); var resultSet = statement.executeQuery()) {
+            return resultSet.next();
+        }
+    }
+
+    /**
+     * Deletes the extracted metadata of dropped partitions, which hold every log older than the partition bound.
+     */
+    private void deleteMetadataBefore(Connection connection, long upperBoundSeconds) throws SQLException {
+        try (var statement = connection.prepareStatement("DELETE FROM log_metadata WHERE time_stamp < ? LIMIT " + DELETE_CHUNK_SIZE)) {
+            statement.setTimestamp(1, new Timestamp(TimeUnit.SECONDS.toMillis(upperBoundSeconds)));
+            while (statement.executeUpdate() == DELETE_CHUNK_SIZE) {
+                log.debug("Deleted {} metadata values of dropped partitions", DELETE_CHUNK_SIZE);
+            }
+        }
+    }
+
+    private void deleteIds(Connection connection, List<Long> ids) throws SQLException {
+        if (storageMode == StorageMode.DICTIONARY) {
+            executeForIds(connection, "DELETE FROM logs_dict_tags WHERE log_id IN ", ids);
+        }
+        if (hasMetadata) {
+            executeForIds(connection, "DELETE FROM log_metadata WHERE log_id IN ", ids);
+        }
+        executeForIds(connection, "DELETE FROM " + storageMode.getTableName() + " WHERE id IN ", ids);
+    }
+
+    private void executeForIds(Connection connection, String sql, List<Long> ids) throws SQLException {
+        var idList = new StringJoiner(", ", "(", ")");
+        for (var id : ids) {
+            idList.add(Long.toString(id));
+        }
+        try (var statement = connection.prepareStatement(sql + idList)) {
+            statement.executeUpdate();
+        }
+    }
+
+}
@@ -0,0 +1,11 @@
+package at.shorty.logflow.ingest.data;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface LogSink {
+
+    CompletableFuture<Void> submit(InPacketLog inPacketLog);
+
+}
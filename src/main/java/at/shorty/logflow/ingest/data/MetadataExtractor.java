@@ -0,0 +1,144 @@
+package at.shorty.logflow.ingest.data;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts configured top-level keys from JSON metadata, so they can be stored in the indexed {@code log_metadata} table.
+ */
+public class MetadataExtractor {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Pattern FIELD_PATTERN = Pattern.compile("[a-zA-Z0-9_]{1,64}");
+    private static final int MAX_CACHED_CONTEXTS = 10_000;
+
+    @Getter
+    private final Map<String, MetadataType> fieldTypes = new HashMap<>();
+    private final Map<String, MetadataType> globalFields;
+    private final Map<String, Map<String, MetadataType>> contextFields = new HashMap<>();
+    private final Map<String, Map<String, MetadataType>> rulesByContext = new ConcurrentHashMap<>();
+
+    /**
+     * @param fields        {@code field:type,...} extracted for all contexts, the type is {@code string} (default), {@code long} or {@code double}
+     * @param contextFields {@code context=field:type|field:type,...} extracted for single contexts only
+     */
+    public MetadataExtractor(String fields, String contextFields) {
+        this.globalFields = parseFields(fields == null ? "" : fields, ",");
+        if (contextFields != null) {
+            for (var entry : contextFields.split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                var separator = entry.indexOf('=');
+                if (separator <= 0) {
+                    throw new IllegalArgumentException("Invalid metadata fields (expected context=field:type|field:type): " + entry);
+                }
+                this.contextFields.put(entry.substring(0, separator).trim(), parseFields(entry.substring(separator + 1), "\\|"));
+            }
+        }
+    }
+
+    private Map<String, MetadataType> parseFields(String fields, String delimiter) {
+        var parsed = new HashMap<String, MetadataType>();
+        for (var field : fields.split(delimiter)) {
+            if (field.isBlank()) {
+                continue;
+            }
+            var separator = field.indexOf(':');
+            var name = (separator < 0 ? field : field.substring(0, separator)).trim();
+            var type = separator < 0 ? MetadataType.STRING : MetadataType.valueOf(field.substring(separator + 1).trim().toUpperCase());
+            if (!FIELD_PATTERN.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid metadata field name (only a-z, A-Z, 0-9 and _ are allowed): " + name);
+            }
+            var previous = fieldTypes.putIfAbsent(name, type);
+            if (previous != null && previous != type) {
+                throw new IllegalArgumentException("Metadata field " + name + " is configured as " + previous.name().toLowerCase() + " and " + type.name().toLowerCase());
+            }
+            parsed.put(name, type);
+        }
+        return parsed;
+    }
+
+    public boolean isEnabled() {
+        return !fieldTypes.isEmpty();
+    }
+
+    public Map<String, MetadataType> rules(String context) {
+        var rules = rulesByContext.get(context);
+        if (rules != null) {
+            return rules;
+        }
+        var specific = contextFields.get(context);
+        if (specific == null) {
+            rules = globalFields;
+        } else {
+            rules = new HashMap<>(globalFields);
+            rules.putAll(specific);
+        }
+        if (rulesByContext.size() < MAX_CACHED_CONTEXTS) {
+            rulesByContext.put(context, rules);
+        }
+        return rules;
+    }
+
+    public List<MetadataValue> extract(String context, String metadata) {
+        return extract(metadata, rules(context));
+    }
+
+    /**
+     * Streams the top-level keys of the metadata and stops as soon as all fields of the rules are found. Metadata that
+     * is not a JSON object yields no values, malformed JSON yields the values found before the error.
+     */
+    public static List<MetadataValue> extract(String metadata, Map<String, MetadataType> rules) {
+        if (metadata == null || rules.isEmpty() || !isJsonObject(metadata)) {
+            return List.of();
+        }
+        var values = new ArrayList<MetadataValue>(rules.size());
+        try (var parser = JSON_FACTORY.createParser(metadata)) {
+            parser.nextToken();
+            while (values.size() < rules.size() && parser.nextToken() == JsonToken.FIELD_NAME) {
+                var field = parser.getCurrentName();
+                var type = rules.get(field);
+                var token = parser.nextToken();
+                var value = type == null || contains(values, field) ? null : type.read(parser, token);
+                if (value == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                values.add(new MetadataValue(field, type, value));
+            }
+        } catch (IOException e) {
+            return values;
+        }
+        return values;
+    }
+
+    private static boolean isJsonObject(String metadata) {
+        for (int i = 0; i < metadata.length(); i++) {
+            var c = metadata.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == '{';
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(List<MetadataValue> values, String field) {
+        for (var value : values) {
+            if (value.field().equals(field)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
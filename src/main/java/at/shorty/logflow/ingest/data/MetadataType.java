@@ -0,0 +1,58 @@
+package at.shorty.logflow.ingest.data;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+
+@Getter
+@RequiredArgsConstructor
+public enum MetadataType {
+    STRING("string_value"),
+    LONG("long_value"),
+    DOUBLE("double_value");
+
+    public static final int MAX_STRING_LENGTH = 255;
+
+    private final String column;
+
+    /**
+     * Reads the current scalar value of the parser, or returns null if it cannot be stored as this type.
+     */
+    public Object read(JsonParser parser, JsonToken token) throws IOException {
+        if (token == null || !token.isScalarValue() || token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.VALUE_STRING || this == STRING) {
+            return convert(parser.getText());
+        }
+        if (this == LONG) {
+            return token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() != JsonParser.NumberType.BIG_INTEGER ? parser.getLongValue() : null;
+        }
+        if (!token.isNumeric()) {
+            return null;
+        }
+        var value = parser.getDoubleValue();
+        return Double.isFinite(value) ? value : null;
+    }
+
+    /**
+     * Converts a string to this type, or returns null if it cannot be stored as this type.
+     */
+    public Object convert(String value) {
+        try {
+            return switch (this) {
+                case STRING -> value.length() <= MAX_STRING_LENGTH ? value : null;
+                case LONG -> Long.parseLong(value.trim());
+                case DOUBLE -> {
+                    var parsed = Double.parseDouble(value.trim());
+                    yield Double.isFinite(parsed) ? parsed : null;
+                }
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package at.shorty.logflow.ingest.data;
+
+public record MetadataValue(String field, MetadataType type, Object value) {
+}
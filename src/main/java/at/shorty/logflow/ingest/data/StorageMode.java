@@ -0,0 +1,14 @@
+package at.shorty.logflow.ingest.data;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum StorageMode {
+    PLAIN("logs", "context"),
+    DICTIONARY("logs_dict", "context_id");
+
+    private final String tableName;
+    private final String contextColumn;
+}
@@ -0,0 +1,166 @@
+package at.shorty.logflow.ingest.data;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue with one lane per weight, served by deficit round robin: every visit credits a lane with
+ * {@code batchSize * weight / maxWeight} and hands out as many whole elements as it has credit for, so under load each
+ * lane gets its weighted share of batches no matter how much the other lanes queue up.
+ */
+public class WeightedFairQueue<T> {
+
+    private final Lane<T>[] lanes;
+    private final int batchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private int size;
+    private int waiting;
+    private int cursor;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public WeightedFairQueue(int[] weights, int[] capacities, int batchSize) {
+        var maxWeight = 0;
+        for (var weight : weights) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Weights must be positive");
+            }
+            maxWeight = Math.max(maxWeight, weight);
+        }
+        this.lanes = new Lane[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            lanes[i] = new Lane<>((double) batchSize * weights[i] / maxWeight, capacities[i]);
+        }
+        this.batchSize = batchSize;
+    }
+
+    public boolean offer(int lane, T element) {
+        lock.lock();
+        try {
+            var target = lanes[lane];
+            if (target.elements.size() >= target.capacity) {
+                return false;
+            }
+            target.elements.add(element);
+            size++;
+            if (waiting > 0) {
+                notEmpty.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to {@code timeoutNanos} for an element, then up to {@code lingerNanos} for a full batch, and moves the next
+     * batch of a single lane into {@code batch}.
+     *
+     * @return the lane of the batch, or -1 if the queue stayed empty
+     */
+    public int poll(List<T> batch, long timeoutNanos, long lingerNanos) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (!awaitSize(1, System.nanoTime() + timeoutNanos)) {
+                return -1;
+            }
+            awaitSize(batchSize, System.nanoTime() + lingerNanos);
+            if (size == 0) {
+                // Another consumer took the elements while this one lingered
+                return -1;
+            }
+            while (true) {
+                var lane = lanes[cursor];
+                if (lane.elements.isEmpty()) {
+                    lane.deficit = 0;
+                    lane.credited = false;
+                    cursor = (cursor + 1) % lanes.length;
+                    continue;
+                }
+                if (!lane.credited) {
+                    lane.deficit += lane.quantum;
+                    lane.credited = true;
+                }
+                var count = (int) Math.min(Math.min(lane.deficit, lane.elements.size()), batchSize);
+                if (count == 0) {
+                    lane.credited = false;
+                    cursor = (cursor + 1) % lanes.length;
+                    continue;
+                }
+                for (int i = 0; i < count; i++) {
+                    batch.add(lane.elements.poll());
+                }
+                size -= count;
+                lane.deficit -= count;
+                var laneIndex = cursor;
+                if (lane.elements.isEmpty() || lane.deficit < 1) {
+                    if (lane.elements.isEmpty()) {
+                        lane.deficit = 0;
+                    }
+                    lane.credited = false;
+                    cursor = (cursor + 1) % lanes.length;
+                }
+                return laneIndex;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitSize(int minSize, long deadlineNanos) throws InterruptedException {
+        while (size < minSize) {
+            var remaining = deadlineNanos - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            waiting++;
+            try {
+                notEmpty.awaitNanos(remaining);
+            } finally {
+                waiting--;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size(int lane) {
+        lock.lock();
+        try {
+            return lanes[lane].elements.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    private static final class Lane<T> {
+
+        private final ArrayDeque<T> elements = new ArrayDeque<>();
+        private final double quantum;
+        private final int capacity;
+        private double deficit;
+        private boolean credited;
+
+        private Lane(double quantum, int capacity) {
+            this.quantum = quantum;
+            this.capacity = capacity;
+        }
+
+    }
+
+}
@@ -0,0 +1,7 @@
+package at.shorty.logflow.ingest.limit;
+
+public record Admission(boolean admitted, String message, long retryAfterMillis) {
+
+    static final Admission ADMITTED = new Admission(true, null, 0);
+
+}
@@ -0,0 +1,103 @@
+package at.shorty.logflow.ingest.limit;
+
+import at.shorty.logflow.log.Level;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class RateLimiter {
+
+    public static final long SHED_RETRY_MILLIS = 1000;
+
+    private static final double BURST_SECONDS = 2;
+    private static final double[] SHED_THRESHOLDS = {0.5, 0.75, 0.9, 1.0, 1.0};
+
+    private final double tokenRate;
+    private final double ipRate;
+    private final int[] levelLimits = new int[Level.values().length];
+    private final Map<UUID, TokenBucket> tokenBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder throttledLogs = new LongAdder();
+    private final LongAdder shedLogs = new LongAdder();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Rate Limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RateLimiter(double tokenRate, double ipRate, int maxInFlight) {
+        this.tokenRate = tokenRate;
+        this.ipRate = ipRate;
+        for (var level : Level.values()) {
+            levelLimits[level.ordinal()] = Math.max(1, (int) (maxInFlight * SHED_THRESHOLDS[level.ordinal()]));
+        }
+        executor.scheduleWithFixedDelay(this::evictIdleBuckets, 1, 1, TimeUnit.MINUTES);
+    }
+
+    public Admission admit(UUID token, String sourceIp, Level level) {
+        var now = System.nanoTime();
+        if (tokenRate > 0) {
+            var waitNanos = tokenBuckets.computeIfAbsent(token, key -> new TokenBucket(tokenRate, tokenRate * BURST_SECONDS)).tryAcquire(now);
+            if (waitNanos > 0) {
+                throttledLogs.increment();
+                return new Admission(false, "Rate limit exceeded for token", toRetryMillis(waitNanos));
+            }
+        }
+        if (ipRate > 0 && sourceIp != null) {
+            var waitNanos = ipBuckets.computeIfAbsent(sourceIp, key -> new TokenBucket(ipRate, ipRate * BURST_SECONDS)).tryAcquire(now);
+            if (waitNanos > 0) {
+                throttledLogs.increment();
+                return new Admission(false, "Rate limit exceeded for " + sourceIp, toRetryMillis(waitNanos));
+            }
+        }
+        var limit = levelLimits[level.ordinal()];
+        while (true) {
+            var current = inFlight.get();
+            if (current >= limit) {
+                shedLogs.increment();
+                return new Admission(false, "Server overloaded, " + level.name() + " logs are shed", SHED_RETRY_MILLIS);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return Admission.ADMITTED;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getThrottledLogs() {
+        return throttledLogs.sum();
+    }
+
+    public long getShedLogs() {
+        return shedLogs.sum();
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void evictIdleBuckets() {
+        var now = System.nanoTime();
+        tokenBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        ipBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+
+    private static long toRetryMillis(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos + 999_999));
+    }
+
+}
@@ -0,0 +1,34 @@
+package at.shorty.logflow.ingest.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(Long.MIN_VALUE);
+
+    TokenBucket(double ratePerSecond, double burst) {
+        this.intervalNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.burstNanos = (long) (intervalNanos * Math.max(1, burst));
+    }
+
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            var current = theoreticalArrival.get();
+            var next = Math.max(current, nowNanos) + intervalNanos;
+            var waitNanos = next - nowNanos - burstNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    boolean isIdle(long nowNanos) {
+        return theoreticalArrival.get() < nowNanos;
+    }
+
+}
@@ -0,0 +1,112 @@
+package at.shorty.logflow.ingest.packet;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.util.StringInterner;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+
+public class InPacketLogDecoder {
+
+    private static final String[] NO_TAGS = new String[0];
+
+    private final StringInterner stringInterner = new StringInterner(4096);
+
+    public InPacketLog decode(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT && parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected log object");
+        }
+        var inPacketLog = new InPacketLog();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            var field = parser.currentName();
+            var token = parser.nextToken();
+            if (token == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "timestamp" -> inPacketLog.setTimestamp(readTimestamp(parser, token));
+                case "source" -> inPacketLog.setSource(readInterned(parser, token));
+                case "sourceIp" -> inPacketLog.setSourceIp(readString(parser, token));
+                case "context" -> inPacketLog.setContext(readInterned(parser, token));
+                case "tags" -> inPacketLog.setTags(readTags(parser, token));
+                case "metadata" -> inPacketLog.setMetadata(readString(parser, token));
+                case "level" -> inPacketLog.setLevel(readLevel(parser, token));
+                case "content" -> inPacketLog.setContent(readString(parser, token));
+                case "sequence" -> inPacketLog.setSequence(readSequence(parser, token));
+                default -> throw new JsonParseException(parser, "Unrecognized field \"" + field + "\"");
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "Expected end of log object");
+        }
+        return inPacketLog;
+    }
+
+    private Date readTimestamp(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return new Date(parser.getLongValue());
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return new StdDateFormat().parse(parser.getText());
+            } catch (ParseException e) {
+                throw new JsonParseException(parser, "Invalid timestamp " + parser.getText());
+            }
+        }
+        throw new JsonParseException(parser, "Invalid timestamp");
+    }
+
+    private String readString(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected string");
+        }
+        return parser.getText();
+    }
+
+    private String readInterned(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected string");
+        }
+        return stringInterner.intern(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    private String[] readTags(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            throw new JsonParseException(parser, "Expected tag array");
+        }
+        if (parser.nextToken() == JsonToken.END_ARRAY) {
+            return NO_TAGS;
+        }
+        var tags = new ArrayList<String>(4);
+        do {
+            tags.add(readInterned(parser, parser.currentToken()));
+        } while (parser.nextToken() != JsonToken.END_ARRAY);
+        return tags.toArray(NO_TAGS);
+    }
+
+    private long readSequence(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_NUMBER_INT) {
+            throw new JsonParseException(parser, "Expected sequence number");
+        }
+        return parser.getLongValue();
+    }
+
+    private Level readLevel(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Expected level name");
+        }
+        try {
+            return Level.valueOf(parser.getText());
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException(parser, "Unknown level " + parser.getText());
+        }
+    }
+
+}
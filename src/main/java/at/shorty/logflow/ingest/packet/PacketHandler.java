@@ -1,13 +1,22 @@
 package at.shorty.logflow.ingest.packet;
 
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Getter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
 @Getter
 public class PacketHandler {
 
     private final ObjectMapper objectMapper;
+    private final InPacketLogDecoder inPacketLogDecoder = new InPacketLogDecoder();
 
     public PacketHandler() {
         objectMapper = new ObjectMapper();
@@ -17,4 +26,35 @@ public class PacketHandler {
         return objectMapper.readValue(json, packetClass);
     }
 
+    public InPacketLog handleLogInput(String json) throws IOException {
+        try (var parser = objectMapper.getFactory().createParser(json)) {
+            return inPacketLogDecoder.decode(parser);
+        }
+    }
+
+    public InPacketLog handleLogInput(byte[] json, int offset, int length) throws IOException {
+        try (var parser = objectMapper.getFactory().createParser(json, offset, length)) {
+            return inPacketLogDecoder.decode(parser);
+        }
+    }
+
+    public List<InPacketLog> handleLogStream(InputStream inputStream, int maxPackets) throws IOException {
+        var inPacketLogs = new ArrayList<InPacketLog>();
+        try (var parser = objectMapper.getFactory().createParser(inputStream)) {
+            var token = parser.nextToken();
+            var array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                if (inPacketLogs.size() >= maxPackets) {
+                    throw new JsonParseException(parser, "Too many packets (max. " + maxPackets + ")");
+                }
+                inPacketLogs.add(inPacketLogDecoder.decode(parser));
+                token = parser.nextToken();
+            }
+        }
+        return inPacketLogs;
+    }
+
 }
@@ -0,0 +1,246 @@
+package at.shorty.logflow.ingest.packet.binary;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketAck;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import at.shorty.logflow.log.Level;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class BinaryPacketCodec {
+
+    public static final String PROTOCOL_NAME = "binary";
+    public static final int MAX_FRAME_LENGTH = 1024 * 1024;
+
+    private static final Level[] LEVELS = Level.values();
+
+    public static byte[] encodeLog(InPacketLog inPacketLog) {
+        var payload = new ByteArrayOutputStream(128);
+        writeVarLong(payload, inPacketLog.getTimestamp().getTime());
+        payload.write(inPacketLog.getLevel().ordinal());
+        writeString(payload, inPacketLog.getSource());
+        writeString(payload, inPacketLog.getContext());
+        var tags = inPacketLog.getTags() == null ? new String[0] : inPacketLog.getTags();
+        writeVarLong(payload, tags.length);
+        for (var tag : tags) {
+            writeString(payload, tag);
+        }
+        writeNullableString(payload, inPacketLog.getMetadata());
+        writeNullableString(payload, inPacketLog.getContent());
+        if (inPacketLog.getSequence() != null) {
+            writeVarLong(payload, inPacketLog.getSequence());
+        }
+        return frame(payload);
+    }
+
+    public static InPacketLog decodeLog(ByteBuffer payload) {
+        var inPacketLog = new InPacketLog();
+        inPacketLog.setTimestamp(new Date(readVarLong(payload)));
+        var level = payload.get() & 0xFF;
+        if (level >= LEVELS.length) {
+            throw new IllegalArgumentException("Unknown level " + level);
+        }
+        inPacketLog.setLevel(LEVELS[level]);
+        inPacketLog.setSource(readString(payload));
+        inPacketLog.setContext(readString(payload));
+        var tagCount = readLength(payload);
+        var tags = new String[tagCount];
+        for (int i = 0; i < tagCount; i++) {
+            tags[i] = readString(payload);
+        }
+        inPacketLog.setTags(tags);
+        inPacketLog.setMetadata(readNullableString(payload));
+        inPacketLog.setContent(readNullableString(payload));
+        if (payload.hasRemaining()) {
+            inPacketLog.setSequence(readVarLong(payload));
+        }
+        return inPacketLog;
+    }
+
+    public static byte[] encodeResponse(OutPacketLogResponse outPacketLogResponse) {
+        var payload = new ByteArrayOutputStream(32);
+        payload.write(outPacketLogResponse.isSuccess() ? 1 : 0);
+        writeNullableString(payload, outPacketLogResponse.getMessage());
+        if (outPacketLogResponse.getRetryAfter() != null) {
+            writeVarLong(payload, outPacketLogResponse.getRetryAfter());
+        }
+        return frame(payload);
+    }
+
+    public static OutPacketLogResponse decodeResponse(ByteBuffer payload) {
+        var outPacketLogResponse = new OutPacketLogResponse();
+        outPacketLogResponse.setSuccess(payload.get() == 1);
+        outPacketLogResponse.setMessage(readNullableString(payload));
+        if (payload.hasRemaining()) {
+            outPacketLogResponse.setRetryAfter(readVarLong(payload));
+        }
+        return outPacketLogResponse;
+    }
+
+    public static byte[] encodeAck(OutPacketAck outPacketAck) {
+        var payload = new ByteArrayOutputStream(16);
+        writeVarLong(payload, outPacketAck.getAck());
+        var nacks = outPacketAck.getNacks() == null ? List.<OutPacketLogResponse>of() : outPacketAck.getNacks();
+        writeVarLong(payload, nacks.size());
+        for (var nack : nacks) {
+            writeVarLong(payload, nack.getSequence());
+            writeNullableString(payload, nack.getMessage());
+            writeVarLong(payload, nack.getRetryAfter() == null ? 0 : nack.getRetryAfter() + 1);
+        }
+        return frame(payload);
+    }
+
+    public static OutPacketAck decodeAck(ByteBuffer payload) {
+        var outPacketAck = new OutPacketAck();
+        outPacketAck.setAck(readVarLong(payload));
+        var nackCount = readLength(payload);
+        var nacks = new ArrayList<OutPacketLogResponse>(nackCount);
+        for (int i = 0; i < nackCount; i++) {
+            var nack = new OutPacketLogResponse();
+            nack.setSequence(readVarLong(payload));
+            nack.setMessage(readNullableString(payload));
+            var retryAfter = readVarLong(payload);
+            nack.setRetryAfter(retryAfter == 0 ? null : retryAfter - 1);
+            nacks.add(nack);
+        }
+        outPacketAck.setNacks(nacks);
+        return outPacketAck;
+    }
+
+    public static int readFrameLength(ByteBuffer buffer) {
+        var start = buffer.position();
+        long length = 0;
+        for (int shift = 0; buffer.hasRemaining(); shift += 7) {
+            var b = buffer.get();
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (length > MAX_FRAME_LENGTH) {
+                    throw new IllegalArgumentException("Frame too long (max. " + MAX_FRAME_LENGTH + " bytes)");
+                }
+                return (int) length;
+            }
+            if (shift > 28) {
+                throw new IllegalArgumentException("Malformed frame length");
+            }
+        }
+        buffer.position(start);
+        return -1;
+    }
+
+    public static byte[] readFrame(InputStream inputStream) throws IOException {
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            var b = inputStream.read();
+            if (b == -1) {
+                if (shift == 0) {
+                    return null;
+                }
+                throw new EOFException("Unexpected end of stream in frame length");
+            }
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (shift > 28) {
+                throw new IOException("Malformed frame length");
+            }
+        }
+        if (length > MAX_FRAME_LENGTH) {
+            throw new IOException("Frame too long (max. " + MAX_FRAME_LENGTH + " bytes)");
+        }
+        var frame = inputStream.readNBytes((int) length);
+        if (frame.length < length) {
+            throw new EOFException("Unexpected end of stream in frame");
+        }
+        return frame;
+    }
+
+    private static byte[] frame(ByteArrayOutputStream payload) {
+        var frame = new ByteArrayOutputStream(payload.size() + 5);
+        writeVarLong(frame, payload.size());
+        frame.writeBytes(payload.toByteArray());
+        return frame.toByteArray();
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream outputStream, long value) {
+        while ((value & ~0x7FL) != 0) {
+            outputStream.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        outputStream.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            var b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static int readLength(ByteBuffer buffer) {
+        var length = readVarLong(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+
+    private static void writeString(ByteArrayOutputStream outputStream, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(outputStream, bytes.length);
+        outputStream.writeBytes(bytes);
+    }
+
+    private static void writeNullableString(ByteArrayOutputStream outputStream, String value) {
+        if (value == null) {
+            outputStream.write(0);
+            return;
+        }
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(outputStream, bytes.length + 1L);
+        outputStream.writeBytes(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        var length = readLength(buffer);
+        return decodeString(buffer, length);
+    }
+
+    private static String readNullableString(ByteBuffer buffer) {
+        var length = readVarLong(buffer);
+        if (length == 0) {
+            return null;
+        }
+        if (length < 0 || length - 1 > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid length " + (length - 1));
+        }
+        return decodeString(buffer, (int) (length - 1));
+    }
+
+    private static String decodeString(ByteBuffer buffer, int length) {
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        } else {
+            var bytes = new byte[length];
+            buffer.get(buffer.position(), bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+}
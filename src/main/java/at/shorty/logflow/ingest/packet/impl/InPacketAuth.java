@@ -9,5 +9,7 @@ import lombok.EqualsAndHashCode;
 public class InPacketAuth extends Packet {
 
     private String token;
+    private String protocol;
+    private boolean pipelined;
 
 }
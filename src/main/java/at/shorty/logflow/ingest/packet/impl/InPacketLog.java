@@ -2,6 +2,7 @@ package at.shorty.logflow.ingest.packet.impl;
 
 import at.shorty.logflow.ingest.packet.Packet;
 import at.shorty.logflow.log.Level;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -19,5 +20,7 @@ public class InPacketLog extends Packet {
     private String metadata;
     private Level level;
     private String content;
+    @JsonIgnore
+    private Long sequence;
 
 }
@@ -0,0 +1,18 @@
+package at.shorty.logflow.ingest.packet.impl;
+
+import at.shorty.logflow.ingest.packet.Packet;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.util.List;
+
+@Data
+@EqualsAndHashCode(callSuper=false)
+public class OutPacketAck extends Packet {
+
+        private long ack;
+        @JsonInclude(JsonInclude.Include.NON_EMPTY)
+        private List<OutPacketLogResponse> nacks;
+
+}
@@ -1,6 +1,7 @@
 package at.shorty.logflow.ingest.packet.impl;
 
 import at.shorty.logflow.ingest.packet.Packet;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -9,5 +10,7 @@ import lombok.EqualsAndHashCode;
 public class OutPacketAuthResponse extends Packet {
 
         private boolean success;
+        @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+        private boolean pipelined;
 
 }
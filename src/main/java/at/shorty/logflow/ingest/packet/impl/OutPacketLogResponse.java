@@ -1,6 +1,7 @@
 package at.shorty.logflow.ingest.packet.impl;
 
 import at.shorty.logflow.ingest.packet.Packet;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -10,5 +11,9 @@ public class OutPacketLogResponse extends Packet {
 
         private boolean success;
         private String message;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Long retryAfter;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Long sequence;
 
 }
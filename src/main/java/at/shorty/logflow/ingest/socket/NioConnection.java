@@ -0,0 +1,276 @@
+package at.shorty.logflow.ingest.socket;
+
+import at.shorty.logflow.ingest.IngestHandler;
+import at.shorty.logflow.ingest.IngestSession;
+import at.shorty.logflow.ingest.packet.binary.BinaryPacketCodec;
+import at.shorty.logflow.ingest.source.IngestSource;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+class NioConnection {
+
+    private static final int MAX_PENDING_LENGTH = BinaryPacketCodec.MAX_FRAME_LENGTH + 16;
+    private static final int MAX_GATHERED_WRITES = 64;
+    private static final long MAX_PENDING_WRITE_BYTES = 4 * 1024 * 1024;
+
+    private final NioEventLoop eventLoop;
+    private final SocketChannel channel;
+    private final IngestHandler ingestHandler;
+    private final IngestSession session;
+    private final Queue<ByteBuffer> pendingWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingWriteBytes = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    @Setter
+    private SelectionKey key;
+    private ByteBuffer pending;
+    private boolean authenticating;
+    private volatile boolean closing;
+    private volatile boolean closed;
+
+    NioConnection(NioEventLoop eventLoop, SocketChannel channel, IngestHandler ingestHandler) throws IOException {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.ingestHandler = ingestHandler;
+        var address = ((InetSocketAddress) channel.getRemoteAddress()).getAddress();
+        var outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte @NotNull [] b, int off, int len) throws IOException {
+                enqueue(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+            }
+        };
+        this.session = new IngestSession(new IngestSource(address, null, outputStream, (v) -> {
+            closing = true;
+            eventLoop.execute(this::close);
+            return null;
+        }, IngestSource.Type.SOCKET));
+        this.session.setExecutor(eventLoop::execute);
+    }
+
+    void read(ByteBuffer readBuffer, byte[] lineBuffer) {
+        readBuffer.clear();
+        try {
+            if (channel.read(readBuffer) == -1) {
+                close();
+                return;
+            }
+        } catch (IOException e) {
+            log.info("{} connection closed by remote host ({})", IngestSource.Type.SOCKET.friendlyName, session.getIngestSource().address().getHostAddress());
+            close();
+            return;
+        }
+        readBuffer.flip();
+        if (pending == null && !authenticating) {
+            consume(readBuffer, lineBuffer);
+            if (readBuffer.hasRemaining() && !closing) {
+                appendPending(readBuffer);
+            }
+            return;
+        }
+        appendPending(readBuffer);
+        consumePending(lineBuffer);
+    }
+
+    private void consumePending(byte[] lineBuffer) {
+        if (closing || authenticating || pending == null) {
+            return;
+        }
+        pending.flip();
+        consume(pending, lineBuffer);
+        if (pending != null) {
+            pending = pending.hasRemaining() ? pending.compact() : null;
+        }
+    }
+
+    /**
+     * Continues with the bytes received while the auth packet was checked, runs on the event loop.
+     */
+    void resume(byte[] lineBuffer) {
+        authenticating = false;
+        if (closing) {
+            return;
+        }
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        consumePending(lineBuffer);
+    }
+
+    private void consume(ByteBuffer buffer, byte[] lineBuffer) {
+        while (buffer.hasRemaining() && !closing && !authenticating) {
+            if (session.isBinary()) {
+                if (!consumeFrame(buffer)) {
+                    return;
+                }
+            } else if (!consumeLine(buffer, lineBuffer)) {
+                return;
+            }
+        }
+    }
+
+    private boolean consumeLine(ByteBuffer buffer, byte[] lineBuffer) {
+        var start = buffer.position();
+        var limit = buffer.limit();
+        for (int i = start; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                var length = i - start;
+                var bytes = length <= lineBuffer.length ? lineBuffer : new byte[length];
+                buffer.get(start, bytes, 0, length);
+                buffer.position(i + 1);
+                if (length > 0 && bytes[length - 1] == '\r') {
+                    length--;
+                }
+                if (!session.isAuthenticated()) {
+                    authenticate(new String(bytes, 0, length, StandardCharsets.UTF_8));
+                    return true;
+                }
+                try {
+                    ingestHandler.handleLine(session, bytes, 0, length);
+                } catch (IOException e) {
+                    log.warn("Unexpected exception while handling line", e);
+                    close();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void authenticate(String line) {
+        var authentication = ingestHandler.authenticate(session, line);
+        if (authentication.isDone()) {
+            return;
+        }
+        // Stop reading until the token is looked up, so no log is taken for an auth packet
+        authenticating = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        authentication.whenComplete((v, e) -> eventLoop.resume(this));
+    }
+
+    private boolean consumeFrame(ByteBuffer buffer) {
+        var start = buffer.position();
+        int length;
+        try {
+            length = BinaryPacketCodec.readFrameLength(buffer);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid frame from {} ({}), closing connection", session.getIngestSource().address().getHostAddress(), e.getMessage());
+            close();
+            return false;
+        }
+        if (length == -1 || buffer.remaining() < length) {
+            buffer.position(start);
+            return false;
+        }
+        var payload = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        ingestHandler.handleFrame(session, payload);
+        return true;
+    }
+
+    private void appendPending(ByteBuffer buffer) {
+        var length = buffer.remaining();
+        if (pending == null) {
+            pending = ByteBuffer.allocate(Math.max(length * 2, 256));
+        } else if (pending.remaining() < length) {
+            var required = pending.position() + length;
+            if (required > MAX_PENDING_LENGTH) {
+                log.warn("Packet too long from {} (max. {} bytes), closing connection", session.getIngestSource().address().getHostAddress(), MAX_PENDING_LENGTH);
+                close();
+                return;
+            }
+            var grown = ByteBuffer.allocate(Math.min(MAX_PENDING_LENGTH, Math.max(required, pending.capacity() * 2)));
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+        pending.put(buffer);
+    }
+
+    private void enqueue(ByteBuffer buffer) throws IOException {
+        if (closed) {
+            throw new IOException("Connection closed");
+        }
+        if (pendingWriteBytes.addAndGet(buffer.remaining()) > MAX_PENDING_WRITE_BYTES) {
+            // The client does not read its responses, close instead of buffering them without bound
+            log.warn("Too many unsent responses to {} (max. {} bytes), closing connection", session.getIngestSource().address().getHostAddress(), MAX_PENDING_WRITE_BYTES);
+            closing = true;
+            eventLoop.execute(this::close);
+            throw new IOException("Too many unsent responses");
+        }
+        pendingWrites.add(buffer);
+        if (flushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(this::flushWrites);
+        }
+    }
+
+    void flushWrites() {
+        flushScheduled.set(false);
+        if (closed) {
+            return;
+        }
+        var buffers = new ByteBuffer[MAX_GATHERED_WRITES];
+        try {
+            while (!pendingWrites.isEmpty()) {
+                var count = 0;
+                for (var buffer : pendingWrites) {
+                    buffers[count++] = buffer;
+                    if (count == buffers.length) {
+                        break;
+                    }
+                }
+                channel.write(buffers, 0, count);
+                for (int i = 0; i < count; i++) {
+                    if (buffers[i].hasRemaining()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    pendingWriteBytes.addAndGet(-pendingWrites.poll().capacity());
+                }
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            log.info("{} connection closed by remote host ({})", IngestSource.Type.SOCKET.friendlyName, session.getIngestSource().address().getHostAddress());
+            close();
+        }
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        closing = true;
+        pending = null;
+        pendingWrites.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close socket", e);
+        }
+        if (key != null) {
+            ingestHandler.getMetrics().connectionClosed(IngestSource.Type.SOCKET);
+        }
+        log.info("{} connection closed ({})", IngestSource.Type.SOCKET.friendlyName, session.getIngestSource().address().getHostAddress());
+    }
+
+}
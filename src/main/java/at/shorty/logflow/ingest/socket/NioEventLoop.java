@@ -0,0 +1,105 @@
+package at.shorty.logflow.ingest.socket;
+
+import at.shorty.logflow.ingest.IngestHandler;
+import at.shorty.logflow.ingest.source.IngestSource;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@Slf4j
+class NioEventLoop {
+
+    static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final IngestHandler ingestHandler;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final byte[] lineBuffer = new byte[READ_BUFFER_SIZE];
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    NioEventLoop(IngestHandler ingestHandler, String name) throws IOException {
+        this.ingestHandler = ingestHandler;
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, name);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void execute(Runnable task) {
+        tasks.add(task);
+        if (Thread.currentThread() != thread) {
+            selector.wakeup();
+        }
+    }
+
+    void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                var connection = new NioConnection(this, channel, ingestHandler);
+                connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+                ingestHandler.getMetrics().connectionOpened(IngestSource.Type.SOCKET);
+            } catch (IOException e) {
+                log.warn("Failed to register socket connection", e);
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        });
+    }
+
+    void resume(NioConnection connection) {
+        execute(() -> connection.resume(lineBuffer));
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                var iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    var key = iterator.next();
+                    iterator.remove();
+                    var connection = (NioConnection) key.attachment();
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read(readBuffer, lineBuffer);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        connection.flushWrites();
+                    }
+                }
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+            } catch (Exception e) {
+                log.warn("Unexpected exception in socket event loop", e);
+            }
+        }
+        for (var key : selector.keys()) {
+            ((NioConnection) key.attachment()).close();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Failed to close selector", e);
+        }
+    }
+
+    void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+}
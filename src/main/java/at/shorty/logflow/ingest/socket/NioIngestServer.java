@@ -0,0 +1,41 @@
+package at.shorty.logflow.ingest.socket;
+
+import at.shorty.logflow.ingest.IngestHandler;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+
+@Slf4j
+public class NioIngestServer {
+
+    private final NioEventLoop[] eventLoops;
+
+    public NioIngestServer(IngestHandler ingestHandler, int eventLoopCount) throws IOException {
+        this.eventLoops = new NioEventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new NioEventLoop(ingestHandler, "Logflow Socket Event Loop #" + i);
+        }
+    }
+
+    public void bind(int port) throws IOException {
+        for (var eventLoop : eventLoops) {
+            eventLoop.start();
+        }
+        try (var serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port));
+            log.info("Socket server started ({} event loops)", eventLoops.length);
+            var next = 0;
+            while (serverChannel.isOpen()) {
+                var channel = serverChannel.accept();
+                eventLoops[Math.floorMod(next++, eventLoops.length)].register(channel);
+            }
+        } finally {
+            for (var eventLoop : eventLoops) {
+                eventLoop.close();
+            }
+        }
+    }
+
+}
@@ -26,7 +26,7 @@ public record IngestSource(InetAddress address, InputStream inputStream, OutputS
 
     @RequiredArgsConstructor
     public enum Type {
-        SOCKET("Socket"), WEBSOCKET("Websocket");
+        SOCKET("Socket"), WEBSOCKET("Websocket"), HTTP("HTTP");
 
         public final String friendlyName;
 
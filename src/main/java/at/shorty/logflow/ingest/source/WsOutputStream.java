@@ -0,0 +1,91 @@
+package at.shorty.logflow.ingest.source;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+@Slf4j
+@RequiredArgsConstructor
+public class WsOutputStream extends OutputStream {
+
+    private static final int MAX_PENDING_LENGTH = 1024 * 1024;
+
+    private final Session session;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private boolean sending;
+    private boolean overflowed;
+
+    @Override
+    public void write(int b) {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte @NotNull [] b, int off, int len) {
+        String message;
+        synchronized (this) {
+            if (overflowed) {
+                return;
+            }
+            overflowed = pending.size() + len > MAX_PENDING_LENGTH;
+            if (overflowed) {
+                pending.reset();
+                message = null;
+            } else {
+                pending.write(b, off, len);
+                if (sending) {
+                    return;
+                }
+                sending = true;
+                message = drain();
+            }
+        }
+        if (message == null) {
+            // The client does not read its responses, close instead of buffering them without bound
+            log.warn("Too many unsent responses to {} (max. {} bytes), closing connection", session.getRemoteAddress(), MAX_PENDING_LENGTH);
+            session.close(StatusCode.POLICY_VIOLATION, "Responses are not read");
+            return;
+        }
+        send(message);
+    }
+
+    private String drain() {
+        var message = pending.toString(StandardCharsets.UTF_8);
+        pending.reset();
+        return message;
+    }
+
+    private void send(String message) {
+        session.getRemote().sendString(message, new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable throwable) {
+                log.warn("Failed to send websocket message -> {}", throwable.getMessage());
+                synchronized (WsOutputStream.this) {
+                    pending.reset();
+                    sending = false;
+                }
+            }
+
+            @Override
+            public void writeSuccess() {
+                String next;
+                synchronized (WsOutputStream.this) {
+                    if (pending.size() == 0) {
+                        sending = false;
+                        return;
+                    }
+                    next = drain();
+                }
+                send(next);
+            }
+        });
+    }
+
+}
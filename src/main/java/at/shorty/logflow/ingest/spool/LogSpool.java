@@ -0,0 +1,431 @@
+package at.shorty.logflow.ingest.spool;
+
+import at.shorty.logflow.ingest.data.LogSink;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.store.RecordCodec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32C;
+
+@Slf4j
+public class LogSpool implements LogSink {
+
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int QUEUE_CAPACITY = 65_536;
+    private static final int MAX_GROUP_SIZE = 4096;
+    private static final long MIN_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 30_000;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final String DEAD_LETTER_FILE = "dead-letter.journal";
+
+    private final Path directory;
+    private final LogSink logSink;
+    private final int drainBatchSize;
+    private final int maxAttempts;
+    private final long maxBytes;
+    private final BlockingQueue<PendingLog> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    private final CRC32C crc = new CRC32C();
+    private final CRC32C deadLetterCrc = new CRC32C();
+    private final Object drainSignal = new Object();
+    private final LongAdder journaledLogs = new LongAdder();
+    private final LongAdder drainedLogs = new LongAdder();
+    private final LongAdder deadLetteredLogs = new LongAdder();
+    private final LongAdder rejectedLogs = new LongAdder();
+    private final AtomicLong spoolBytes = new AtomicLong();
+    private final AtomicLong fsyncs = new AtomicLong();
+    private final List<Thread> threads = new ArrayList<>();
+    private FileChannel channel;
+    private long segmentSize;
+    private long nextSequence;
+    private volatile long durableSequence;
+    private volatile long truncations;
+    private volatile long drainedSequence;
+    private volatile double drainedLogsPerSecond;
+    private volatile boolean running;
+
+    /**
+     * @param maxAttempts delivery attempts before a log is moved to the dead letter journal, 0 retries forever
+     * @param maxBytes    size of the journal at which new logs are rejected, 0 is unlimited
+     */
+    public LogSpool(Path directory, LogSink logSink, int drainBatchSize, int maxAttempts, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.logSink = logSink;
+        this.drainBatchSize = drainBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.maxBytes = maxBytes;
+        Files.createDirectories(directory);
+        try (var files = Files.list(directory)) {
+            for (var path : (Iterable<Path>) files::iterator) {
+                var fileName = path.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.delete(path);
+                } else if (fileName.startsWith("spool-") && fileName.endsWith(".journal")) {
+                    segments.put(Long.parseLong(fileName.substring(6, fileName.length() - 8)), path);
+                }
+            }
+        }
+        var checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        drainedSequence = Files.exists(checkpointPath) ? ByteBuffer.wrap(Files.readAllBytes(checkpointPath)).getLong() : 0;
+        nextSequence = drainedSequence + 1;
+        if (segments.isEmpty()) {
+            openSegment(nextSequence);
+        } else {
+            recoverLastSegment();
+        }
+        durableSequence = nextSequence - 1;
+        deleteDrainedSegments(drainedSequence + 1);
+        for (var path : segments.values()) {
+            spoolBytes.addAndGet(Files.size(path));
+        }
+        var pendingLogs = durableSequence - drainedSequence;
+        if (pendingLogs > 0) {
+            log.info("Replaying {} spooled logs from {}", pendingLogs, directory);
+        }
+    }
+
+    private void recoverLastSegment() throws IOException {
+        var last = segments.lastEntry();
+        var lastSequence = last.getKey() - 1;
+        long validBytes;
+        try (var reader = new SpoolReader(last.getValue())) {
+            try {
+                SpoolRecord spoolRecord;
+                while ((spoolRecord = reader.next(Long.MAX_VALUE)) != null) {
+                    lastSequence = spoolRecord.sequence();
+                }
+            } catch (IOException e) {
+                log.warn("Truncating spool segment {} at byte {} -> {}", last.getValue(), reader.offset(), e.getMessage());
+            }
+            validBytes = reader.offset();
+        }
+        nextSequence = Math.max(nextSequence, lastSequence + 1);
+        channel = FileChannel.open(last.getValue(), StandardOpenOption.WRITE);
+        channel.truncate(validBytes);
+        channel.position(validBytes);
+        segmentSize = validBytes;
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        var path = directory.resolve("spool-" + firstSequence + ".journal");
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        segmentSize = 0;
+        segments.put(firstSequence, path);
+    }
+
+    public void start() {
+        running = true;
+        threads.add(new Thread(this::write, "Logflow Spool Writer"));
+        threads.add(new Thread(this::drain, "Logflow Spool Drain"));
+        threads.forEach(Thread::start);
+    }
+
+    @Override
+    public CompletableFuture<Void> submit(InPacketLog inPacketLog) {
+        if (maxBytes > 0 && spoolBytes.get() >= maxBytes) {
+            rejectedLogs.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Spool is full"));
+        }
+        var pendingLog = new PendingLog(RecordCodec.encode(inPacketLog), new CompletableFuture<>());
+        if (!running || !queue.offer(pendingLog)) {
+            pendingLog.future().completeExceptionally(new RejectedExecutionException("Spool queue is full"));
+        }
+        return pendingLog.future();
+    }
+
+    private void write() {
+        var group = new ArrayList<PendingLog>(MAX_GROUP_SIZE);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, MAX_GROUP_SIZE - 1);
+                journal(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                group.clear();
+            }
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close spool segment -> {}", e.getMessage());
+        }
+    }
+
+    private void journal(List<PendingLog> group) {
+        var firstSequence = nextSequence;
+        try {
+            if (segmentSize >= SEGMENT_BYTES) {
+                openSegment(firstSequence);
+            }
+            var frames = new ByteBuffer[group.size()];
+            var bytes = 0L;
+            for (int i = 0; i < frames.length; i++) {
+                frames[i] = frame(crc, firstSequence + i, group.get(i).payload());
+                bytes += frames[i].remaining();
+            }
+            var written = 0L;
+            while (written < bytes) {
+                written += channel.write(frames);
+            }
+            channel.force(false);
+            segmentSize += bytes;
+            spoolBytes.addAndGet(bytes);
+            nextSequence = firstSequence + group.size();
+            durableSequence = nextSequence - 1;
+        } catch (IOException e) {
+            log.error("Failed to journal {} logs to spool", group.size(), e);
+            try {
+                channel.truncate(segmentSize);
+                channel.position(segmentSize);
+                // The drain may have read the failed frames ahead, their sequences are reused by the next group
+                truncations++;
+            } catch (IOException truncateException) {
+                log.error("Failed to truncate spool segment after failed write", truncateException);
+            }
+            for (var pendingLog : group) {
+                pendingLog.future().completeExceptionally(e);
+            }
+            return;
+        }
+        journaledLogs.add(group.size());
+        fsyncs.incrementAndGet();
+        for (var pendingLog : group) {
+            pendingLog.future().complete(null);
+        }
+        synchronized (drainSignal) {
+            drainSignal.notifyAll();
+        }
+    }
+
+    private static ByteBuffer frame(CRC32C crc, long sequence, byte[] payload) {
+        var length = 8 + payload.length;
+        var frame = ByteBuffer.allocate(SpoolReader.HEADER_BYTES + length);
+        frame.putInt(length).putInt(0).putLong(sequence).put(payload);
+        crc.reset();
+        crc.update(frame.array(), SpoolReader.HEADER_BYTES, length);
+        frame.putInt(4, (int) crc.getValue());
+        return frame.flip();
+    }
+
+    private void drain() {
+        var nextDrainSequence = drainedSequence + 1;
+        SpoolReader reader = null;
+        var readerSegment = 0L;
+        var readerTruncations = 0L;
+        var chunk = new ArrayList<SpoolRecord>(drainBatchSize);
+        var rateWindowStart = System.nanoTime();
+        var rateWindowLogs = 0L;
+        while (running) {
+            try {
+                if (reader == null) {
+                    var entry = segments.floorEntry(nextDrainSequence);
+                    if (entry == null) {
+                        entry = segments.firstEntry();
+                        nextDrainSequence = entry.getKey();
+                    }
+                    reader = new SpoolReader(entry.getValue());
+                    readerSegment = entry.getKey();
+                    readerTruncations = truncations;
+                }
+                // Read before truncations, which the writer updates before it makes a reused sequence durable
+                var maxSequence = durableSequence;
+                if (readerTruncations != truncations) {
+                    reader.discardReadAhead();
+                    readerTruncations = truncations;
+                }
+                SpoolRecord spoolRecord;
+                while (chunk.size() < drainBatchSize && (spoolRecord = reader.next(maxSequence)) != null) {
+                    if (spoolRecord.sequence() >= nextDrainSequence) {
+                        chunk.add(spoolRecord);
+                    }
+                }
+                if (chunk.isEmpty()) {
+                    var nextSegment = segments.higherKey(readerSegment);
+                    if (nextSegment != null && nextSegment <= nextDrainSequence) {
+                        reader.close();
+                        reader = null;
+                        continue;
+                    }
+                    synchronized (drainSignal) {
+                        drainSignal.wait(100);
+                    }
+                } else if (deliver(chunk)) {
+                    nextDrainSequence = chunk.get(chunk.size() - 1).sequence() + 1;
+                    drainedSequence = nextDrainSequence - 1;
+                    drainedLogs.add(chunk.size());
+                    rateWindowLogs += chunk.size();
+                    writeCheckpoint(drainedSequence);
+                    deleteDrainedSegments(nextDrainSequence);
+                    chunk.clear();
+                }
+                var elapsed = System.nanoTime() - rateWindowStart;
+                if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                    drainedLogsPerSecond = rateWindowLogs * 1e9 / elapsed;
+                    rateWindowStart = System.nanoTime();
+                    rateWindowLogs = 0;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                var nextSegment = segments.higherKey(readerSegment);
+                log.error("Skipping rest of spool segment {} -> {}", readerSegment, e.getMessage());
+                closeQuietly(reader);
+                reader = null;
+                chunk.clear();
+                if (nextSegment == null) {
+                    sleep(MAX_RETRY_MILLIS);
+                } else {
+                    nextDrainSequence = nextSegment;
+                }
+            }
+        }
+        closeQuietly(reader);
+    }
+
+    private boolean deliver(List<SpoolRecord> chunk) throws InterruptedException {
+        var remaining = chunk;
+        var retryMillis = MIN_RETRY_MILLIS;
+        var attempts = 0;
+        while (true) {
+            var futures = new ArrayList<CompletableFuture<Void>>(remaining.size());
+            for (var spoolRecord : remaining) {
+                futures.add(logSink.submit(spoolRecord.inPacketLog()));
+            }
+            Throwable failure = null;
+            var failed = new ArrayList<SpoolRecord>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).join();
+                } catch (RuntimeException e) {
+                    failure = e.getCause() == null ? e : e.getCause();
+                    failed.add(remaining.get(i));
+                }
+            }
+            if (failed.isEmpty()) {
+                return true;
+            }
+            if (!running) {
+                return false;
+            }
+            // A full queue is backpressure and does not count as a failed attempt
+            if (!(failure instanceof RejectedExecutionException) && maxAttempts > 0 && ++attempts >= maxAttempts) {
+                log.error("Failed to drain {} spooled logs after {} attempts, moving them to {} -> {}", failed.size(), attempts, DEAD_LETTER_FILE, failure.getMessage());
+                deadLetter(failed);
+                return true;
+            }
+            log.warn("Failed to drain {} spooled logs, retrying in {} ms -> {}", failed.size(), retryMillis, failure.getMessage());
+            Thread.sleep(retryMillis);
+            retryMillis = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            remaining = failed;
+        }
+    }
+
+    private void deadLetter(List<SpoolRecord> spoolRecords) {
+        var frames = new ByteBuffer[spoolRecords.size()];
+        for (int i = 0; i < frames.length; i++) {
+            var spoolRecord = spoolRecords.get(i);
+            frames[i] = frame(deadLetterCrc, spoolRecord.sequence(), RecordCodec.encode(spoolRecord.inPacketLog()));
+        }
+        try (var deadLetterChannel = FileChannel.open(directory.resolve(DEAD_LETTER_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            for (var frame : frames) {
+                while (frame.hasRemaining()) {
+                    deadLetterChannel.write(frame);
+                }
+            }
+            deadLetterChannel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to write {} logs to {}, dropping them", spoolRecords.size(), DEAD_LETTER_FILE, e);
+        }
+        deadLetteredLogs.add(spoolRecords.size());
+    }
+
+    private void writeCheckpoint(long sequence) throws IOException {
+        var temporaryPath = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temporaryPath, ByteBuffer.allocate(8).putLong(sequence).array());
+        Files.move(temporaryPath, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteDrainedSegments(long nextDrainSequence) throws IOException {
+        for (var entry : segments.entrySet()) {
+            var nextSegment = segments.higherKey(entry.getKey());
+            if (nextSegment == null || nextSegment > nextDrainSequence) {
+                return;
+            }
+            spoolBytes.addAndGet(-Files.size(entry.getValue()));
+            Files.deleteIfExists(entry.getValue());
+            segments.remove(entry.getKey());
+        }
+    }
+
+    public SpoolStats stats() {
+        var journaled = journaledLogs.sum();
+        var fsyncCount = fsyncs.get();
+        return new SpoolStats(journaled, drainedLogs.sum(), durableSequence - drainedSequence, deadLetteredLogs.sum(), rejectedLogs.sum(), segments.size(),
+                spoolBytes.get(), drainedLogsPerSecond, fsyncCount, fsyncCount == 0 ? 0 : (double) journaled / fsyncCount);
+    }
+
+    public void close() {
+        running = false;
+        for (var thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Spool closed with {} logs left to drain", durableSequence - drainedSequence);
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeQuietly(SpoolReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("Failed to close spool reader -> {}", e.getMessage());
+        }
+    }
+
+    private record PendingLog(byte[] payload, CompletableFuture<Void> future) {
+    }
+
+}
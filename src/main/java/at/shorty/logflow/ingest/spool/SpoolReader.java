@@ -0,0 +1,89 @@
+package at.shorty.logflow.ingest.spool;
+
+import at.shorty.logflow.store.RecordCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+class SpoolReader implements Closeable {
+
+    static final int HEADER_BYTES = 8;
+    private static final int MIN_LENGTH = 8 + 9;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final CRC32C crc = new CRC32C();
+    private ByteBuffer buffer = ByteBuffer.allocate(1024 * 1024).flip();
+    private long fileOffset;
+
+    SpoolReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    SpoolRecord next(long maxSequence) throws IOException {
+        if (!ensure(HEADER_BYTES)) {
+            return null;
+        }
+        var start = buffer.position();
+        var length = buffer.getInt(start);
+        if (length < MIN_LENGTH) {
+            throw new IOException("Corrupt record length at byte " + offset() + " in " + path);
+        }
+        if (!ensure(HEADER_BYTES + length)) {
+            return null;
+        }
+        start = buffer.position();
+        crc.reset();
+        crc.update(buffer.slice(start + HEADER_BYTES, length));
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            throw new IOException("Checksum mismatch at byte " + offset() + " in " + path);
+        }
+        var sequence = buffer.getLong(start + HEADER_BYTES);
+        if (sequence > maxSequence) {
+            return null;
+        }
+        var inPacketLog = RecordCodec.decodePacket(buffer.slice(start + HEADER_BYTES + 8, length - 8));
+        buffer.position(start + HEADER_BYTES + length);
+        return new SpoolRecord(sequence, inPacketLog);
+    }
+
+    long offset() {
+        return fileOffset - buffer.remaining();
+    }
+
+    /**
+     * Drops bytes read beyond the last returned record, so they are read again from the file.
+     */
+    void discardReadAhead() {
+        fileOffset = offset();
+        buffer.clear().flip();
+    }
+
+    private boolean ensure(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return true;
+        }
+        buffer.compact();
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() * 2)).put(buffer.flip());
+        }
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer, fileOffset)) > 0) {
+            fileOffset += read;
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
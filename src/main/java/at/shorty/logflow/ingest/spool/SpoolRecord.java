@@ -0,0 +1,6 @@
+package at.shorty.logflow.ingest.spool;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+
+record SpoolRecord(long sequence, InPacketLog inPacketLog) {
+}
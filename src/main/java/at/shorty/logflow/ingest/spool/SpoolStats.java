@@ -0,0 +1,5 @@
+package at.shorty.logflow.ingest.spool;
+
+public record SpoolStats(long journaledLogs, long drainedLogs, long pendingLogs, long deadLetteredLogs, long rejectedLogs, int segments, long spoolBytes,
+                         double drainedLogsPerSecond, long fsyncs, double logsPerFsync) {
+}
@@ -0,0 +1,54 @@
+package at.shorty.logflow.metrics;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+public class LatencyHistogram {
+
+    private static final long MAX_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int STRIPES = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+
+    private final ConcurrentHistogram[] stripes = new ConcurrentHistogram[STRIPES];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHistogram(MAX_NANOS, 2);
+        }
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        var value = Math.max(1, Math.min(nanos, MAX_NANOS));
+        stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].recordValue(value);
+        sumNanos.add(value);
+    }
+
+    public void record(long totalNanos, int count) {
+        if (count == 0) {
+            return;
+        }
+        var value = Math.max(1, Math.min(totalNanos / count, MAX_NANOS));
+        stripes[(int) Thread.currentThread().getId() & (STRIPES - 1)].recordValueWithCount(value, count);
+        sumNanos.add(value * count);
+    }
+
+    public Histogram snapshot() {
+        var snapshot = new Histogram(MAX_NANOS, 2);
+        for (var stripe : stripes) {
+            snapshot.add(stripe.copy());
+        }
+        return snapshot;
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+}
@@ -0,0 +1,179 @@
+package at.shorty.logflow.metrics;
+
+import at.shorty.logflow.ingest.source.IngestSource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+@Slf4j
+public class LogflowMetrics {
+
+    private static final int MAX_CONTEXTS = 1000;
+    private static final String OTHER_CONTEXT = "_other";
+    private static final long[] BUCKET_NANOS = {10_000, 50_000, 100_000, 500_000, 1_000_000, 5_000_000, 10_000_000, 50_000_000, 100_000_000, 500_000_000, 1_000_000_000, 5_000_000_000L};
+    private static final String[] BUCKET_LABELS = new String[BUCKET_NANOS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_NANOS.length; i++) {
+            BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKET_NANOS[i], 9).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    @Getter
+    private final LatencyHistogram parseLatency = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram validateLatency = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram authLatency = new LatencyHistogram();
+    @Getter
+    private final LatencyHistogram storeLatency = new LatencyHistogram();
+    private final LongAdder[][] packets = new LongAdder[IngestSource.Type.values().length][Outcome.values().length];
+    private final LongAdder[] openConnections = new LongAdder[IngestSource.Type.values().length];
+    private final Map<String, LongAdder> contextLogs = new ConcurrentHashMap<>();
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+    private final List<Histogram> histograms = new CopyOnWriteArrayList<>();
+
+    public LogflowMetrics() {
+        for (var type : IngestSource.Type.values()) {
+            for (var outcome : Outcome.values()) {
+                packets[type.ordinal()][outcome.ordinal()] = new LongAdder();
+            }
+            openConnections[type.ordinal()] = new LongAdder();
+        }
+    }
+
+    public void packet(IngestSource.Type type, Outcome outcome) {
+        packets[type.ordinal()][outcome.ordinal()].increment();
+    }
+
+    public void accepted(IngestSource.Type type, String context) {
+        packets[type.ordinal()][Outcome.ACCEPTED.ordinal()].increment();
+        var counter = contextLogs.get(context);
+        if (counter == null) {
+            counter = contextLogs.computeIfAbsent(contextLogs.size() < MAX_CONTEXTS ? context : OTHER_CONTEXT, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public void connectionOpened(IngestSource.Type type) {
+        openConnections[type.ordinal()].increment();
+    }
+
+    public void connectionClosed(IngestSource.Type type) {
+        openConnections[type.ordinal()].decrement();
+    }
+
+    public void gauge(String name, String help, String labels, DoubleSupplier supplier) {
+        gauges.add(new Gauge(name, help, labels, supplier));
+    }
+
+    public void histogram(String name, String help, String labels, LatencyHistogram latencyHistogram) {
+        histograms.add(new Histogram(name, help, labels, latencyHistogram));
+    }
+
+    public List<MetricFamily> collect() {
+        var families = new ArrayList<MetricFamily>();
+        var packetSamples = new ArrayList<MetricSample>();
+        var connectionSamples = new ArrayList<MetricSample>();
+        for (var type : IngestSource.Type.values()) {
+            var transport = "transport=\"" + type.name().toLowerCase() + "\"";
+            for (var outcome : Outcome.values()) {
+                packetSamples.add(new MetricSample("logflow_ingest_packets_total", transport + ",outcome=\"" + outcome.name().toLowerCase() + "\"", packets[type.ordinal()][outcome.ordinal()].sum()));
+            }
+            if (type != IngestSource.Type.HTTP) {
+                connectionSamples.add(new MetricSample("logflow_open_connections", transport, openConnections[type.ordinal()].sum()));
+            }
+        }
+        families.add(new MetricFamily("logflow_ingest_packets_total", "counter", "Log packets by transport and outcome", packetSamples));
+        var contextSamples = new ArrayList<MetricSample>();
+        for (var entry : contextLogs.entrySet()) {
+            contextSamples.add(new MetricSample("logflow_context_logs_total", "context=\"" + entry.getKey() + "\"", entry.getValue().sum()));
+        }
+        families.add(new MetricFamily("logflow_context_logs_total", "counter", "Accepted logs by context", contextSamples));
+        families.add(new MetricFamily("logflow_open_connections", "gauge", "Open ingest connections by transport", connectionSamples));
+        families.add(histogram("logflow_ingest_parse_seconds", "Time to decode a log packet", parseLatency));
+        families.add(histogram("logflow_ingest_validate_seconds", "Time to validate a log packet", validateLatency));
+        families.add(histogram("logflow_auth_cache_seconds", "Time to look up a token in the auth cache", authLatency));
+        families.add(histogram("logflow_store_append_seconds", "Time to append a batch to the log store", storeLatency));
+        var histogramFamilies = new LinkedHashMap<String, MetricFamily>();
+        for (var histogram : histograms) {
+            histogramFamilies.computeIfAbsent(histogram.name(), name -> new MetricFamily(name, "histogram", histogram.help(), new ArrayList<>()))
+                    .samples().addAll(histogramSamples(histogram.name(), histogram.labels(), histogram.latencyHistogram()));
+        }
+        families.addAll(histogramFamilies.values());
+        var gaugeFamilies = new LinkedHashMap<String, MetricFamily>();
+        for (var gauge : gauges) {
+            gaugeFamilies.computeIfAbsent(gauge.name(), name -> new MetricFamily(name, "gauge", gauge.help(), new ArrayList<>()))
+                    .samples().add(new MetricSample(gauge.name(), gauge.labels(), gauge.supplier().getAsDouble()));
+        }
+        families.addAll(gaugeFamilies.values());
+        return families;
+    }
+
+    public String toPrometheus() {
+        var builder = new StringBuilder(8192);
+        for (var family : collect()) {
+            builder.append("# HELP ").append(family.name()).append(' ').append(family.help()).append('\n');
+            builder.append("# TYPE ").append(family.name()).append(' ').append(family.type()).append('\n');
+            for (var sample : family.samples()) {
+                builder.append(sample.key()).append(' ').append(formatValue(sample.value())).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(this), new ObjectName("at.shorty.logflow:type=Metrics"));
+        } catch (JMException e) {
+            log.warn("Failed to register metrics MBean -> {}", e.getMessage());
+        }
+    }
+
+    private MetricFamily histogram(String name, String help, LatencyHistogram latencyHistogram) {
+        return new MetricFamily(name, "histogram", help, histogramSamples(name, "", latencyHistogram));
+    }
+
+    private List<MetricSample> histogramSamples(String name, String labels, LatencyHistogram latencyHistogram) {
+        var snapshot = latencyHistogram.snapshot();
+        var prefix = labels.isEmpty() ? "" : labels + ",";
+        var samples = new ArrayList<MetricSample>(BUCKET_NANOS.length + 3);
+        for (int i = 0; i < BUCKET_NANOS.length; i++) {
+            samples.add(new MetricSample(name + "_bucket", prefix + "le=\"" + BUCKET_LABELS[i] + "\"", snapshot.getCountBetweenValues(0, BUCKET_NANOS[i])));
+        }
+        samples.add(new MetricSample(name + "_bucket", prefix + "le=\"+Inf\"", snapshot.getTotalCount()));
+        samples.add(new MetricSample(name + "_sum", labels, latencyHistogram.getSumNanos() / 1e9));
+        samples.add(new MetricSample(name + "_count", labels, snapshot.getTotalCount()));
+        return samples;
+    }
+
+    private static String formatValue(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    public enum Outcome {
+        ACCEPTED, REJECTED, FAILED
+    }
+
+    private record Gauge(String name, String help, String labels, DoubleSupplier supplier) {
+    }
+
+    private record Histogram(String name, String help, String labels, LatencyHistogram latencyHistogram) {
+    }
+
+}
@@ -0,0 +1,6 @@
+package at.shorty.logflow.metrics;
+
+import java.util.List;
+
+public record MetricFamily(String name, String type, String help, List<MetricSample> samples) {
+}
@@ -0,0 +1,9 @@
+package at.shorty.logflow.metrics;
+
+public record MetricSample(String name, String labels, double value) {
+
+    public String key() {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+}
@@ -0,0 +1,79 @@
+package at.shorty.logflow.metrics;
+
+import lombok.RequiredArgsConstructor;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RequiredArgsConstructor
+class MetricsMBean implements DynamicMBean {
+
+    private final LogflowMetrics metrics;
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        var value = values().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        var values = values();
+        var attributeList = new AttributeList();
+        for (var attribute : attributes) {
+            var value = values.get(attribute);
+            if (value != null) {
+                attributeList.add(new Attribute(attribute, value));
+            }
+        }
+        return attributeList;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        var attributes = new ArrayList<MBeanAttributeInfo>();
+        for (var family : metrics.collect()) {
+            for (var sample : family.samples()) {
+                attributes.add(new MBeanAttributeInfo(sample.key(), "double", family.help(), true, false, false));
+            }
+        }
+        return new MBeanInfo(getClass().getName(), "Logflow metrics", attributes.toArray(MBeanAttributeInfo[]::new), null, null, null);
+    }
+
+    private Map<String, Double> values() {
+        var values = new LinkedHashMap<String, Double>();
+        for (var family : metrics.collect()) {
+            for (var sample : family.samples()) {
+                values.put(sample.key(), sample.value());
+            }
+        }
+        return values;
+    }
+
+}
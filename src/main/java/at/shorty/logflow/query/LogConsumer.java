@@ -0,0 +1,8 @@
+package at.shorty.logflow.query;
+
+import java.io.IOException;
+
+@FunctionalInterface
+public interface LogConsumer {
+    void accept(StoredLog storedLog) throws IOException;
+}
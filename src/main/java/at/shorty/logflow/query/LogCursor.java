@@ -0,0 +1,25 @@
+package at.shorty.logflow.query;
+
+/**
+ * Position after the last log of a page, written as {@code timestamp:id}.
+ */
+public record LogCursor(long millis, long id) {
+
+    public static LogCursor parse(String cursor) {
+        var separator = cursor.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor (expected timestamp:id): " + cursor);
+        }
+        return new LogCursor(Long.parseLong(cursor.substring(0, separator)), Long.parseLong(cursor.substring(separator + 1)));
+    }
+
+    public static LogCursor of(StoredLog storedLog) {
+        return new LogCursor(storedLog.timestamp(), storedLog.id());
+    }
+
+    @Override
+    public String toString() {
+        return millis + ":" + id;
+    }
+
+}
@@ -0,0 +1,8 @@
+package at.shorty.logflow.query;
+
+import at.shorty.logflow.log.Level;
+
+import java.util.List;
+
+public record LogQuery(String search, List<String> contexts, String source, List<Level> levels, List<String> tags, List<MetadataPredicate> metadata, Long fromMillis, Long toMillis, Long cursorMillis, Long cursorId, int limit) {
+}
@@ -0,0 +1,332 @@
+package at.shorty.logflow.query;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import at.shorty.logflow.ingest.data.ContentCompressor;
+import at.shorty.logflow.ingest.data.LogDictionary;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.search.SearchIndex;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.StringJoiner;
+
+public class LogReader {
+
+    private static final int FETCH_SIZE = 500;
+    private static final int SEARCH_CHUNK_SIZE = 1000;
+    private static final String[] NO_TAGS = new String[0];
+    // Bound as a parameter, MySQL and H2 disagree on backslashes in string literals
+    private static final String LIKE_ESCAPE = "\\";
+
+    private final HikariConnectionPool connectionPool;
+    private final StorageMode storageMode;
+    private final LogDictionary logDictionary;
+    private final SearchIndex searchIndex;
+    private final ContentCompressor contentCompressor;
+
+    public LogReader(HikariConnectionPool connectionPool, StorageMode storageMode, LogDictionary logDictionary, SearchIndex searchIndex, ContentCompressor contentCompressor) {
+        this.connectionPool = connectionPool;
+        this.storageMode = storageMode;
+        this.logDictionary = logDictionary;
+        this.searchIndex = searchIndex;
+        this.contentCompressor = contentCompressor;
+    }
+
+    public boolean isSearchEnabled() {
+        return searchIndex != null;
+    }
+
+    public void read(LogQuery logQuery, LogConsumer consumer) throws SQLException, IOException {
+        try (var connection = connectionPool.getConnection()) {
+            var conditions = new ArrayList<String>();
+            var parameters = new ArrayList<>();
+            if (!addConditions(connection, logQuery, conditions, parameters)) {
+                return;
+            }
+            if (logQuery.search() == null) {
+                var sql = selectSql() + where(conditions) + " ORDER BY time_stamp, id LIMIT " + logQuery.limit();
+                stream(connection, sql, parameters, consumer);
+                return;
+            }
+            var terms = SearchIndex.parseQuery(logQuery.search());
+            var afterId = logQuery.cursorId() == null ? 0 : logQuery.cursorId();
+            var remaining = new int[]{logQuery.limit()};
+            while (remaining[0] > 0) {
+                var ids = searchIndex.search(terms, logQuery.fromMillis(), logQuery.toMillis(), afterId, SEARCH_CHUNK_SIZE);
+                if (ids.length == 0) {
+                    return;
+                }
+                var idList = new StringJoiner(", ", "id IN (", ")");
+                for (var id : ids) {
+                    idList.add(Long.toString(id));
+                }
+                var chunkConditions = new ArrayList<>(conditions);
+                chunkConditions.add(idList.toString());
+                var sql = selectSql() + where(chunkConditions) + " ORDER BY id LIMIT " + remaining[0];
+                stream(connection, sql, parameters, storedLog -> {
+                    remaining[0]--;
+                    consumer.accept(storedLog);
+                });
+                if (ids.length < SEARCH_CHUNK_SIZE) {
+                    return;
+                }
+                afterId = ids[ids.length - 1];
+            }
+        }
+    }
+
+    public void scan(long afterId, int limit, LogConsumer consumer) throws SQLException, IOException {
+        try (var connection = connectionPool.getConnection()) {
+            stream(connection, selectSql() + " WHERE id > ? ORDER BY id LIMIT " + limit, List.of(afterId), consumer);
+        }
+    }
+
+    private boolean addConditions(Connection lookupConnection, LogQuery logQuery, List<String> conditions, List<Object> parameters) throws SQLException {
+        if (logQuery.fromMillis() != null) {
+            conditions.add("time_stamp >= ?");
+            parameters.add(new Timestamp(logQuery.fromMillis()));
+        }
+        if (logQuery.toMillis() != null) {
+            conditions.add("time_stamp < ?");
+            parameters.add(new Timestamp(logQuery.toMillis()));
+        }
+        if (logQuery.search() == null && logQuery.cursorMillis() != null && logQuery.cursorId() != null) {
+            var cursorTimestamp = new Timestamp(logQuery.cursorMillis());
+            conditions.add("(time_stamp > ? OR (time_stamp = ? AND id > ?))");
+            parameters.add(cursorTimestamp);
+            parameters.add(cursorTimestamp);
+            parameters.add(logQuery.cursorId());
+        }
+        if (logQuery.metadata() != null) {
+            for (var predicate : logQuery.metadata()) {
+                addMetadataCondition(logQuery, predicate, conditions, parameters);
+            }
+        }
+        if (storageMode == StorageMode.DICTIONARY) {
+            return addDictionaryConditions(lookupConnection, logQuery, conditions, parameters);
+        }
+        if (logQuery.contexts() != null) {
+            conditions.add(inCondition("context", logQuery.contexts().size()));
+            parameters.addAll(logQuery.contexts());
+        }
+        if (logQuery.source() != null) {
+            conditions.add("source = ?");
+            parameters.add(logQuery.source());
+        }
+        if (logQuery.levels() != null) {
+            conditions.add(inCondition("level", logQuery.levels().size()));
+            for (var level : logQuery.levels()) {
+                parameters.add(level.name());
+            }
+        }
+        if (logQuery.tags() != null) {
+            for (var tag : logQuery.tags()) {
+                conditions.add("CONCAT(',', tags, ',') LIKE ? ESCAPE ?");
+                parameters.add("%," + escapeLike(tag) + ",%");
+                parameters.add(LIKE_ESCAPE);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the predicate through the indexes of log_metadata instead of matching the metadata of every log.
+     */
+    private void addMetadataCondition(LogQuery logQuery, MetadataPredicate predicate, List<String> conditions, List<Object> parameters) {
+        var column = "m." + predicate.type().getColumn();
+        var condition = new StringBuilder("id IN (SELECT m.log_id FROM log_metadata m WHERE m.field = ?");
+        parameters.add(predicate.field());
+        if (predicate.values() != null) {
+            condition.append(" AND ").append(inCondition(column, predicate.values().size()));
+            parameters.addAll(predicate.values());
+        }
+        if (predicate.from() != null) {
+            condition.append(" AND ").append(column).append(" >= ?");
+            parameters.add(predicate.from());
+        }
+        if (predicate.to() != null) {
+            condition.append(" AND ").append(column).append(" < ?");
+            parameters.add(predicate.to());
+        }
+        if (logQuery.fromMillis() != null) {
+            condition.append(" AND m.time_stamp >= ?");
+            parameters.add(new Timestamp(logQuery.fromMillis()));
+        }
+        if (logQuery.toMillis() != null) {
+            condition.append(" AND m.time_stamp < ?");
+            parameters.add(new Timestamp(logQuery.toMillis()));
+        }
+        conditions.add(condition.append(')').toString());
+    }
+
+    private boolean addDictionaryConditions(Connection lookupConnection, LogQuery logQuery, List<String> conditions, List<Object> parameters) throws SQLException {
+        if (logQuery.contexts() != null) {
+            var contextIds = new ArrayList<Integer>();
+            for (var context : logQuery.contexts()) {
+                var contextId = logDictionary.findId(lookupConnection, LogDictionary.Kind.CONTEXT, context);
+                if (contextId != null) {
+                    contextIds.add(contextId);
+                }
+            }
+            if (contextIds.isEmpty()) {
+                return false;
+            }
+            conditions.add(inCondition("context_id", contextIds.size()));
+            parameters.addAll(contextIds);
+        }
+        if (logQuery.source() != null) {
+            var sourceId = logDictionary.findId(lookupConnection, LogDictionary.Kind.SOURCE, logQuery.source());
+            if (sourceId == null) {
+                return false;
+            }
+            conditions.add("source_id = ?");
+            parameters.add(sourceId);
+        }
+        if (logQuery.levels() != null) {
+            conditions.add(inCondition("level", logQuery.levels().size()));
+            for (var level : logQuery.levels()) {
+                parameters.add(level.ordinal());
+            }
+        }
+        if (logQuery.tags() != null) {
+            for (var tag : logQuery.tags()) {
+                var tagId = logDictionary.findId(lookupConnection, LogDictionary.Kind.TAG, tag);
+                if (tagId == null) {
+                    return false;
+                }
+                conditions.add("EXISTS (SELECT 1 FROM logs_dict_tags t WHERE t.tag_id = ? AND t.log_id = l.id)");
+                parameters.add(tagId);
+            }
+        }
+        return true;
+    }
+
+    private String selectSql() {
+        if (storageMode == StorageMode.DICTIONARY) {
+            return "SELECT l.id, l.time_stamp, l.source_id, l.source_ip, l.context_id, l.metadata, l.level, l.content, l.content_blob FROM logs_dict l";
+        }
+        return "SELECT id, time_stamp, source, source_ip, context, tags, metadata, level, content, content_blob FROM logs";
+    }
+
+    private void stream(Connection connection, String sql, List<Object> parameters, LogConsumer consumer) throws SQLException, IOException {
+        var mysql = connection.getMetaData().getDatabaseProductName().toLowerCase().contains("mysql");
+        try (var lookup = new LookupConnection(connection, mysql); var statement = prepareStreaming(connection, sql, parameters, mysql); var resultSet = statement.executeQuery()) {
+            if (storageMode != StorageMode.DICTIONARY) {
+                while (resultSet.next()) {
+                    var tags = resultSet.getString(6);
+                    consumer.accept(new StoredLog(resultSet.getLong(1), resultSet.getTimestamp(2).getTime(), resultSet.getString(3), resultSet.getString(4), resultSet.getString(5),
+                            tags.isEmpty() ? NO_TAGS : tags.split(","), resultSet.getString(7), Level.valueOf(resultSet.getString(8)), content(lookup, resultSet, 9)));
+                }
+                return;
+            }
+            var chunk = new ArrayList<StoredLog>(FETCH_SIZE);
+            while (resultSet.next()) {
+                chunk.add(new StoredLog(resultSet.getLong(1), resultSet.getTimestamp(2).getTime(), logDictionary.valueOf(lookup.get(), resultSet.getInt(3)), resultSet.getString(4),
+                        logDictionary.valueOf(lookup.get(), resultSet.getInt(5)), NO_TAGS, resultSet.getString(6), Level.values()[resultSet.getInt(7)], content(lookup, resultSet, 8)));
+                if (chunk.size() == FETCH_SIZE) {
+                    emitWithTags(lookup.get(), chunk, consumer);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                emitWithTags(lookup.get(), chunk, consumer);
+            }
+        }
+    }
+
+    private String content(LookupConnection lookup, ResultSet resultSet, int index) throws SQLException {
+        var contentBlob = resultSet.getBytes(index + 1);
+        return contentBlob == null ? resultSet.getString(index) : contentCompressor.decompress(lookup.get(), contentBlob);
+    }
+
+    private void emitWithTags(Connection lookupConnection, List<StoredLog> chunk, LogConsumer consumer) throws SQLException, IOException {
+        var tags = new HashMap<Long, List<String>>();
+        var ids = new StringJoiner(", ", "(", ")");
+        for (var storedLog : chunk) {
+            ids.add(Long.toString(storedLog.id()));
+        }
+        try (var statement = lookupConnection.prepareStatement("SELECT log_id, tag_id FROM logs_dict_tags WHERE log_id IN " + ids); var resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                tags.computeIfAbsent(resultSet.getLong(1), id -> new ArrayList<>()).add(logDictionary.valueOf(lookupConnection, resultSet.getInt(2)));
+            }
+        }
+        for (var storedLog : chunk) {
+            var logTags = tags.get(storedLog.id());
+            consumer.accept(logTags == null ? storedLog : new StoredLog(storedLog.id(), storedLog.timestamp(), storedLog.source(), storedLog.sourceIp(), storedLog.context(),
+                    logTags.toArray(NO_TAGS), storedLog.metadata(), storedLog.level(), storedLog.content()));
+        }
+        chunk.clear();
+    }
+
+    private static String escapeLike(String value) {
+        var escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            var c = value.charAt(i);
+            if (c == '\\' || c == '%' || c == '_') {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private String where(List<String> conditions) {
+        return conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+    }
+
+    private String inCondition(String column, int size) {
+        var condition = new StringJoiner(", ", column + " IN (", ")");
+        for (int i = 0; i < size; i++) {
+            condition.add("?");
+        }
+        return condition.toString();
+    }
+
+    private PreparedStatement prepareStreaming(Connection connection, String sql, List<Object> parameters, boolean mysql) throws SQLException {
+        var statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statement.setFetchSize(mysql ? Integer.MIN_VALUE : FETCH_SIZE);
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+    /**
+     * Connection for dictionary and compression dictionary lookups while a result set is streamed. A streaming MySQL
+     * result set blocks its connection, so only there a second pooled connection is taken, and only once a row needs a
+     * lookup. Other databases run the lookups on the query connection.
+     */
+    private final class LookupConnection implements AutoCloseable {
+
+        private final Connection queryConnection;
+        private final boolean separate;
+        private Connection connection;
+
+        private LookupConnection(Connection queryConnection, boolean separate) {
+            this.queryConnection = queryConnection;
+            this.separate = separate;
+        }
+
+        private Connection get() throws SQLException {
+            if (connection == null) {
+                connection = separate ? connectionPool.getConnection() : queryConnection;
+            }
+            return connection;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (separate && connection != null) {
+                connection.close();
+            }
+        }
+
+    }
+}
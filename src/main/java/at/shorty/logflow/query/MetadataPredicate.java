@@ -0,0 +1,27 @@
+package at.shorty.logflow.query;
+
+import at.shorty.logflow.ingest.data.MetadataType;
+
+import java.util.List;
+
+/**
+ * Filter on an extracted metadata field: the value must be one of {@code values} (if set) and lie in
+ * [{@code from}, {@code to}) (where set).
+ */
+public record MetadataPredicate(String field, MetadataType type, List<Object> values, Object from, Object to) {
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public boolean matches(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (values != null && !values.contains(value)) {
+            return false;
+        }
+        if (from != null && ((Comparable) value).compareTo(from) < 0) {
+            return false;
+        }
+        return to == null || ((Comparable) value).compareTo(to) < 0;
+    }
+
+}
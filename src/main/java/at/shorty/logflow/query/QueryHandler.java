@@ -0,0 +1,188 @@
+package at.shorty.logflow.query;
+
+import at.shorty.logflow.auth.AuthHandler;
+import at.shorty.logflow.auth.TokenData;
+import at.shorty.logflow.ingest.data.MetadataExtractor;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.store.LogStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@Slf4j
+@RequiredArgsConstructor
+public class QueryHandler {
+
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final String METADATA_PARAM_PREFIX = "meta.";
+
+    private final AuthHandler authHandler;
+    private final LogStore logStore;
+    private final ObjectMapper objectMapper;
+    private final Executor queryExecutor;
+    private final MetadataExtractor metadataExtractor;
+
+    public void query(Context handler) {
+        var authToken = handler.req().getHeader("Authorization");
+        if (authToken == null) {
+            handler.status(401);
+            return;
+        }
+        var requestedContexts = splitParam(handler.queryParam("context"));
+        List<Level> levels;
+        Long fromMillis;
+        Long toMillis;
+        Long cursorMillis = null;
+        Long cursorId = null;
+        int limit;
+        try {
+            var levelNames = splitParam(handler.queryParam("level"));
+            levels = levelNames == null ? null : levelNames.stream().map(String::toUpperCase).map(Level::valueOf).toList();
+            fromMillis = handler.queryParamAsClass("from", Long.class).allowNullable().get();
+            toMillis = handler.queryParamAsClass("to", Long.class).allowNullable().get();
+            limit = handler.queryParamAsClass("limit", Integer.class).check(value -> value > 0, "limit must be positive").getOrDefault(DEFAULT_LIMIT);
+            var cursor = handler.queryParam("cursor");
+            if (cursor != null) {
+                var logCursor = LogCursor.parse(cursor);
+                cursorMillis = logCursor.millis();
+                cursorId = logCursor.id();
+            }
+        } catch (RuntimeException e) {
+            handler.status(400).result("Invalid parameters");
+            return;
+        }
+        var search = handler.queryParam("q");
+        if (search != null && (search.isBlank() || !logStore.isSearchEnabled())) {
+            handler.status(400).result(search.isBlank() ? "Empty search" : "Search index is disabled (set LOGFLOW_SEARCH_INDEX_DIR)");
+            return;
+        }
+        List<MetadataPredicate> metadata;
+        try {
+            metadata = metadataPredicates(handler);
+        } catch (IllegalArgumentException e) {
+            handler.status(400).result(e.getMessage());
+            return;
+        }
+        var source = handler.queryParam("source");
+        var tags = splitParam(handler.queryParam("tags"));
+        var finalCursorMillis = cursorMillis;
+        var finalCursorId = cursorId;
+        handler.future(() -> authHandler.authenticateAsync(authToken).thenCompose(tokenData -> {
+            if (tokenData == null) {
+                handler.status(401);
+                return CompletableFuture.completedFuture(null);
+            }
+            var contexts = readableContexts(tokenData, requestedContexts);
+            if (contexts != null && contexts.isEmpty()) {
+                handler.status(403).result("No permissions - Context not allowed");
+                return CompletableFuture.completedFuture(null);
+            }
+            var logQuery = new LogQuery(search, contexts, source, levels, tags, metadata, fromMillis, toMillis, finalCursorMillis, finalCursorId, limit);
+            return CompletableFuture.runAsync(() -> stream(handler, logQuery), queryExecutor);
+        }));
+    }
+
+    private void stream(Context handler, LogQuery logQuery) {
+        handler.contentType("application/x-ndjson");
+        try (var generator = objectMapper.getFactory().createGenerator(handler.res().getOutputStream())) {
+            generator.setRootValueSeparator(null);
+            logStore.read(logQuery, storedLog -> {
+                generator.writeStartObject();
+                generator.writeNumberField("id", storedLog.id());
+                generator.writeNumberField("timestamp", storedLog.timestamp());
+                generator.writeStringField("source", storedLog.source());
+                generator.writeStringField("sourceIp", storedLog.sourceIp());
+                generator.writeStringField("context", storedLog.context());
+                generator.writeArrayFieldStart("tags");
+                for (var tag : storedLog.tags()) {
+                    generator.writeString(tag);
+                }
+                generator.writeEndArray();
+                generator.writeStringField("metadata", storedLog.metadata());
+                generator.writeStringField("level", storedLog.level().name());
+                generator.writeStringField("content", storedLog.content());
+                generator.writeStringField("cursor", LogCursor.of(storedLog).toString());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            });
+        } catch (Exception e) {
+            log.warn("Failed to stream query results to {} -> {}", handler.ip(), e.getMessage());
+            if (!handler.res().isCommitted()) {
+                handler.status(500);
+            }
+        }
+    }
+
+    private List<String> readableContexts(TokenData tokenData, List<String> requestedContexts) {
+        if (requestedContexts == null) {
+            return tokenData.canReadAll() ? null : Arrays.asList(tokenData.readContexts());
+        }
+        var contexts = new ArrayList<String>();
+        for (var context : requestedContexts) {
+            if (!tokenData.isAllowedToRead(context)) {
+                return List.of();
+            }
+            contexts.add(context);
+        }
+        return contexts;
+    }
+
+    /**
+     * Parses {@code meta.<field>=value,value}, {@code meta.<field>.from=value} and {@code meta.<field>.to=value}.
+     */
+    private List<MetadataPredicate> metadataPredicates(Context handler) {
+        var bounds = new LinkedHashMap<String, Object[]>();
+        for (var entry : handler.queryParamMap().entrySet()) {
+            if (!entry.getKey().startsWith(METADATA_PARAM_PREFIX) || entry.getValue().isEmpty()) {
+                continue;
+            }
+            var field = entry.getKey().substring(METADATA_PARAM_PREFIX.length());
+            var bound = 0;
+            if (field.endsWith(".from")) {
+                field = field.substring(0, field.length() - ".from".length());
+                bound = 1;
+            } else if (field.endsWith(".to")) {
+                field = field.substring(0, field.length() - ".to".length());
+                bound = 2;
+            }
+            var type = metadataExtractor.getFieldTypes().get(field);
+            if (type == null) {
+                throw new IllegalArgumentException("Metadata field " + field + " is not extracted (see LOGFLOW_METADATA_FIELDS)");
+            }
+            var rawValues = bound == 0 ? Arrays.asList(entry.getValue().get(0).split(",")) : List.of(entry.getValue().get(0));
+            var values = new ArrayList<>(rawValues.size());
+            for (var rawValue : rawValues) {
+                var value = type.convert(rawValue);
+                if (value == null) {
+                    throw new IllegalArgumentException("Invalid " + type.name().toLowerCase() + " value for metadata field " + field + ": " + rawValue);
+                }
+                values.add(value);
+            }
+            var predicate = bounds.computeIfAbsent(field, key -> new Object[3]);
+            predicate[bound] = bound == 0 ? values : values.get(0);
+        }
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        var predicates = new ArrayList<MetadataPredicate>(bounds.size());
+        for (var entry : bounds.entrySet()) {
+            @SuppressWarnings("unchecked")
+            var values = (List<Object>) entry.getValue()[0];
+            predicates.add(new MetadataPredicate(entry.getKey(), metadataExtractor.getFieldTypes().get(entry.getKey()), values, entry.getValue()[1], entry.getValue()[2]));
+        }
+        return predicates;
+    }
+
+    private List<String> splitParam(String value) {
+        return value == null || value.isBlank() ? null : Arrays.asList(value.split(","));
+    }
+
+}
@@ -0,0 +1,6 @@
+package at.shorty.logflow.query;
+
+import at.shorty.logflow.log.Level;
+
+public record StoredLog(long id, long timestamp, String source, String sourceIp, String context, String[] tags, String metadata, Level level, String content) {
+}
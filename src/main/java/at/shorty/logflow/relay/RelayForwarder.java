@@ -0,0 +1,307 @@
+package at.shorty.logflow.relay;
+
+import at.shorty.logflow.auth.TokenData;
+import at.shorty.logflow.auth.TokenInfo;
+import at.shorty.logflow.ingest.data.LogSink;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+public class RelayForwarder implements LogSink {
+
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final URI bulkUri;
+    private final URI tokenUri;
+    private final String relayToken;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final BlockingQueue<PendingLog> queue;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder forwardedLogs = new LongAdder();
+    private final LongAdder rejectedLogs = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final LongAdder authFailures = new LongAdder();
+    private final LongAdder sentBytes = new LongAdder();
+    private volatile boolean running;
+    private volatile boolean upstreamAvailable = true;
+
+    public RelayForwarder(URI upstream, String relayToken, ObjectMapper objectMapper, int batchSize, long maxLingerMillis, int queueCapacity) {
+        this.bulkUri = upstream.resolve("/log/bulk");
+        this.tokenUri = upstream.resolve("/auth/token");
+        this.relayToken = relayToken;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public void start(int connections) {
+        running = true;
+        for (int i = 0; i < connections; i++) {
+            var thread = new Thread(this::run, "Logflow Relay #" + i);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> submit(InPacketLog inPacketLog) {
+        var pendingLog = new PendingLog(inPacketLog, new CompletableFuture<>());
+        if (!running || !queue.offer(pendingLog)) {
+            pendingLog.future().completeExceptionally(new RejectedExecutionException("Relay queue is full"));
+        }
+        return pendingLog.future();
+    }
+
+    public TokenData fetchTokenData(String token) {
+        var request = HttpRequest.newBuilder(tokenUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", token)
+                .GET()
+                .build();
+        try {
+            var response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 401) {
+                return null;
+            }
+            if (response.statusCode() != 200) {
+                throw new IOException("Upstream answered " + response.statusCode());
+            }
+            var tokenInfo = objectMapper.readValue(response.body(), TokenInfo.class);
+            return new TokenData(tokenInfo.uuid(), token, tokenInfo.readContexts(), tokenInfo.pushContexts());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to get token data from upstream", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while getting token data from upstream", e);
+        }
+    }
+
+    private void run() {
+        var batch = new ArrayList<PendingLog>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                var deadline = System.nanoTime() + maxLingerNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    var remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                forward(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                var exception = new IOException("Relay stopped");
+                for (var pendingLog : batch) {
+                    pendingLog.future().completeExceptionally(exception);
+                }
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void forward(List<PendingLog> batch) throws InterruptedException {
+        var pending = new ArrayList<>(batch);
+        var backoffMillis = MIN_BACKOFF_MILLIS;
+        while (!pending.isEmpty()) {
+            List<OutPacketLogResponse> responses;
+            try {
+                responses = send(pending);
+            } catch (UpstreamAuthException e) {
+                failedRequests.increment();
+                authFailures.increment();
+                upstreamAvailable = false;
+                // Does not fix itself, so keep it visible instead of logging it once like an outage
+                log.error("Upstream {} rejected the relay token ({}), check LOGFLOW_RELAY_TOKEN. Retrying {} logs in {} ms", bulkUri, e.getMessage(), pending.size(), backoffMillis);
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+                continue;
+            } catch (IOException e) {
+                failedRequests.increment();
+                if (upstreamAvailable) {
+                    upstreamAvailable = false;
+                    log.warn("Failed to forward {} logs to {}, retrying -> {}", pending.size(), bulkUri, e.getMessage());
+                }
+                TimeUnit.MILLISECONDS.sleep(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+                continue;
+            }
+            if (!upstreamAvailable) {
+                upstreamAvailable = true;
+                log.info("Upstream {} is available again", bulkUri);
+            }
+            backoffMillis = MIN_BACKOFF_MILLIS;
+            var throttled = new ArrayList<PendingLog>();
+            long retryAfterMillis = 0;
+            for (int i = 0; i < pending.size(); i++) {
+                var pendingLog = pending.get(i);
+                var response = responses.get(i);
+                if (response.isSuccess()) {
+                    forwardedLogs.increment();
+                    pendingLog.future().complete(null);
+                } else if (response.getRetryAfter() != null) {
+                    throttled.add(pendingLog);
+                    retryAfterMillis = Math.max(retryAfterMillis, response.getRetryAfter());
+                } else {
+                    rejectedLogs.increment();
+                    pendingLog.future().completeExceptionally(new IOException("Upstream rejected log: " + response.getMessage()));
+                }
+            }
+            pending = throttled;
+            if (!pending.isEmpty()) {
+                TimeUnit.MILLISECONDS.sleep(Math.max(retryAfterMillis, MIN_BACKOFF_MILLIS));
+            }
+        }
+    }
+
+    private List<OutPacketLogResponse> send(List<PendingLog> pending) throws IOException, InterruptedException {
+        var body = encode(pending);
+        var request = HttpRequest.newBuilder(bulkUri)
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", relayToken)
+                .header("Content-Type", "application/json")
+                .header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        var response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 401 || response.statusCode() == 403) {
+            throw new UpstreamAuthException("Upstream answered " + response.statusCode());
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("Upstream answered " + response.statusCode());
+        }
+        sentBytes.add(body.length);
+        var responses = objectMapper.readValue(response.body(), OutPacketLogResponse[].class);
+        if (responses.length != pending.size()) {
+            throw new IOException("Upstream answered " + responses.length + " responses for " + pending.size() + " logs");
+        }
+        return List.of(responses);
+    }
+
+    private byte[] encode(List<PendingLog> pending) throws IOException {
+        var bytes = new ByteArrayOutputStream(pending.size() * 64);
+        try (var generator = objectMapper.getFactory().createGenerator(new GZIPOutputStream(bytes))) {
+            generator.writeStartArray();
+            for (var pendingLog : pending) {
+                var inPacketLog = pendingLog.inPacketLog();
+                generator.writeStartObject();
+                generator.writeNumberField("timestamp", inPacketLog.getTimestamp().getTime());
+                generator.writeStringField("level", inPacketLog.getLevel().name());
+                generator.writeStringField("source", inPacketLog.getSource());
+                generator.writeStringField("sourceIp", inPacketLog.getSourceIp());
+                generator.writeStringField("context", inPacketLog.getContext());
+                generator.writeArrayFieldStart("tags");
+                for (var tag : inPacketLog.getTags()) {
+                    generator.writeString(tag);
+                }
+                generator.writeEndArray();
+                if (inPacketLog.getMetadata() != null) {
+                    generator.writeStringField("metadata", inPacketLog.getMetadata());
+                }
+                if (inPacketLog.getContent() != null) {
+                    generator.writeStringField("content", Base64.getEncoder().encodeToString(inPacketLog.getContent().getBytes(StandardCharsets.UTF_8)));
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return bytes.toByteArray();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getForwardedLogs() {
+        return forwardedLogs.sum();
+    }
+
+    public long getRejectedLogs() {
+        return rejectedLogs.sum();
+    }
+
+    public long getFailedRequests() {
+        return failedRequests.sum();
+    }
+
+    public long getAuthFailures() {
+        return authFailures.sum();
+    }
+
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    public boolean isUpstreamAvailable() {
+        return upstreamAvailable;
+    }
+
+    public void close() {
+        running = false;
+        for (var thread : threads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+                if (thread.isAlive()) {
+                    log.warn("Relay thread {} did not finish in time, dropping its batch", thread.getName());
+                    thread.interrupt();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record PendingLog(InPacketLog inPacketLog, CompletableFuture<Void> future) {
+    }
+
+    private static class UpstreamAuthException extends IOException {
+
+        private UpstreamAuthException(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -0,0 +1,175 @@
+package at.shorty.logflow.rollup;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+public class LogRollups {
+
+    private final HikariConnectionPool connectionPool;
+    private final Map<RollupKey, LongAdder> counters = new ConcurrentHashMap<>();
+    private List<Map.Entry<RollupKey, LongAdder>> retired = new ArrayList<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Rollups");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LogRollups(HikariConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    public void start(Duration flushInterval) {
+        executor.scheduleWithFixedDelay(this::flush, flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::compact, 1, 60, TimeUnit.MINUTES);
+    }
+
+    public void record(InPacketLog inPacketLog) {
+        var key = new RollupKey(RollupResolution.MINUTE.bucketStart(inPacketLog.getTimestamp().getTime()), inPacketLog.getContext(), inPacketLog.getSource(), inPacketLog.getLevel());
+        var counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    public List<RollupBucket> query(RollupResolution resolution, String context, String source, Level level, long fromMillis, long toMillis) throws SQLException {
+        var sql = new StringBuilder("SELECT bucket, source, level, count FROM log_rollups WHERE resolution = ? AND context = ? AND bucket >= ? AND bucket < ?");
+        if (source != null) {
+            sql.append(" AND source = ?");
+        }
+        if (level != null) {
+            sql.append(" AND level = ?");
+        }
+        sql.append(" ORDER BY bucket");
+        var buckets = new ArrayList<RollupBucket>();
+        try (var connection = connectionPool.getConnection(); var statement = connection.prepareStatement(sql.toString())) {
+            var index = 1;
+            statement.setInt(index++, resolution.ordinal());
+            statement.setString(index++, context);
+            statement.setTimestamp(index++, new Timestamp(resolution.bucketStart(fromMillis)));
+            statement.setTimestamp(index++, new Timestamp(toMillis));
+            if (source != null) {
+                statement.setString(index++, source);
+            }
+            if (level != null) {
+                statement.setInt(index, level.ordinal());
+            }
+            try (var resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    buckets.add(new RollupBucket(resultSet.getTimestamp(1).getTime(), resultSet.getString(2), Level.values()[resultSet.getInt(3)], resultSet.getLong(4)));
+                }
+            }
+        }
+        return buckets;
+    }
+
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        flush();
+    }
+
+    private synchronized void flush() {
+        var deltas = new ArrayList<Map.Entry<RollupKey, Long>>();
+        for (var entry : retired) {
+            var count = entry.getValue().sum();
+            if (count > 0) {
+                deltas.add(Map.entry(entry.getKey(), count));
+            }
+        }
+        retired = new ArrayList<>();
+        var currentMinute = RollupResolution.MINUTE.bucketStart(System.currentTimeMillis());
+        for (var entry : counters.entrySet()) {
+            var key = entry.getKey();
+            if (key.minute() < currentMinute && counters.remove(key, entry.getValue())) {
+                retired.add(entry);
+                continue;
+            }
+            var count = entry.getValue().sumThenReset();
+            if (count > 0) {
+                deltas.add(Map.entry(key, count));
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try (var connection = connectionPool.getConnection()) {
+            write(connection, deltas);
+        } catch (SQLException e) {
+            log.warn("Failed to flush {} rollup counters -> {}", deltas.size(), e.getMessage());
+            for (var delta : deltas) {
+                counters.computeIfAbsent(delta.getKey(), k -> new LongAdder()).add(delta.getValue());
+            }
+        }
+    }
+
+    private void write(Connection connection, List<Map.Entry<RollupKey, Long>> deltas) throws SQLException {
+        connection.setAutoCommit(false);
+        try (var statement = connection.prepareStatement("INSERT INTO log_rollups (resolution, context, bucket, source, level, count) VALUES (?, ?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE count = count + VALUES(count)")) {
+            for (var delta : deltas) {
+                var key = delta.getKey();
+                for (var resolution : RollupResolution.values()) {
+                    statement.setInt(1, resolution.ordinal());
+                    statement.setString(2, key.context());
+                    statement.setTimestamp(3, new Timestamp(resolution.bucketStart(key.minute())));
+                    statement.setString(4, key.source());
+                    statement.setInt(5, key.level().ordinal());
+                    statement.setLong(6, delta.getValue());
+                    statement.addBatch();
+                }
+            }
+            statement.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    private void compact() {
+        try (var connection = connectionPool.getConnection()) {
+            connection.setAutoCommit(true);
+            for (var resolution : RollupResolution.values()) {
+                if (resolution.getRetention() == null) {
+                    continue;
+                }
+                try (var statement = connection.prepareStatement("DELETE FROM log_rollups WHERE resolution = ? AND bucket < ?")) {
+                    statement.setInt(1, resolution.ordinal());
+                    statement.setTimestamp(2, new Timestamp(System.currentTimeMillis() - resolution.getRetention().toMillis()));
+                    var deleted = statement.executeUpdate();
+                    if (deleted > 0) {
+                        log.info("Compacted {} {} rollups", deleted, resolution.name().toLowerCase());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            log.warn("Failed to compact rollups -> {}", e.getMessage());
+        }
+    }
+
+    private record RollupKey(long minute, String context, String source, Level level) {
+    }
+
+}
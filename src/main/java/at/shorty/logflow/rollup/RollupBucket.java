@@ -0,0 +1,6 @@
+package at.shorty.logflow.rollup;
+
+import at.shorty.logflow.log.Level;
+
+public record RollupBucket(long bucket, String source, Level level, long count) {
+}
@@ -0,0 +1,75 @@
+package at.shorty.logflow.rollup;
+
+import at.shorty.logflow.auth.AuthHandler;
+import at.shorty.logflow.log.Level;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.http.Context;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+@Slf4j
+@RequiredArgsConstructor
+public class RollupHandler {
+
+    private static final int MAX_BUCKETS = 10_000;
+
+    private final AuthHandler authHandler;
+    private final LogRollups logRollups;
+    private final ObjectMapper objectMapper;
+    private final Executor queryExecutor;
+
+    public void getRollups(Context handler) {
+        var authToken = handler.req().getHeader("Authorization");
+        if (authToken == null) {
+            handler.status(401);
+            return;
+        }
+        var context = handler.queryParam("context");
+        if (context == null) {
+            handler.status(400).result("Missing context");
+            return;
+        }
+        RollupResolution resolution;
+        Level level;
+        long from;
+        long to;
+        try {
+            resolution = RollupResolution.valueOf(handler.queryParamAsClass("resolution", String.class).getOrDefault("minute").toUpperCase());
+            var levelParam = handler.queryParam("level");
+            level = levelParam == null ? null : Level.valueOf(levelParam.toUpperCase());
+            to = handler.queryParamAsClass("to", Long.class).getOrDefault(System.currentTimeMillis());
+            from = handler.queryParamAsClass("from", Long.class).getOrDefault(to - resolution.getBucketSize().toMillis() * 60);
+        } catch (IllegalArgumentException e) {
+            handler.status(400).result("Invalid parameters");
+            return;
+        }
+        if (to <= from || (to - from) / resolution.getBucketSize().toMillis() > MAX_BUCKETS) {
+            handler.status(400).result("Invalid time range (max. " + MAX_BUCKETS + " buckets)");
+            return;
+        }
+        var source = handler.queryParam("source");
+        handler.future(() -> authHandler.authenticateAsync(authToken).thenCompose(tokenData -> {
+            if (tokenData == null) {
+                handler.status(401);
+                return CompletableFuture.completedFuture(null);
+            }
+            if (!tokenData.isAllowedToRead(context)) {
+                handler.status(403).result("No permissions - Context not allowed");
+                return CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    var buckets = logRollups.query(resolution, context, source, level, from, to);
+                    handler.contentType("application/json").result(objectMapper.writeValueAsString(buckets));
+                } catch (Exception e) {
+                    log.warn("Failed to query rollups for {} -> {}", context, e.getMessage());
+                    handler.status(500);
+                }
+            }, queryExecutor);
+        }));
+    }
+
+}
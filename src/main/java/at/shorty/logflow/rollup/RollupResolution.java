@@ -0,0 +1,22 @@
+package at.shorty.logflow.rollup;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.Duration;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupResolution {
+    MINUTE(Duration.ofMinutes(1), Duration.ofDays(2)),
+    HOUR(Duration.ofHours(1), Duration.ofDays(90)),
+    DAY(Duration.ofDays(1), null);
+
+    private final Duration bucketSize;
+    private final Duration retention;
+
+    public long bucketStart(long timeMillis) {
+        var bucketMillis = bucketSize.toMillis();
+        return timeMillis - Math.floorMod(timeMillis, bucketMillis);
+    }
+}
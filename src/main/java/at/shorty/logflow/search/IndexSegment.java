@@ -0,0 +1,299 @@
+package at.shorty.logflow.search;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+class IndexSegment {
+
+    private static final int MAGIC = 0x4C465358;
+    private static final int VERSION = 1;
+    private static final int SKIP_INTERVAL = 128;
+
+    private final Path path;
+    private final long generation;
+    private final MappedByteBuffer buffer;
+    private final long sizeBytes;
+    private final int documents;
+    private final long sourceBytes;
+    private final long minId;
+    private final long maxId;
+    private final long minTime;
+    private final long maxTime;
+    private final String[] terms;
+    private final int[] postingOffsets;
+    private final int[] postingCounts;
+    private final long[] termMinTimes;
+    private final long[] termMaxTimes;
+    private final Map<Integer, SkipTable> skipTables = new ConcurrentHashMap<>();
+
+    private IndexSegment(Path path, long generation) throws IOException {
+        this.path = path;
+        this.generation = generation;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.sizeBytes = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, sizeBytes);
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Invalid index segment " + path);
+        }
+        documents = buffer.getInt();
+        sourceBytes = buffer.getLong();
+        minId = buffer.getLong();
+        maxId = buffer.getLong();
+        minTime = buffer.getLong();
+        maxTime = buffer.getLong();
+        var termCount = buffer.getInt();
+        terms = new String[termCount];
+        postingOffsets = new int[termCount];
+        postingCounts = new int[termCount];
+        termMinTimes = new long[termCount];
+        termMaxTimes = new long[termCount];
+        for (int i = 0; i < termCount; i++) {
+            var termBytes = new byte[(int) readVarLong(buffer)];
+            buffer.get(termBytes);
+            terms[i] = new String(termBytes, StandardCharsets.UTF_8);
+            termMinTimes[i] = buffer.getLong();
+            termMaxTimes[i] = buffer.getLong();
+            postingCounts[i] = (int) readVarLong(buffer);
+            var postingLength = (int) readVarLong(buffer);
+            postingOffsets[i] = buffer.position();
+            buffer.position(buffer.position() + postingLength);
+        }
+    }
+
+    static IndexSegment open(Path path) throws IOException {
+        var fileName = path.getFileName().toString();
+        var generation = Long.parseLong(fileName.substring(fileName.indexOf('-') + 1, fileName.indexOf('.')));
+        return new IndexSegment(path, generation);
+    }
+
+    static IndexSegment write(Path directory, long generation, int documents, long sourceBytes, long minId, long maxId, long minTime, long maxTime, int termCount, Iterator<TermPostings> terms) throws IOException {
+        var path = directory.resolve(fileName(generation));
+        var temporaryPath = directory.resolve(fileName(generation) + ".tmp");
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath), 64 * 1024))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(documents);
+            output.writeLong(sourceBytes);
+            output.writeLong(minId);
+            output.writeLong(maxId);
+            output.writeLong(minTime);
+            output.writeLong(maxTime);
+            output.writeInt(termCount);
+            var postingBytes = new ByteArrayOutputStream();
+            while (terms.hasNext()) {
+                var termPostings = terms.next();
+                var termBytes = termPostings.term().getBytes(StandardCharsets.UTF_8);
+                writeVarLong(output, termBytes.length);
+                output.write(termBytes);
+                output.writeLong(termPostings.minTime());
+                output.writeLong(termPostings.maxTime());
+                writeVarLong(output, termPostings.ids().length);
+                postingBytes.reset();
+                var previous = 0L;
+                for (var id : termPostings.ids()) {
+                    writeVarLong(postingBytes, id - previous);
+                    previous = id;
+                }
+                writeVarLong(output, postingBytes.size());
+                postingBytes.writeTo(output);
+            }
+        }
+        try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new IndexSegment(path, generation);
+    }
+
+    static String fileName(long generation) {
+        return "segment-" + generation + ".idx";
+    }
+
+    boolean overlaps(Long fromMillis, Long toMillis) {
+        return (fromMillis == null || maxTime >= fromMillis) && (toMillis == null || minTime < toMillis);
+    }
+
+    /**
+     * @return a cursor over the postings of the term, or null if the term does not occur in the time range
+     */
+    PostingsCursor cursor(String term, Long fromMillis, Long toMillis) {
+        var index = Arrays.binarySearch(terms, term);
+        if (index < 0 || (fromMillis != null && termMaxTimes[index] < fromMillis) || (toMillis != null && termMinTimes[index] >= toMillis)) {
+            return null;
+        }
+        return new SegmentCursor(index, postingCounts[index] > SKIP_INTERVAL ? skipTables.computeIfAbsent(index, this::buildSkipTable) : null);
+    }
+
+    /**
+     * Remembers the decoder state at every {@link #SKIP_INTERVAL}th posting, so cursors can jump close to a target
+     * instead of decoding every posting before it.
+     */
+    private SkipTable buildSkipTable(int index) {
+        var postings = buffer.duplicate().position(postingOffsets[index]);
+        var entries = (postingCounts[index] + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+        var previousIds = new long[entries];
+        var offsets = new int[entries];
+        var previous = 0L;
+        for (int i = 0; i < postingCounts[index]; i++) {
+            if (i % SKIP_INTERVAL == 0) {
+                previousIds[i / SKIP_INTERVAL] = previous;
+                offsets[i / SKIP_INTERVAL] = postings.position();
+            }
+            previous += readVarLong(postings);
+        }
+        return new SkipTable(previousIds, offsets);
+    }
+
+    Iterator<TermPostings> termIterator() {
+        return new Iterator<>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < terms.length;
+            }
+
+            @Override
+            public TermPostings next() {
+                var termPostings = new TermPostings(terms[index], readPostings(index), termMinTimes[index], termMaxTimes[index]);
+                index++;
+                return termPostings;
+            }
+        };
+    }
+
+    private long[] readPostings(int index) {
+        var postings = buffer.duplicate().position(postingOffsets[index]);
+        var ids = new long[postingCounts[index]];
+        var previous = 0L;
+        for (int i = 0; i < ids.length; i++) {
+            previous += readVarLong(postings);
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    Path path() {
+        return path;
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    long sizeBytes() {
+        return sizeBytes;
+    }
+
+    int documents() {
+        return documents;
+    }
+
+    long sourceBytes() {
+        return sourceBytes;
+    }
+
+    String[] terms() {
+        return terms;
+    }
+
+    long minId() {
+        return minId;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    long minTime() {
+        return minTime;
+    }
+
+    long maxTime() {
+        return maxTime;
+    }
+
+    private static void writeVarLong(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        var value = 0L;
+        var shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private class SegmentCursor extends PostingsCursor {
+
+        private final ByteBuffer postings;
+        private final int count;
+        private final SkipTable skipTable;
+        private int decoded;
+        private long current;
+
+        private SegmentCursor(int index, SkipTable skipTable) {
+            this.postings = buffer.duplicate().position(postingOffsets[index]);
+            this.count = postingCounts[index];
+            this.skipTable = skipTable;
+        }
+
+        @Override
+        long advance(long target) {
+            if (decoded > 0 && current >= target) {
+                return current;
+            }
+            if (skipTable != null) {
+                var entry = Arrays.binarySearch(skipTable.previousIds(), target);
+                entry = (entry < 0 ? -entry - 1 : entry) - 1;
+                if (entry >= 0 && entry * SKIP_INTERVAL > decoded) {
+                    postings.position(skipTable.offsets()[entry]);
+                    current = skipTable.previousIds()[entry];
+                    decoded = entry * SKIP_INTERVAL;
+                }
+            }
+            while (decoded < count) {
+                current += readVarLong(postings);
+                decoded++;
+                if (current >= target) {
+                    return current;
+                }
+            }
+            return NO_MORE;
+        }
+
+    }
+
+    private record SkipTable(long[] previousIds, int[] offsets) {
+    }
+
+}
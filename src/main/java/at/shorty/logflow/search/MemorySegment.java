@@ -0,0 +1,119 @@
+package at.shorty.logflow.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class MemorySegment {
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private int documents;
+    private long sourceBytes;
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+
+    void add(String term, long id, long time) {
+        var termPostings = postings.get(term);
+        if (termPostings == null) {
+            termPostings = new Postings();
+            postings.put(term, termPostings);
+        }
+        termPostings.add(id, time);
+    }
+
+    void addDocument(long id, long time, long bytes) {
+        documents++;
+        sourceBytes += bytes;
+        minId = Math.min(minId, id);
+        maxId = Math.max(maxId, id);
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+    }
+
+    int documents() {
+        return documents;
+    }
+
+    long sourceBytes() {
+        return sourceBytes;
+    }
+
+    boolean overlaps(Long fromMillis, Long toMillis) {
+        return documents > 0 && (fromMillis == null || maxTime >= fromMillis) && (toMillis == null || minTime < toMillis);
+    }
+
+    /**
+     * Must be called while holding the lock that guards {@link #add}. The returned cursor can be used after releasing it,
+     * since postings are only appended to.
+     */
+    PostingsCursor cursor(String term, Long fromMillis, Long toMillis) {
+        var termPostings = postings.get(term);
+        if (termPostings == null || (fromMillis != null && termPostings.maxTime < fromMillis) || (toMillis != null && termPostings.minTime >= toMillis)) {
+            return null;
+        }
+        if (termPostings.sorted) {
+            return PostingsCursor.of(termPostings.ids, termPostings.size);
+        }
+        var ids = Arrays.copyOf(termPostings.ids, termPostings.size);
+        Arrays.sort(ids);
+        return PostingsCursor.of(ids, ids.length);
+    }
+
+    List<TermPostings> sortedTerms() {
+        var terms = new ArrayList<TermPostings>(postings.size());
+        for (var entry : postings.entrySet()) {
+            var termPostings = entry.getValue();
+            var ids = Arrays.copyOf(termPostings.ids, termPostings.size);
+            Arrays.sort(ids);
+            terms.add(new TermPostings(entry.getKey(), ids, termPostings.minTime, termPostings.maxTime));
+        }
+        terms.sort((a, b) -> a.term().compareTo(b.term()));
+        return terms;
+    }
+
+    long minId() {
+        return minId;
+    }
+
+    long maxId() {
+        return maxId;
+    }
+
+    long minTime() {
+        return minTime;
+    }
+
+    long maxTime() {
+        return maxTime;
+    }
+
+    private static class Postings {
+
+        private long[] ids = new long[4];
+        private int size;
+        private boolean sorted = true;
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+
+        private void add(long id, long time) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size > 0 && ids[size - 1] > id) {
+                sorted = false;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+        }
+
+    }
+
+}
@@ -0,0 +1,85 @@
+package at.shorty.logflow.search;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Forward-only cursor over ascending log ids.
+ */
+abstract class PostingsCursor {
+
+    static final long NO_MORE = Long.MAX_VALUE;
+
+    /**
+     * @return the smallest id {@code >= target}, or {@link #NO_MORE}; targets must not decrease between calls
+     */
+    abstract long advance(long target);
+
+    /**
+     * @param ids ascending ids, of which only the first {@code length} are used
+     */
+    static PostingsCursor of(long[] ids, int length) {
+        return new ArrayCursor(ids, length);
+    }
+
+    /**
+     * Ids contained in all cursors, found by letting the cursors leapfrog each other.
+     */
+    static PostingsCursor intersection(List<PostingsCursor> cursors) {
+        return cursors.size() == 1 ? cursors.get(0) : new IntersectionCursor(cursors.toArray(PostingsCursor[]::new));
+    }
+
+    private static class ArrayCursor extends PostingsCursor {
+
+        private final long[] ids;
+        private final int length;
+        private int position;
+
+        private ArrayCursor(long[] ids, int length) {
+            this.ids = ids;
+            this.length = length;
+        }
+
+        @Override
+        long advance(long target) {
+            if (position < length && ids[position] < target) {
+                var index = Arrays.binarySearch(ids, position, length, target);
+                position = index < 0 ? -index - 1 : index;
+            }
+            return position < length ? ids[position] : NO_MORE;
+        }
+
+    }
+
+    private static class IntersectionCursor extends PostingsCursor {
+
+        private final PostingsCursor[] cursors;
+
+        private IntersectionCursor(PostingsCursor[] cursors) {
+            this.cursors = cursors;
+        }
+
+        @Override
+        long advance(long target) {
+            var candidate = target;
+            var agreeing = 0;
+            var index = 0;
+            while (agreeing < cursors.length) {
+                var id = cursors[index].advance(candidate);
+                if (id == NO_MORE) {
+                    return NO_MORE;
+                }
+                if (id == candidate) {
+                    agreeing++;
+                } else {
+                    candidate = id;
+                    agreeing = 1;
+                }
+                index = (index + 1) % cursors.length;
+            }
+            return candidate;
+        }
+
+    }
+
+}
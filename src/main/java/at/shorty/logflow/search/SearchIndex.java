@@ -0,0 +1,593 @@
+package at.shorty.logflow.search;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.query.StoredLog;
+import at.shorty.logflow.store.LogStore;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+public class SearchIndex {
+
+    private static final int FLUSH_DOCUMENTS = 100_000;
+    private static final long FLUSH_INTERVAL_SECONDS = 30;
+    private static final int MAX_SEGMENTS = 10;
+    private static final int MERGE_FACTOR = 4;
+    private static final int BACKFILL_CHUNK_SIZE = 1000;
+    private static final long BACKFILL_WAIT_MILLIS = 50;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int retentionDays;
+    private final Object lock = new Object();
+    private final AtomicLong nextGeneration = new AtomicLong();
+    private final LongAdder indexedDocuments = new LongAdder();
+    private final LongAdder indexNanos = new LongAdder();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong merges = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Search Index");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private MemorySegment memorySegment = new MemorySegment();
+    private MemorySegment flushingSegment;
+    private volatile List<IndexSegment> segments = List.of();
+    // Batches being stored or indexed, keyed by the highest indexed id when they began, all their ids are greater
+    private final TreeMap<Long, Integer> pendingMarks = new TreeMap<>();
+    private long maxIndexedId;
+    private long firstLiveId = Long.MAX_VALUE;
+    // Highest id the backfill has indexed, -1 when no backfill is running
+    private long backfillMark = -1;
+    private volatile long checkpoint;
+    private boolean checkpointFrozen;
+    private volatile boolean closed;
+
+    public SearchIndex(Path directory, int retentionDays) throws IOException {
+        this.directory = directory;
+        this.retentionDays = retentionDays;
+        Files.createDirectories(directory);
+        var openedSegments = new ArrayList<IndexSegment>();
+        try (var files = Files.list(directory)) {
+            for (var path : (Iterable<Path>) files::iterator) {
+                var fileName = path.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.delete(path);
+                } else if (fileName.startsWith("segment-") && fileName.endsWith(".idx")) {
+                    openedSegments.add(IndexSegment.open(path));
+                }
+            }
+        }
+        openedSegments.sort(Comparator.comparingLong(IndexSegment::generation));
+        segments = List.copyOf(openedSegments);
+        nextGeneration.set(openedSegments.isEmpty() ? 0 : openedSegments.get(openedSegments.size() - 1).generation() + 1);
+        var checkpointPath = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointPath)) {
+            checkpoint = Long.parseLong(Files.readString(checkpointPath).trim());
+        } else {
+            // Index written before checkpoints existed, assume the segments are complete
+            checkpoint = openedSegments.stream().mapToLong(IndexSegment::maxId).max().orElse(0);
+        }
+        maxIndexedId = checkpoint;
+        log.info("Opened search index with {} segments (checkpoint {})", segments.size(), checkpoint);
+    }
+
+    public static List<String> parseQuery(String query) {
+        var terms = new ArrayList<String>();
+        for (var token : query.trim().split("\\s+")) {
+            if (token.startsWith("tag:") && token.length() > 4) {
+                terms.add(SearchTokenizer.exact(SearchTokenizer.TAG_FIELD, token.substring(4)));
+            } else if (token.startsWith("source:") && token.length() > 7) {
+                terms.add(SearchTokenizer.exact(SearchTokenizer.SOURCE_FIELD, token.substring(7)));
+            } else {
+                SearchTokenizer.tokenize(SearchTokenizer.CONTENT_FIELD, token, terms::add);
+            }
+        }
+        return terms;
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(() -> {
+            flush();
+            maintain();
+        }, FLUSH_INTERVAL_SECONDS, FLUSH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Must be called before the logs of a batch are stored, and {@link #end(long)} with the returned mark once they
+     * are indexed or failed to store, so the checkpoint never passes logs that are not indexed yet.
+     */
+    public long begin() {
+        synchronized (lock) {
+            pendingMarks.merge(maxIndexedId, 1, Integer::sum);
+            return maxIndexedId;
+        }
+    }
+
+    public void end(long mark) {
+        synchronized (lock) {
+            pendingMarks.computeIfPresent(mark, (key, count) -> count == 1 ? null : count - 1);
+        }
+    }
+
+    public void add(long[] ids, List<InPacketLog> inPacketLogs) {
+        if (index(ids, inPacketLogs, true) && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Re-indexes the stored logs after the checkpoint in the background. These are the logs that were only buffered in
+     * memory when Logflow stopped, or all logs if the index is new.
+     */
+    public void backfill(LogStore logStore) {
+        synchronized (lock) {
+            backfillMark = checkpoint;
+        }
+        var thread = new Thread(() -> backfill(logStore, checkpoint), "Logflow Search Backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void backfill(LogStore logStore, long afterId) {
+        var start = System.nanoTime();
+        var cutoff = retentionDays > 0 ? System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays) : Long.MIN_VALUE;
+        var mark = afterId;
+        var backfilled = 0L;
+        try {
+            var done = false;
+            while (!done && !closed) {
+                var chunk = new ArrayList<StoredLog>(BACKFILL_CHUNK_SIZE);
+                logStore.scan(mark, BACKFILL_CHUNK_SIZE, chunk::add);
+                done = chunk.size() < BACKFILL_CHUNK_SIZE;
+                long liveId;
+                long inFlightId;
+                synchronized (lock) {
+                    liveId = firstLiveId;
+                    // Batches being stored only hold ids after their mark, they are indexed when they complete
+                    inFlightId = pendingMarks.isEmpty() ? Long.MAX_VALUE : pendingMarks.firstKey();
+                }
+                var ids = new long[chunk.size()];
+                var inPacketLogs = new ArrayList<InPacketLog>(chunk.size());
+                var lastId = mark;
+                var waiting = false;
+                for (var storedLog : chunk) {
+                    if (storedLog.id() >= liveId) {
+                        // Logs from here on were indexed when they were stored
+                        done = true;
+                        break;
+                    }
+                    if (storedLog.id() > inFlightId) {
+                        done = false;
+                        waiting = true;
+                        break;
+                    }
+                    lastId = storedLog.id();
+                    if (storedLog.timestamp() >= cutoff) {
+                        ids[inPacketLogs.size()] = storedLog.id();
+                        inPacketLogs.add(toInPacketLog(storedLog));
+                    }
+                }
+                var full = !inPacketLogs.isEmpty() && index(Arrays.copyOf(ids, inPacketLogs.size()), inPacketLogs, false);
+                backfilled += inPacketLogs.size();
+                synchronized (lock) {
+                    backfillMark = lastId;
+                }
+                if (full) {
+                    flush();
+                }
+                if (waiting && lastId == mark) {
+                    Thread.sleep(BACKFILL_WAIT_MILLIS);
+                }
+                mark = lastId;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to re-index stored logs after id {}, they will be re-indexed on the next start", mark, e);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (closed) {
+            return;
+        }
+        synchronized (lock) {
+            backfillMark = -1;
+        }
+        if (backfilled > 0) {
+            log.info("Re-indexed {} stored logs after id {} ({} ms)", backfilled, afterId, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private static InPacketLog toInPacketLog(StoredLog storedLog) {
+        var inPacketLog = new InPacketLog();
+        inPacketLog.setTimestamp(new Date(storedLog.timestamp()));
+        inPacketLog.setSource(storedLog.source());
+        inPacketLog.setContext(storedLog.context());
+        inPacketLog.setTags(storedLog.tags());
+        inPacketLog.setLevel(storedLog.level());
+        inPacketLog.setContent(storedLog.content());
+        return inPacketLog;
+    }
+
+    /**
+     * @return whether the memory segment is full
+     */
+    private boolean index(long[] ids, List<InPacketLog> inPacketLogs, boolean live) {
+        var start = System.nanoTime();
+        var documentTerms = new ArrayList<List<String>>(inPacketLogs.size());
+        var documentBytes = new long[inPacketLogs.size()];
+        for (int i = 0; i < inPacketLogs.size(); i++) {
+            var inPacketLog = inPacketLogs.get(i);
+            var terms = new ArrayList<String>();
+            SearchTokenizer.tokenize(SearchTokenizer.CONTENT_FIELD, inPacketLog.getContent(), terms::add);
+            for (var tag : inPacketLog.getTags()) {
+                terms.add(SearchTokenizer.exact(SearchTokenizer.TAG_FIELD, tag));
+            }
+            terms.add(SearchTokenizer.exact(SearchTokenizer.SOURCE_FIELD, inPacketLog.getSource()));
+            documentTerms.add(terms);
+            documentBytes[i] = inPacketLog.getContent() == null ? 0 : inPacketLog.getContent().getBytes(StandardCharsets.UTF_8).length;
+        }
+        boolean full;
+        synchronized (lock) {
+            for (int i = 0; i < ids.length; i++) {
+                var time = inPacketLogs.get(i).getTimestamp().getTime();
+                for (var term : documentTerms.get(i)) {
+                    memorySegment.add(term, ids[i], time);
+                }
+                memorySegment.addDocument(ids[i], time, documentBytes[i]);
+                maxIndexedId = Math.max(maxIndexedId, ids[i]);
+                if (live) {
+                    firstLiveId = Math.min(firstLiveId, ids[i]);
+                }
+            }
+            full = memorySegment.documents() >= FLUSH_DOCUMENTS;
+        }
+        indexedDocuments.add(ids.length);
+        indexNanos.add(System.nanoTime() - start);
+        return full;
+    }
+
+    /**
+     * Merges the matches of all segments in id order, starting after {@code afterId} and stopping after {@code limit}
+     * matches, so every page costs about the same.
+     */
+    public long[] search(List<String> terms, Long fromMillis, Long toMillis, long afterId, int limit) {
+        if (terms.isEmpty()) {
+            return new long[0];
+        }
+        var matchers = new ArrayList<PostingsCursor>();
+        synchronized (lock) {
+            addMatcher(matchers, memorySegment, terms, fromMillis, toMillis);
+            if (flushingSegment != null) {
+                addMatcher(matchers, flushingSegment, terms, fromMillis, toMillis);
+            }
+        }
+        for (var segment : segments) {
+            if (segment.maxId() <= afterId || !segment.overlaps(fromMillis, toMillis)) {
+                continue;
+            }
+            var cursors = new ArrayList<PostingsCursor>(terms.size());
+            for (var term : terms) {
+                var cursor = segment.cursor(term, fromMillis, toMillis);
+                if (cursor == null) {
+                    break;
+                }
+                cursors.add(cursor);
+            }
+            if (cursors.size() == terms.size()) {
+                matchers.add(PostingsCursor.intersection(cursors));
+            }
+        }
+        var heads = new long[matchers.size()];
+        for (int i = 0; i < heads.length; i++) {
+            heads[i] = matchers.get(i).advance(afterId + 1);
+        }
+        var matches = new long[limit];
+        var count = 0;
+        while (count < limit) {
+            var next = PostingsCursor.NO_MORE;
+            for (var head : heads) {
+                next = Math.min(next, head);
+            }
+            if (next == PostingsCursor.NO_MORE) {
+                break;
+            }
+            matches[count++] = next;
+            for (int i = 0; i < heads.length; i++) {
+                if (heads[i] == next) {
+                    heads[i] = matchers.get(i).advance(next + 1);
+                }
+            }
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    public SearchStats stats() {
+        var currentSegments = segments;
+        var segmentDocuments = 0L;
+        var segmentBytes = 0L;
+        var sourceBytes = 0L;
+        for (var segment : currentSegments) {
+            segmentDocuments += segment.documents();
+            segmentBytes += segment.sizeBytes();
+            sourceBytes += segment.sourceBytes();
+        }
+        int bufferedDocuments;
+        synchronized (lock) {
+            bufferedDocuments = memorySegment.documents() + (flushingSegment == null ? 0 : flushingSegment.documents());
+        }
+        var documents = indexedDocuments.sum();
+        var seconds = indexNanos.sum() / 1e9;
+        return new SearchStats(documents, seconds == 0 ? 0 : documents / seconds, currentSegments.size(), segmentDocuments, segmentBytes, sourceBytes,
+                sourceBytes == 0 ? 0 : (double) segmentBytes / sourceBytes, bufferedDocuments, flushes.get(), merges.get());
+    }
+
+    public void close() {
+        closed = true;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void addMatcher(List<PostingsCursor> matchers, MemorySegment segment, List<String> terms, Long fromMillis, Long toMillis) {
+        if (!segment.overlaps(fromMillis, toMillis)) {
+            return;
+        }
+        var cursors = new ArrayList<PostingsCursor>(terms.size());
+        for (var term : terms) {
+            var cursor = segment.cursor(term, fromMillis, toMillis);
+            if (cursor == null) {
+                return;
+            }
+            cursors.add(cursor);
+        }
+        matchers.add(PostingsCursor.intersection(cursors));
+    }
+
+    private synchronized void flush() {
+        flushScheduled.set(false);
+        MemorySegment segment;
+        long safeId;
+        synchronized (lock) {
+            if (memorySegment.documents() == 0) {
+                return;
+            }
+            safeId = pendingMarks.isEmpty() ? maxIndexedId : Math.min(maxIndexedId, pendingMarks.firstKey());
+            if (backfillMark >= 0) {
+                safeId = Math.min(safeId, backfillMark);
+            }
+            segment = memorySegment;
+            flushingSegment = segment;
+            memorySegment = new MemorySegment();
+        }
+        var start = System.nanoTime();
+        try {
+            var terms = segment.sortedTerms();
+            var written = IndexSegment.write(directory, nextGeneration.getAndIncrement(), segment.documents(), segment.sourceBytes(), segment.minId(), segment.maxId(),
+                    segment.minTime(), segment.maxTime(), terms.size(), terms.iterator());
+            replaceSegments(List.of(), written);
+            if (!checkpointFrozen && safeId > checkpoint) {
+                writeCheckpoint(safeId);
+            }
+            flushes.incrementAndGet();
+            log.info("Flushed search index segment ({} logs, {} terms, {} KiB, {} ms)", segment.documents(), terms.size(), written.sizeBytes() / 1024,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            // Keep the checkpoint before the lost logs, so they are re-indexed on the next start
+            checkpointFrozen = true;
+            log.error("Failed to flush search index segment, {} logs will not be searchable until the next start", segment.documents(), e);
+        } finally {
+            synchronized (lock) {
+                flushingSegment = null;
+            }
+        }
+    }
+
+    private void writeCheckpoint(long id) throws IOException {
+        var path = directory.resolve(CHECKPOINT_FILE);
+        var temporaryPath = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temporaryPath, Long.toString(id));
+        try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = id;
+    }
+
+    private synchronized void maintain() {
+        if (retentionDays > 0) {
+            var cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+            var expired = segments.stream().filter(segment -> segment.maxTime() < cutoff).toList();
+            if (!expired.isEmpty()) {
+                replaceSegments(expired, null);
+                deleteSegments(expired);
+                log.info("Deleted {} expired search index segments", expired.size());
+            }
+        }
+        while (segments.size() > MAX_SEGMENTS) {
+            var candidates = new ArrayList<>(segments);
+            candidates.sort(Comparator.comparingLong(IndexSegment::sizeBytes));
+            var toMerge = candidates.subList(0, MERGE_FACTOR);
+            try {
+                merge(List.copyOf(toMerge));
+            } catch (IOException e) {
+                log.error("Failed to merge search index segments", e);
+                return;
+            }
+        }
+    }
+
+    private void merge(List<IndexSegment> toMerge) throws IOException {
+        var start = System.nanoTime();
+        var documents = 0;
+        var sourceBytes = 0L;
+        var minId = Long.MAX_VALUE;
+        var maxId = Long.MIN_VALUE;
+        var minTime = Long.MAX_VALUE;
+        var maxTime = Long.MIN_VALUE;
+        for (var segment : toMerge) {
+            documents += segment.documents();
+            sourceBytes += segment.sourceBytes();
+            minId = Math.min(minId, segment.minId());
+            maxId = Math.max(maxId, segment.maxId());
+            minTime = Math.min(minTime, segment.minTime());
+            maxTime = Math.max(maxTime, segment.maxTime());
+        }
+        var merged = IndexSegment.write(directory, nextGeneration.getAndIncrement(), documents, sourceBytes, minId, maxId, minTime, maxTime,
+                countTerms(toMerge), new MergingIterator(toMerge));
+        replaceSegments(toMerge, merged);
+        deleteSegments(toMerge);
+        merges.incrementAndGet();
+        log.info("Merged {} search index segments ({} logs, {} KiB, {} ms)", toMerge.size(), documents, merged.sizeBytes() / 1024,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void replaceSegments(List<IndexSegment> removed, IndexSegment added) {
+        var updated = new ArrayList<>(segments);
+        updated.removeAll(removed);
+        if (added != null) {
+            updated.add(added);
+        }
+        segments = List.copyOf(updated);
+    }
+
+    private void deleteSegments(List<IndexSegment> removed) {
+        for (var segment : removed) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                log.warn("Failed to delete search index segment {} -> {}", segment.path(), e.getMessage());
+            }
+        }
+    }
+
+    private static int countTerms(List<IndexSegment> toMerge) {
+        var positions = new int[toMerge.size()];
+        var count = 0;
+        while (true) {
+            String smallest = null;
+            for (int i = 0; i < toMerge.size(); i++) {
+                var terms = toMerge.get(i).terms();
+                if (positions[i] < terms.length && (smallest == null || terms[positions[i]].compareTo(smallest) < 0)) {
+                    smallest = terms[positions[i]];
+                }
+            }
+            if (smallest == null) {
+                return count;
+            }
+            for (int i = 0; i < toMerge.size(); i++) {
+                var terms = toMerge.get(i).terms();
+                if (positions[i] < terms.length && terms[positions[i]].equals(smallest)) {
+                    positions[i]++;
+                }
+            }
+            count++;
+        }
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        var result = new long[a.length + b.length];
+        int i = 0, j = 0, count = 0;
+        while (i < a.length || j < b.length) {
+            long next;
+            if (j >= b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (count == 0 || result[count - 1] != next) {
+                result[count++] = next;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static class MergingIterator implements Iterator<TermPostings> {
+
+        private final PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator.comparing(cursor -> cursor.current.term()));
+
+        private MergingIterator(List<IndexSegment> segments) {
+            for (var segment : segments) {
+                var iterator = segment.termIterator();
+                if (iterator.hasNext()) {
+                    queue.add(new Cursor(iterator, iterator.next()));
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public TermPostings next() {
+            if (queue.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            var cursor = queue.poll();
+            var term = cursor.current.term();
+            var ids = cursor.current.ids();
+            var minTime = cursor.current.minTime();
+            var maxTime = cursor.current.maxTime();
+            advance(cursor);
+            while (!queue.isEmpty() && queue.peek().current.term().equals(term)) {
+                var other = queue.poll();
+                ids = union(ids, other.current.ids());
+                minTime = Math.min(minTime, other.current.minTime());
+                maxTime = Math.max(maxTime, other.current.maxTime());
+                advance(other);
+            }
+            return new TermPostings(term, ids, minTime, maxTime);
+        }
+
+        private void advance(Cursor cursor) {
+            if (cursor.iterator.hasNext()) {
+                cursor.current = cursor.iterator.next();
+                queue.add(cursor);
+            }
+        }
+
+        private static class Cursor {
+
+            private final Iterator<TermPostings> iterator;
+            private TermPostings current;
+
+            private Cursor(Iterator<TermPostings> iterator, TermPostings current) {
+                this.iterator = iterator;
+                this.current = current;
+            }
+
+        }
+
+    }
+
+}
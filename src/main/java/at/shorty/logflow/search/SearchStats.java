@@ -0,0 +1,5 @@
+package at.shorty.logflow.search;
+
+public record SearchStats(long indexedDocuments, double indexedDocumentsPerSecond, int segments, long segmentDocuments, long segmentBytes, long sourceBytes,
+                          double diskOverhead, int bufferedDocuments, long flushes, long merges) {
+}
@@ -0,0 +1,43 @@
+package at.shorty.logflow.search;
+
+import java.util.function.Consumer;
+
+public final class SearchTokenizer {
+
+    public static final char CONTENT_FIELD = 'c';
+    public static final char TAG_FIELD = 't';
+    public static final char SOURCE_FIELD = 's';
+
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int MAX_INDEXED_LENGTH = 64 * 1024;
+
+    private SearchTokenizer() {
+    }
+
+    public static void tokenize(char field, String text, Consumer<String> terms) {
+        if (text == null) {
+            return;
+        }
+        var length = Math.min(text.length(), MAX_INDEXED_LENGTH);
+        var term = new StringBuilder(MAX_TERM_LENGTH + 2);
+        for (int i = 0; i <= length; i++) {
+            var c = i < length ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                if (term.length() <= MAX_TERM_LENGTH) {
+                    term.append(Character.toLowerCase(c));
+                }
+                continue;
+            }
+            if (term.length() >= MIN_TERM_LENGTH && term.length() <= MAX_TERM_LENGTH) {
+                terms.accept(field + ":" + term);
+            }
+            term.setLength(0);
+        }
+    }
+
+    public static String exact(char field, String value) {
+        return field + ":" + value.toLowerCase();
+    }
+
+}
@@ -0,0 +1,4 @@
+package at.shorty.logflow.search;
+
+record TermPostings(String term, long[] ids, long minTime, long maxTime) {
+}
@@ -0,0 +1,178 @@
+package at.shorty.logflow.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+@Slf4j
+class ActiveSegment implements LogSegment {
+
+    static final int BLOCK_BYTES = 64 * 1024;
+
+    private final Path path;
+    private final long baseId;
+    private final MappedByteBuffer buffer;
+    private final CRC32C crc = new CRC32C();
+    private final List<SegmentBlock> blocks = new ArrayList<>();
+    private int position;
+    private long lastId;
+    private long minTime = Long.MAX_VALUE;
+    private long maxTime = Long.MIN_VALUE;
+    private int blockStart;
+    private long blockFirstId = -1;
+    private long blockMinTime;
+    private long blockMaxTime;
+
+    private ActiveSegment(Path path, long baseId, MappedByteBuffer buffer) {
+        this.path = path;
+        this.baseId = baseId;
+        this.buffer = buffer;
+        this.lastId = baseId - 1;
+    }
+
+    static ActiveSegment create(Path directory, long baseId, int capacity) throws IOException {
+        var path = directory.resolve(fileName(baseId));
+        try (var channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new ActiveSegment(path, baseId, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    static ActiveSegment open(Path path) throws IOException {
+        var fileName = path.getFileName().toString();
+        var baseId = Long.parseLong(fileName.substring(fileName.indexOf('-') + 1, fileName.indexOf('.')));
+        ActiveSegment segment;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = new ActiveSegment(path, baseId, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+        segment.recover();
+        return segment;
+    }
+
+    static String fileName(long baseId) {
+        return "segment-" + baseId + ".log";
+    }
+
+    private void recover() {
+        var cursor = new RecordCursor(buffer.duplicate().position(0), path);
+        try {
+            while (cursor.next()) {
+                track(cursor.recordStart(), cursor.id(), cursor.timestamp(), cursor.recordStart() + RecordCodec.HEADER_BYTES + buffer.getInt(cursor.recordStart()));
+            }
+            position = cursor.recordStart();
+        } catch (IOException e) {
+            position = cursor.recordStart();
+            log.warn("Truncating log segment {} at byte {} -> {}", path, position, e.getMessage());
+            var zeros = new byte[BLOCK_BYTES];
+            for (int offset = position; offset < buffer.capacity(); offset += zeros.length) {
+                buffer.put(offset, zeros, 0, Math.min(zeros.length, buffer.capacity() - offset));
+            }
+        }
+    }
+
+    synchronized boolean append(long id, long time, byte[] payload) {
+        var length = 8 + payload.length;
+        if (position + RecordCodec.HEADER_BYTES + length > buffer.capacity()) {
+            return false;
+        }
+        buffer.putInt(position, length);
+        buffer.putLong(position + RecordCodec.HEADER_BYTES, id);
+        buffer.put(position + RecordCodec.HEADER_BYTES + 8, payload);
+        crc.reset();
+        crc.update(buffer.slice(position + RecordCodec.HEADER_BYTES, length));
+        buffer.putInt(position + 4, (int) crc.getValue());
+        track(position, id, time, position + RecordCodec.HEADER_BYTES + length);
+        return true;
+    }
+
+    private void track(int start, long id, long time, int end) {
+        if (blockFirstId >= 0 && start - blockStart >= BLOCK_BYTES) {
+            blocks.add(openBlock());
+            blockFirstId = -1;
+        }
+        if (blockFirstId < 0) {
+            blockFirstId = id;
+            blockStart = start;
+            blockMinTime = time;
+            blockMaxTime = time;
+        } else {
+            blockMinTime = Math.min(blockMinTime, time);
+            blockMaxTime = Math.max(blockMaxTime, time);
+        }
+        minTime = Math.min(minTime, time);
+        maxTime = Math.max(maxTime, time);
+        lastId = id;
+        position = end;
+    }
+
+    private SegmentBlock openBlock() {
+        var length = position - blockStart;
+        return new SegmentBlock(blockFirstId, lastId, blockMinTime, blockMaxTime, blockStart, length, length, 0);
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    synchronized boolean isEmpty() {
+        return blockFirstId < 0 && blocks.isEmpty();
+    }
+
+    @Override
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public long baseId() {
+        return baseId;
+    }
+
+    @Override
+    public synchronized long lastId() {
+        return lastId;
+    }
+
+    @Override
+    public synchronized long minTime() {
+        return minTime;
+    }
+
+    @Override
+    public synchronized long maxTime() {
+        return maxTime;
+    }
+
+    @Override
+    public synchronized long sizeBytes() {
+        return position;
+    }
+
+    @Override
+    public synchronized List<SegmentBlock> blocks() {
+        var snapshot = new ArrayList<>(blocks);
+        if (blockFirstId >= 0) {
+            snapshot.add(openBlock());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public synchronized ByteBuffer read(SegmentBlock block) {
+        return buffer.slice((int) block.offset(), block.length());
+    }
+
+    @Override
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+}
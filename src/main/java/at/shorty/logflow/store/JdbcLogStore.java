@@ -0,0 +1,102 @@
+package at.shorty.logflow.store;
+
+import at.shorty.logflow.hikari.HikariConnectionPool;
+import at.shorty.logflow.ingest.data.ContentCompressor;
+import at.shorty.logflow.ingest.data.LogAction;
+import at.shorty.logflow.ingest.data.LogDictionary;
+import at.shorty.logflow.ingest.data.MetadataExtractor;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.query.LogConsumer;
+import at.shorty.logflow.query.LogQuery;
+import at.shorty.logflow.query.LogReader;
+import at.shorty.logflow.search.SearchIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+@Slf4j
+public class JdbcLogStore implements LogStore {
+
+    private final HikariConnectionPool connectionPool;
+    private final StorageMode storageMode;
+    private final LogDictionary logDictionary;
+    private final ContentCompressor contentCompressor;
+    private final MetadataExtractor metadataExtractor;
+    private final LogReader logReader;
+    private final Queue<LogAction> idleLogActions = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    public JdbcLogStore(HikariConnectionPool connectionPool, StorageMode storageMode, LogDictionary logDictionary, SearchIndex searchIndex, ContentCompressor contentCompressor,
+                        MetadataExtractor metadataExtractor) {
+        this.connectionPool = connectionPool;
+        this.storageMode = storageMode;
+        this.logDictionary = logDictionary;
+        this.contentCompressor = contentCompressor;
+        this.metadataExtractor = metadataExtractor;
+        this.logReader = new LogReader(connectionPool, storageMode, logDictionary, searchIndex, contentCompressor);
+    }
+
+    @Override
+    public long[] append(List<InPacketLog> inPacketLogs) throws IOException {
+        var logAction = idleLogActions.poll();
+        if (logAction == null) {
+            logAction = new LogAction(connectionPool, storageMode, logDictionary, contentCompressor, metadataExtractor);
+        }
+        try {
+            return logAction.log(inPacketLogs);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            idleLogActions.offer(logAction);
+            if (closed) {
+                closeIdleLogActions();
+            }
+        }
+    }
+
+    @Override
+    public void read(LogQuery logQuery, LogConsumer consumer) throws IOException {
+        try {
+            logReader.read(logQuery, consumer);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void scan(long afterId, int limit, LogConsumer consumer) throws IOException {
+        try {
+            logReader.scan(afterId, limit, consumer);
+        } catch (SQLException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isSearchEnabled() {
+        return logReader.isSearchEnabled();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        closeIdleLogActions();
+    }
+
+    private void closeIdleLogActions() {
+        LogAction logAction;
+        while ((logAction = idleLogActions.poll()) != null) {
+            try {
+                logAction.close();
+            } catch (SQLException e) {
+                log.warn("Failed to close log store connection -> {}", e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package at.shorty.logflow.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+interface LogSegment {
+
+    Path path();
+
+    long baseId();
+
+    long lastId();
+
+    long minTime();
+
+    long maxTime();
+
+    long sizeBytes();
+
+    List<SegmentBlock> blocks();
+
+    ByteBuffer read(SegmentBlock block) throws IOException;
+
+    void delete() throws IOException;
+
+    default boolean overlaps(Long fromMillis, Long toMillis) {
+        return (fromMillis == null || maxTime() >= fromMillis) && (toMillis == null || minTime() < toMillis);
+    }
+
+}
@@ -0,0 +1,25 @@
+package at.shorty.logflow.store;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.query.LogConsumer;
+import at.shorty.logflow.query.LogQuery;
+
+import java.io.IOException;
+import java.util.List;
+
+public interface LogStore {
+
+    long[] append(List<InPacketLog> inPacketLogs) throws IOException;
+
+    void read(LogQuery logQuery, LogConsumer consumer) throws IOException;
+
+    /**
+     * Reads up to {@code limit} logs with an id greater than {@code afterId}, in id order.
+     */
+    void scan(long afterId, int limit, LogConsumer consumer) throws IOException;
+
+    boolean isSearchEnabled();
+
+    void close();
+
+}
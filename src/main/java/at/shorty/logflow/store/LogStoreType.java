@@ -0,0 +1,6 @@
+package at.shorty.logflow.store;
+
+public enum LogStoreType {
+    JDBC,
+    SEGMENT
+}
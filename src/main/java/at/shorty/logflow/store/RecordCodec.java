@@ -0,0 +1,137 @@
+package at.shorty.logflow.store;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.query.StoredLog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+public final class RecordCodec {
+
+    static final int HEADER_BYTES = 8;
+    static final int MIN_LENGTH = 17;
+    private static final Level[] LEVELS = Level.values();
+
+    private RecordCodec() {
+    }
+
+    public static byte[] encode(InPacketLog inPacketLog) {
+        var source = utf8(inPacketLog.getSource());
+        var sourceIp = utf8(inPacketLog.getSourceIp());
+        var context = utf8(inPacketLog.getContext());
+        var tags = new byte[inPacketLog.getTags().length][];
+        var size = 9 + sizeOf(source) + sizeOf(sourceIp) + sizeOf(context) + varIntSize(tags.length);
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = utf8(inPacketLog.getTags()[i]);
+            size += sizeOf(tags[i]);
+        }
+        var metadata = utf8(inPacketLog.getMetadata());
+        var content = utf8(inPacketLog.getContent());
+        size += sizeOf(metadata) + sizeOf(content);
+        var buffer = ByteBuffer.allocate(size);
+        buffer.putLong(inPacketLog.getTimestamp().getTime());
+        buffer.put((byte) inPacketLog.getLevel().ordinal());
+        putString(buffer, source);
+        putString(buffer, sourceIp);
+        putString(buffer, context);
+        putVarInt(buffer, tags.length);
+        for (var tag : tags) {
+            putString(buffer, tag);
+        }
+        putString(buffer, metadata);
+        putString(buffer, content);
+        return buffer.array();
+    }
+
+    public static InPacketLog decodePacket(ByteBuffer payload) {
+        var inPacketLog = new InPacketLog();
+        inPacketLog.setTimestamp(new Date(payload.getLong()));
+        inPacketLog.setLevel(LEVELS[payload.get()]);
+        inPacketLog.setSource(getString(payload));
+        inPacketLog.setSourceIp(getString(payload));
+        inPacketLog.setContext(getString(payload));
+        var tags = new String[getVarInt(payload)];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = getString(payload);
+        }
+        inPacketLog.setTags(tags);
+        inPacketLog.setMetadata(getString(payload));
+        inPacketLog.setContent(getString(payload));
+        return inPacketLog;
+    }
+
+    static StoredLog decode(ByteBuffer record) {
+        var id = record.getLong();
+        var timestamp = record.getLong();
+        var level = LEVELS[record.get()];
+        var source = getString(record);
+        var sourceIp = getString(record);
+        var context = getString(record);
+        var tags = new String[getVarInt(record)];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = getString(record);
+        }
+        var metadata = getString(record);
+        var content = getString(record);
+        return new StoredLog(id, timestamp, source, sourceIp, context, tags, metadata, level, content);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] value) {
+        return value == null ? 1 : varIntSize(value.length + 1) + value.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+            return;
+        }
+        putVarInt(buffer, value.length + 1);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        var length = getVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int varIntSize(int value) {
+        var size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        var value = 0;
+        var shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+}
@@ -0,0 +1,75 @@
+package at.shorty.logflow.store;
+
+import at.shorty.logflow.query.StoredLog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+
+class RecordCursor {
+
+    private final ByteBuffer buffer;
+    private final Path path;
+    private final CRC32C crc = new CRC32C();
+    private int recordStart;
+    private int start;
+    private int length;
+    private boolean positioned;
+
+    RecordCursor(ByteBuffer buffer, Path path) {
+        this.buffer = buffer;
+        this.path = path;
+    }
+
+    boolean next() throws IOException {
+        positioned = false;
+        recordStart = buffer.position();
+        if (buffer.remaining() < RecordCodec.HEADER_BYTES) {
+            return false;
+        }
+        var recordLength = buffer.getInt(recordStart);
+        if (recordLength == 0) {
+            return false;
+        }
+        if (recordLength < RecordCodec.MIN_LENGTH || recordLength > buffer.remaining() - RecordCodec.HEADER_BYTES) {
+            throw new IOException("Corrupt record length at byte " + recordStart + " in " + path);
+        }
+        crc.reset();
+        crc.update(buffer.slice(recordStart + RecordCodec.HEADER_BYTES, recordLength));
+        if ((int) crc.getValue() != buffer.getInt(recordStart + 4)) {
+            throw new IOException("Checksum mismatch at byte " + recordStart + " in " + path);
+        }
+        start = recordStart + RecordCodec.HEADER_BYTES;
+        length = recordLength;
+        buffer.position(start + length);
+        positioned = true;
+        return true;
+    }
+
+    boolean seek(long id) throws IOException {
+        while (!positioned || id() < id) {
+            if (!next()) {
+                return false;
+            }
+        }
+        return id() == id;
+    }
+
+    int recordStart() {
+        return recordStart;
+    }
+
+    long id() {
+        return buffer.getLong(start);
+    }
+
+    long timestamp() {
+        return buffer.getLong(start + 8);
+    }
+
+    StoredLog decode() {
+        return RecordCodec.decode(buffer.slice(start, length));
+    }
+
+}
@@ -0,0 +1,183 @@
+package at.shorty.logflow.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+class SealedSegment implements LogSegment {
+
+    private static final int MAGIC = 0x4C46534C;
+    private static final int VERSION = 1;
+    private static final int BLOCK_ENTRY_BYTES = 5 * 8 + 3 * 4;
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 4 + 4;
+
+    private final Path path;
+    private final long baseId;
+    private final MappedByteBuffer buffer;
+    private final long sizeBytes;
+    private final List<SegmentBlock> blocks;
+    private final long lastId;
+    private final long minTime;
+    private final long maxTime;
+
+    private SealedSegment(Path path) throws IOException {
+        this.path = path;
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.sizeBytes = channel.size();
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, sizeBytes);
+        }
+        if (sizeBytes < FOOTER_BYTES) {
+            throw new IOException("Invalid log segment " + path);
+        }
+        var footer = buffer.duplicate().position((int) sizeBytes - FOOTER_BYTES);
+        var indexOffset = footer.getLong();
+        var blockCount = footer.getInt();
+        baseId = footer.getLong();
+        if (footer.getInt() != MAGIC || footer.getInt() != VERSION || indexOffset + (long) blockCount * BLOCK_ENTRY_BYTES != sizeBytes - FOOTER_BYTES) {
+            throw new IOException("Invalid log segment " + path);
+        }
+        var index = buffer.duplicate().position((int) indexOffset);
+        var readBlocks = new ArrayList<SegmentBlock>(blockCount);
+        var segmentMinTime = Long.MAX_VALUE;
+        var segmentMaxTime = Long.MIN_VALUE;
+        for (int i = 0; i < blockCount; i++) {
+            var block = new SegmentBlock(index.getLong(), index.getLong(), index.getLong(), index.getLong(), index.getLong(), index.getInt(), index.getInt(), index.getInt());
+            segmentMinTime = Math.min(segmentMinTime, block.minTime());
+            segmentMaxTime = Math.max(segmentMaxTime, block.maxTime());
+            readBlocks.add(block);
+        }
+        blocks = List.copyOf(readBlocks);
+        lastId = blocks.isEmpty() ? baseId - 1 : blocks.get(blocks.size() - 1).lastId();
+        minTime = segmentMinTime;
+        maxTime = segmentMaxTime;
+    }
+
+    static SealedSegment open(Path path) throws IOException {
+        return new SealedSegment(path);
+    }
+
+    static SealedSegment write(Path directory, LogSegment segment) throws IOException {
+        var path = directory.resolve(fileName(segment.baseId()));
+        var temporaryPath = directory.resolve(fileName(segment.baseId()) + ".tmp");
+        var sourceBlocks = segment.blocks();
+        var index = ByteBuffer.allocate(sourceBlocks.size() * BLOCK_ENTRY_BYTES + FOOTER_BYTES);
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        var crc = new CRC32C();
+        var compressed = new ByteArrayOutputStream(ActiveSegment.BLOCK_BYTES);
+        var chunk = new byte[ActiveSegment.BLOCK_BYTES];
+        try (var channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var offset = 0L;
+            for (var block : sourceBlocks) {
+                deflater.reset();
+                deflater.setInput(segment.read(block));
+                deflater.finish();
+                compressed.reset();
+                while (!deflater.finished()) {
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+                }
+                var bytes = compressed.toByteArray();
+                crc.reset();
+                crc.update(bytes);
+                channel.write(ByteBuffer.wrap(bytes));
+                index.putLong(block.firstId()).putLong(block.lastId()).putLong(block.minTime()).putLong(block.maxTime()).putLong(offset)
+                        .putInt(block.length()).putInt(bytes.length).putInt((int) crc.getValue());
+                offset += bytes.length;
+            }
+            index.putLong(offset).putInt(sourceBlocks.size()).putLong(segment.baseId()).putInt(MAGIC).putInt(VERSION);
+            channel.write(index.flip());
+            channel.force(true);
+        } finally {
+            deflater.end();
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return new SealedSegment(path);
+    }
+
+    static String fileName(long baseId) {
+        return "segment-" + baseId + ".seg";
+    }
+
+    @Override
+    public Path path() {
+        return path;
+    }
+
+    @Override
+    public long baseId() {
+        return baseId;
+    }
+
+    @Override
+    public long lastId() {
+        return lastId;
+    }
+
+    @Override
+    public long minTime() {
+        return minTime;
+    }
+
+    @Override
+    public long maxTime() {
+        return maxTime;
+    }
+
+    @Override
+    public long sizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public List<SegmentBlock> blocks() {
+        return blocks;
+    }
+
+    @Override
+    public ByteBuffer read(SegmentBlock block) throws IOException {
+        var compressed = buffer.slice((int) block.offset(), block.storedLength());
+        var crc = new CRC32C();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != block.checksum()) {
+            throw new IOException("Checksum mismatch in block " + block.firstId() + " of " + path);
+        }
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            var raw = new byte[block.length()];
+            var length = 0;
+            while (length < raw.length && !inflater.finished()) {
+                var inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += inflated;
+            }
+            if (length != raw.length) {
+                throw new IOException("Truncated block " + block.firstId() + " in " + path);
+            }
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt block " + block.firstId() + " in " + path, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+}
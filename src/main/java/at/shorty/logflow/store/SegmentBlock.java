@@ -0,0 +1,9 @@
+package at.shorty.logflow.store;
+
+record SegmentBlock(long firstId, long lastId, long minTime, long maxTime, long offset, int length, int storedLength, int checksum) {
+
+    boolean overlaps(Long fromMillis, Long toMillis) {
+        return (fromMillis == null || maxTime >= fromMillis) && (toMillis == null || minTime < toMillis);
+    }
+
+}
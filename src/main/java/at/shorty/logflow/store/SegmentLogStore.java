@@ -0,0 +1,474 @@
+package at.shorty.logflow.store;
+
+import at.shorty.logflow.ingest.data.MetadataExtractor;
+import at.shorty.logflow.ingest.data.MetadataType;
+import at.shorty.logflow.ingest.data.MetadataValue;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.query.LogConsumer;
+import at.shorty.logflow.query.LogQuery;
+import at.shorty.logflow.query.MetadataPredicate;
+import at.shorty.logflow.query.StoredLog;
+import at.shorty.logflow.search.SearchIndex;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+public class SegmentLogStore implements LogStore {
+
+    private static final int MIN_SEGMENT_BYTES = 1024 * 1024;
+    private static final int READ_CHUNK_SIZE = 10_000;
+    private static final int SEARCH_CHUNK_SIZE = 1000;
+    private static final Comparator<StoredLog> ORDER = Comparator.comparingLong(StoredLog::timestamp).thenComparingLong(StoredLog::id);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int retentionDays;
+    private final SearchIndex searchIndex;
+    private final MetadataExtractor metadataExtractor;
+    private final Object lock = new Object();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "Logflow Segment Store");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ActiveSegment activeSegment;
+    private volatile List<LogSegment> segments;
+    private long nextId;
+
+    public SegmentLogStore(Path directory, int segmentBytes, int retentionDays, SearchIndex searchIndex, MetadataExtractor metadataExtractor) throws IOException {
+        if (segmentBytes < MIN_SEGMENT_BYTES) {
+            throw new IllegalArgumentException("Segment size must be at least 1 MiB");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retentionDays = retentionDays;
+        this.searchIndex = searchIndex;
+        this.metadataExtractor = metadataExtractor;
+        Files.createDirectories(directory);
+        var sealedSegments = new TreeMap<Long, LogSegment>();
+        var activePaths = new TreeMap<Long, Path>();
+        try (var files = Files.list(directory)) {
+            for (var path : (Iterable<Path>) files::iterator) {
+                var fileName = path.getFileName().toString();
+                if (fileName.endsWith(".tmp")) {
+                    Files.delete(path);
+                } else if (fileName.startsWith("segment-") && fileName.endsWith(".seg")) {
+                    var segment = SealedSegment.open(path);
+                    sealedSegments.put(segment.baseId(), segment);
+                } else if (fileName.startsWith("segment-") && fileName.endsWith(".log")) {
+                    activePaths.put(Long.parseLong(fileName.substring(8, fileName.length() - 4)), path);
+                }
+            }
+        }
+        var recoveredSegments = new TreeMap<>(sealedSegments);
+        var unsealed = new ArrayList<ActiveSegment>();
+        ActiveSegment emptySegment = null;
+        for (var entry : activePaths.entrySet()) {
+            if (sealedSegments.containsKey(entry.getKey())) {
+                Files.delete(entry.getValue());
+                continue;
+            }
+            var segment = ActiveSegment.open(entry.getValue());
+            if (segment.isEmpty()) {
+                if (emptySegment != null) {
+                    emptySegment.delete();
+                }
+                emptySegment = segment;
+                continue;
+            }
+            recoveredSegments.put(segment.baseId(), segment);
+            unsealed.add(segment);
+        }
+        nextId = recoveredSegments.isEmpty() ? 1 : recoveredSegments.lastEntry().getValue().lastId() + 1;
+        if (emptySegment != null && emptySegment.baseId() < nextId) {
+            emptySegment.delete();
+            emptySegment = null;
+        }
+        if (emptySegment != null) {
+            // The name of an empty latest segment is the only record of the next id once older segments expired
+            nextId = emptySegment.baseId();
+            activeSegment = emptySegment;
+            recoveredSegments.put(activeSegment.baseId(), activeSegment);
+        } else if (!unsealed.isEmpty() && unsealed.get(unsealed.size() - 1) == recoveredSegments.lastEntry().getValue()) {
+            activeSegment = unsealed.remove(unsealed.size() - 1);
+        } else {
+            activeSegment = ActiveSegment.create(directory, nextId, segmentBytes);
+            recoveredSegments.put(activeSegment.baseId(), activeSegment);
+        }
+        segments = List.copyOf(recoveredSegments.values());
+        for (var segment : unsealed) {
+            executor.execute(() -> seal(segment));
+        }
+        log.info("Opened log store with {} segments (next id {})", segments.size(), nextId);
+    }
+
+    public void start() {
+        executor.scheduleWithFixedDelay(this::force, 1, 1, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(this::expire, 0, 1, TimeUnit.HOURS);
+    }
+
+    @Override
+    public long[] append(List<InPacketLog> inPacketLogs) throws IOException {
+        var payloads = new byte[inPacketLogs.size()][];
+        for (int i = 0; i < payloads.length; i++) {
+            payloads[i] = RecordCodec.encode(inPacketLogs.get(i));
+            if (RecordCodec.HEADER_BYTES + 8 + payloads[i].length > segmentBytes) {
+                throw new IOException("Log of " + payloads[i].length + " bytes does not fit into a segment");
+            }
+        }
+        var ids = new long[payloads.length];
+        synchronized (lock) {
+            for (int i = 0; i < payloads.length; i++) {
+                var time = inPacketLogs.get(i).getTimestamp().getTime();
+                if (!activeSegment.append(nextId, time, payloads[i])) {
+                    roll();
+                    activeSegment.append(nextId, time, payloads[i]);
+                }
+                ids[i] = nextId++;
+            }
+        }
+        return ids;
+    }
+
+    private void roll() throws IOException {
+        var full = activeSegment;
+        activeSegment = ActiveSegment.create(directory, nextId, segmentBytes);
+        var updated = new ArrayList<>(segments);
+        updated.add(activeSegment);
+        segments = List.copyOf(updated);
+        executor.execute(() -> seal(full));
+    }
+
+    private void seal(ActiveSegment segment) {
+        var start = System.nanoTime();
+        try {
+            segment.force();
+            var sealed = SealedSegment.write(directory, segment);
+            synchronized (lock) {
+                var updated = new ArrayList<>(segments);
+                updated.set(updated.indexOf(segment), sealed);
+                segments = List.copyOf(updated);
+            }
+            segment.delete();
+            log.info("Sealed log segment {} ({} KiB -> {} KiB, {} ms)", sealed.path().getFileName(), segment.sizeBytes() / 1024, sealed.sizeBytes() / 1024,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException e) {
+            log.error("Failed to seal log segment {}, keeping it uncompressed", segment.path(), e);
+        }
+    }
+
+    private void force() {
+        ActiveSegment segment;
+        synchronized (lock) {
+            segment = activeSegment;
+        }
+        segment.force();
+    }
+
+    private void expire() {
+        if (retentionDays <= 0) {
+            return;
+        }
+        var cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(retentionDays);
+        List<LogSegment> expired;
+        synchronized (lock) {
+            expired = segments.stream().filter(segment -> segment instanceof SealedSegment && segment.maxTime() < cutoff).toList();
+            if (expired.isEmpty()) {
+                return;
+            }
+            var updated = new ArrayList<>(segments);
+            updated.removeAll(expired);
+            segments = List.copyOf(updated);
+        }
+        for (var segment : expired) {
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                log.warn("Failed to delete expired log segment {} -> {}", segment.path(), e.getMessage());
+            }
+        }
+        log.info("Deleted {} expired log segments", expired.size());
+    }
+
+    @Override
+    public void read(LogQuery logQuery, LogConsumer consumer) throws IOException {
+        var filter = new LogFilter(logQuery, metadataExtractor);
+        if (logQuery.search() != null) {
+            search(logQuery, filter, consumer);
+            return;
+        }
+        var cursorMillis = logQuery.cursorId() == null ? null : logQuery.cursorMillis();
+        var cursorId = logQuery.cursorMillis() == null ? null : logQuery.cursorId();
+        var remaining = logQuery.limit();
+        while (remaining > 0) {
+            var chunkSize = Math.min(remaining, READ_CHUNK_SIZE);
+            var chunk = collect(logQuery, filter, cursorMillis, cursorId, chunkSize);
+            for (var storedLog : chunk) {
+                consumer.accept(storedLog);
+            }
+            if (chunk.size() < chunkSize) {
+                return;
+            }
+            remaining -= chunk.size();
+            var last = chunk.get(chunk.size() - 1);
+            cursorMillis = last.timestamp();
+            cursorId = last.id();
+        }
+    }
+
+    private List<StoredLog> collect(LogQuery logQuery, LogFilter filter, Long cursorMillis, Long cursorId, int limit) throws IOException {
+        var fromMillis = logQuery.fromMillis();
+        if (cursorMillis != null && (fromMillis == null || cursorMillis > fromMillis)) {
+            fromMillis = cursorMillis;
+        }
+        var toMillis = logQuery.toMillis();
+        var heap = new PriorityQueue<StoredLog>(limit, ORDER.reversed());
+        for (var segment : segments) {
+            if (!segment.overlaps(fromMillis, toMillis)) {
+                continue;
+            }
+            for (var block : segment.blocks()) {
+                if (!block.overlaps(fromMillis, toMillis) || heap.size() == limit && block.minTime() > heap.peek().timestamp()) {
+                    continue;
+                }
+                var cursor = new RecordCursor(segment.read(block), segment.path());
+                while (cursor.next()) {
+                    var timestamp = cursor.timestamp();
+                    if (fromMillis != null && timestamp < fromMillis || toMillis != null && timestamp >= toMillis) {
+                        continue;
+                    }
+                    var id = cursor.id();
+                    if (cursorMillis != null && timestamp == cursorMillis && id <= cursorId) {
+                        continue;
+                    }
+                    if (heap.size() == limit) {
+                        var last = heap.peek();
+                        if (timestamp > last.timestamp() || timestamp == last.timestamp() && id > last.id()) {
+                            continue;
+                        }
+                    }
+                    var storedLog = cursor.decode();
+                    if (filter.matches(storedLog)) {
+                        heap.add(storedLog);
+                        if (heap.size() > limit) {
+                            heap.poll();
+                        }
+                    }
+                }
+            }
+        }
+        var result = new ArrayList<>(heap);
+        result.sort(ORDER);
+        return result;
+    }
+
+    private void search(LogQuery logQuery, LogFilter filter, LogConsumer consumer) throws IOException {
+        var terms = SearchIndex.parseQuery(logQuery.search());
+        var afterId = logQuery.cursorId() == null ? 0 : logQuery.cursorId();
+        var remaining = logQuery.limit();
+        while (remaining > 0) {
+            var ids = searchIndex.search(terms, logQuery.fromMillis(), logQuery.toMillis(), afterId, SEARCH_CHUNK_SIZE);
+            if (ids.length == 0) {
+                return;
+            }
+            var snapshot = segments;
+            LogSegment segment = null;
+            List<SegmentBlock> blocks = null;
+            SegmentBlock block = null;
+            RecordCursor cursor = null;
+            for (var id : ids) {
+                if (segment == null || id > segment.lastId() || id < segment.baseId()) {
+                    segment = findSegment(snapshot, id);
+                    if (segment == null) {
+                        continue;
+                    }
+                    blocks = segment.blocks();
+                    block = null;
+                }
+                if (block == null || id > block.lastId()) {
+                    block = findBlock(blocks, id);
+                    if (block == null) {
+                        continue;
+                    }
+                    cursor = new RecordCursor(segment.read(block), segment.path());
+                }
+                if (!cursor.seek(id)) {
+                    continue;
+                }
+                var timestamp = cursor.timestamp();
+                if (logQuery.fromMillis() != null && timestamp < logQuery.fromMillis() || logQuery.toMillis() != null && timestamp >= logQuery.toMillis()) {
+                    continue;
+                }
+                var storedLog = cursor.decode();
+                if (filter.matches(storedLog)) {
+                    consumer.accept(storedLog);
+                    if (--remaining == 0) {
+                        return;
+                    }
+                }
+            }
+            if (ids.length < SEARCH_CHUNK_SIZE) {
+                return;
+            }
+            afterId = ids[ids.length - 1];
+        }
+    }
+
+    @Override
+    public void scan(long afterId, int limit, LogConsumer consumer) throws IOException {
+        var remaining = limit;
+        for (var segment : segments) {
+            if (segment.lastId() <= afterId) {
+                continue;
+            }
+            for (var block : segment.blocks()) {
+                if (block.lastId() <= afterId) {
+                    continue;
+                }
+                var cursor = new RecordCursor(segment.read(block), segment.path());
+                while (cursor.next()) {
+                    if (cursor.id() <= afterId) {
+                        continue;
+                    }
+                    consumer.accept(cursor.decode());
+                    if (--remaining == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private LogSegment findSegment(List<LogSegment> snapshot, long id) {
+        var low = 0;
+        var high = snapshot.size() - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var segment = snapshot.get(middle);
+            if (id < segment.baseId()) {
+                high = middle - 1;
+            } else if (id > segment.lastId()) {
+                low = middle + 1;
+            } else {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    private SegmentBlock findBlock(List<SegmentBlock> blocks, long id) {
+        var low = 0;
+        var high = blocks.size() - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var block = blocks.get(middle);
+            if (id < block.firstId()) {
+                high = middle - 1;
+            } else if (id > block.lastId()) {
+                low = middle + 1;
+            } else {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isSearchEnabled() {
+        return searchIndex != null;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        force();
+    }
+
+    private static class LogFilter {
+
+        private final Set<String> contexts;
+        private final String source;
+        private final Set<Level> levels;
+        private final List<String> tags;
+        private final List<MetadataPredicate> metadata;
+        private final Map<String, MetadataType> metadataFields = new HashMap<>();
+        private final MetadataExtractor metadataExtractor;
+
+        private LogFilter(LogQuery logQuery, MetadataExtractor metadataExtractor) {
+            contexts = logQuery.contexts() == null ? null : new HashSet<>(logQuery.contexts());
+            source = logQuery.source();
+            levels = logQuery.levels() == null || logQuery.levels().isEmpty() ? null : EnumSet.copyOf(logQuery.levels());
+            tags = logQuery.tags();
+            metadata = logQuery.metadata();
+            this.metadataExtractor = metadataExtractor;
+            if (metadata != null) {
+                for (var predicate : metadata) {
+                    metadataFields.put(predicate.field(), predicate.type());
+                }
+            }
+        }
+
+        private boolean matches(StoredLog storedLog) {
+            if (contexts != null && !contexts.contains(storedLog.context())) {
+                return false;
+            }
+            if (source != null && !source.equals(storedLog.source())) {
+                return false;
+            }
+            if (levels != null && !levels.contains(storedLog.level())) {
+                return false;
+            }
+            if (tags != null) {
+                for (var tag : tags) {
+                    if (!Arrays.asList(storedLog.tags()).contains(tag)) {
+                        return false;
+                    }
+                }
+            }
+            if (metadata != null) {
+                var metadataValues = MetadataExtractor.extract(storedLog.metadata(), metadataFields);
+                var contextFields = metadataExtractor == null ? metadataFields : metadataExtractor.rules(storedLog.context());
+                for (var predicate : metadata) {
+                    if (!contextFields.containsKey(predicate.field()) || !predicate.matches(valueOf(metadataValues, predicate.field()))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static Object valueOf(List<MetadataValue> metadataValues, String field) {
+            for (var metadataValue : metadataValues) {
+                if (metadataValue.field().equals(field)) {
+                    return metadataValue.value();
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,171 @@
+package at.shorty.logflow.tail;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+@Slf4j
+public class TailBroadcaster {
+
+    private static final TailSubscriber[] NO_SUBSCRIBERS = new TailSubscriber[0];
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ObjectMapper objectMapper;
+    private final int mask;
+    private final AtomicReferenceArray<InPacketLog> entries;
+    private final AtomicLongArray sequences;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final List<TailSubscriber> subscribers = new ArrayList<>();
+    private volatile Map<String, TailSubscriber[]> subscribersByContext = Map.of();
+    private volatile TailSubscriber[] wildcardSubscribers = NO_SUBSCRIBERS;
+    private volatile boolean active;
+    private volatile boolean running = true;
+    private final Thread dispatcher;
+
+    public TailBroadcaster(ObjectMapper objectMapper, int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Tail buffer capacity must be a power of two");
+        }
+        this.objectMapper = objectMapper;
+        this.mask = capacity - 1;
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, -1);
+        }
+        this.dispatcher = new Thread(this::dispatch, "Logflow Tail Dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public void publish(InPacketLog inPacketLog) {
+        if (!active) {
+            return;
+        }
+        var sequence = cursor.getAndIncrement();
+        var index = (int) (sequence & mask);
+        entries.set(index, inPacketLog);
+        sequences.set(index, sequence);
+    }
+
+    public synchronized void subscribe(TailSubscriber subscriber) {
+        subscribers.add(subscriber);
+        rebuildIndex();
+    }
+
+    public synchronized void unsubscribe(TailSubscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            rebuildIndex();
+        }
+    }
+
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+    }
+
+    private void rebuildIndex() {
+        var byContext = new HashMap<String, List<TailSubscriber>>();
+        var wildcard = new ArrayList<TailSubscriber>();
+        for (var subscriber : subscribers) {
+            if (subscriber.getContexts() == null) {
+                wildcard.add(subscriber);
+                continue;
+            }
+            for (var context : subscriber.getContexts()) {
+                byContext.computeIfAbsent(context, c -> new ArrayList<>()).add(subscriber);
+            }
+        }
+        var index = new HashMap<String, TailSubscriber[]>();
+        for (var entry : byContext.entrySet()) {
+            index.put(entry.getKey(), entry.getValue().toArray(NO_SUBSCRIBERS));
+        }
+        subscribersByContext = index;
+        wildcardSubscribers = wildcard.toArray(NO_SUBSCRIBERS);
+        active = !subscribers.isEmpty();
+    }
+
+    private void dispatch() {
+        var next = 0L;
+        var parkNanos = 1_000L;
+        while (running) {
+            var index = (int) (next & mask);
+            var sequence = sequences.get(index);
+            if (sequence < next) {
+                if (cursor.get() <= next) {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+                } else {
+                    Thread.onSpinWait();
+                }
+                continue;
+            }
+            parkNanos = 1_000L;
+            if (sequence > next) {
+                var oldest = Math.max(cursor.get() - mask, next + 1);
+                overruns.addAndGet(oldest - next);
+                next = oldest;
+                continue;
+            }
+            var inPacketLog = entries.get(index);
+            if (sequences.get(index) != next) {
+                overruns.incrementAndGet();
+                next++;
+                continue;
+            }
+            next++;
+            try {
+                deliver(inPacketLog);
+            } catch (RuntimeException e) {
+                log.warn("Failed to deliver log to tail subscribers -> {}", e.getMessage());
+            }
+        }
+    }
+
+    private void deliver(InPacketLog inPacketLog) {
+        var message = deliver(inPacketLog, subscribersByContext.getOrDefault(inPacketLog.getContext(), NO_SUBSCRIBERS), null);
+        deliver(inPacketLog, wildcardSubscribers, message);
+    }
+
+    private String deliver(InPacketLog inPacketLog, TailSubscriber[] subscribers, String message) {
+        for (var subscriber : subscribers) {
+            var filter = subscriber.getFilter();
+            if (filter != null && !filter.matches(inPacketLog)) {
+                continue;
+            }
+            if (message == null) {
+                message = toJson(inPacketLog);
+            }
+            subscriber.offer(message);
+        }
+        return message;
+    }
+
+    private String toJson(InPacketLog inPacketLog) {
+        try {
+            return objectMapper.writeValueAsString(inPacketLog);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize log", e);
+        }
+    }
+
+}
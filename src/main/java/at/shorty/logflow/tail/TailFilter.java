@@ -0,0 +1,43 @@
+package at.shorty.logflow.tail;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TailFilter {
+
+    private List<String> contexts;
+    private String source;
+    private List<Level> levels;
+    private List<String> tags;
+
+    public boolean matches(InPacketLog inPacketLog) {
+        if (source != null && !source.equals(inPacketLog.getSource())) {
+            return false;
+        }
+        if (levels != null && !levels.contains(inPacketLog.getLevel())) {
+            return false;
+        }
+        if (tags != null) {
+            for (var tag : tags) {
+                if (!hasTag(inPacketLog.getTags(), tag)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean hasTag(String[] logTags, String tag) {
+        for (var logTag : logTags) {
+            if (logTag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
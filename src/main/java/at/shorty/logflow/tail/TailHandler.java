@@ -0,0 +1,91 @@
+package at.shorty.logflow.tail;
+
+import at.shorty.logflow.auth.AuthHandler;
+import at.shorty.logflow.auth.TokenData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.javalin.websocket.WsConfig;
+import io.javalin.websocket.WsContext;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+@RequiredArgsConstructor
+public class TailHandler {
+
+    private static final int SUBSCRIBER_QUEUE_CAPACITY = 4096;
+
+    private final AuthHandler authHandler;
+    private final TailBroadcaster tailBroadcaster;
+    private final ObjectMapper objectMapper;
+    private final Map<String, TokenData> tokens = new ConcurrentHashMap<>();
+    private final Map<String, TailSubscriber> subscribers = new ConcurrentHashMap<>();
+
+    public void wsTail(WsConfig ws) {
+        ws.onConnect(this::wsConnect);
+        ws.onMessage(ctx -> wsSubscribe(ctx, ctx.message()));
+        ws.onClose(ctx -> {
+            tokens.remove(ctx.getSessionId());
+            var subscriber = subscribers.remove(ctx.getSessionId());
+            if (subscriber != null) {
+                tailBroadcaster.unsubscribe(subscriber);
+                log.info("Tail subscription closed ({} logs dropped)", subscriber.getDropped());
+            }
+        });
+    }
+
+    private void wsConnect(WsContext ctx) {
+        var token = ctx.header("Authorization");
+        var tokenData = token == null ? null : authHandler.getTokenDataCache().get(token);
+        if (tokenData == null) {
+            log.warn("Failed to authenticate tail connection from {}", ctx.host());
+            ctx.closeSession(4001, "Unauthorized");
+            return;
+        }
+        tokens.put(ctx.getSessionId(), tokenData);
+    }
+
+    private void wsSubscribe(WsContext ctx, String message) {
+        var tokenData = tokens.get(ctx.getSessionId());
+        if (tokenData == null) {
+            return;
+        }
+        TailFilter filter;
+        try {
+            filter = objectMapper.readValue(message, TailFilter.class);
+        } catch (IOException e) {
+            reply(ctx, "{\"success\":false,\"message\":\"Invalid subscription\"}");
+            return;
+        }
+        List<String> contexts;
+        if (filter.getContexts() == null) {
+            contexts = tokenData.canReadAll() ? null : Arrays.asList(tokenData.readContexts());
+        } else {
+            for (var context : filter.getContexts()) {
+                if (!tokenData.isAllowedToRead(context)) {
+                    reply(ctx, "{\"success\":false,\"message\":\"No permissions - Context not allowed\"}");
+                    return;
+                }
+            }
+            contexts = filter.getContexts();
+        }
+        var subscriber = new TailSubscriber(ctx.session, SUBSCRIBER_QUEUE_CAPACITY, contexts, filter);
+        var previous = subscribers.put(ctx.getSessionId(), subscriber);
+        if (previous != null) {
+            tailBroadcaster.unsubscribe(previous);
+        }
+        reply(ctx, "{\"success\":true,\"message\":\"OK\"}");
+        tailBroadcaster.subscribe(subscriber);
+    }
+
+    private void reply(WsContext ctx, String message) {
+        ctx.session.getRemote().sendString(message + "\n", WriteCallback.NOOP);
+    }
+
+}
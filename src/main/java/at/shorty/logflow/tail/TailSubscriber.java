@@ -0,0 +1,91 @@
+package at.shorty.logflow.tail;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+public class TailSubscriber {
+
+    private static final int MAX_MESSAGES_PER_SEND = 256;
+
+    private final Session session;
+    private final BlockingQueue<String> queue;
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private long reportedDropped;
+    @Getter
+    private final List<String> contexts;
+    @Getter
+    @Setter
+    private TailFilter filter;
+
+    public TailSubscriber(Session session, int queueCapacity, List<String> contexts, TailFilter filter) {
+        this.session = session;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.contexts = contexts;
+        this.filter = filter;
+    }
+
+    public void offer(String message) {
+        if (!queue.offer(message)) {
+            dropped.incrementAndGet();
+            return;
+        }
+        trySend();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void trySend() {
+        if (!session.isOpen() || !sending.compareAndSet(false, true)) {
+            return;
+        }
+        var message = new StringBuilder();
+        var droppedNow = dropped.get();
+        if (droppedNow != reportedDropped) {
+            message.append("{\"dropped\":").append(droppedNow).append("}\n");
+            reportedDropped = droppedNow;
+        }
+        for (int i = 0; i < MAX_MESSAGES_PER_SEND; i++) {
+            var next = queue.poll();
+            if (next == null) {
+                break;
+            }
+            message.append(next).append('\n');
+        }
+        if (message.isEmpty()) {
+            sending.set(false);
+            if (!queue.isEmpty()) {
+                trySend();
+            }
+            return;
+        }
+        session.getRemote().sendString(message.toString(), new WriteCallback() {
+            @Override
+            public void writeFailed(Throwable throwable) {
+                log.warn("Failed to send tail message -> {}", throwable.getMessage());
+                sending.set(false);
+            }
+
+            @Override
+            public void writeSuccess() {
+                sending.set(false);
+                if (!queue.isEmpty()) {
+                    trySend();
+                }
+            }
+        });
+    }
+
+}
@@ -1,18 +1,67 @@
 package at.shorty.logflow.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public abstract class DataCache<R, V> {
 
-    private final Map<R, Pair<Long, V>> cache;
+    private final AsyncLoadingCache<R, Optional<V>> cache;
+
+    protected DataCache(long maximumSize, Duration refreshAfter, Duration expireAfter, Duration negativeExpireAfter, Executor executor) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfter(new Expiry<R, Optional<V>>() {
+                    @Override
+                    public long expireAfterCreate(@NotNull R key, @NotNull Optional<V> value, long currentTime) {
+                        return (value.isPresent() ? expireAfter : negativeExpireAfter).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(@NotNull R key, @NotNull Optional<V> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(@NotNull R key, @NotNull Optional<V> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .executor(executor)
+                .recordStats()
+                .buildAsync(reference -> Optional.ofNullable(getData(reference)));
+    }
+
+    public V get(R reference) {
+        try {
+            return cache.synchronous().get(reference).orElse(null);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    public CompletableFuture<V> getAsync(R reference) {
+        return cache.get(reference).handle((value, e) -> e == null ? value.orElse(null) : null);
+    }
+
+    public void invalidate(R reference) {
+        cache.synchronous().invalidate(reference);
+    }
 
-    protected DataCache() {
-        this.cache = new HashMap<>();
+    public CacheStats stats() {
+        return cache.synchronous().stats();
     }
 
-    public V get(R reference, int interval) {
-        return cache.compute(reference, (key, value) -> value == null ? new Pair<>(System.currentTimeMillis() + interval, getData(reference)) : value.key() - System.currentTimeMillis() > interval ? value : new Pair<>(System.currentTimeMillis() + interval, getData(reference))).value();
+    public long size() {
+        return cache.synchronous().estimatedSize();
     }
 
     public abstract V getData(R reference);
@@ -16,6 +16,8 @@ public class LogflowArgsParser {
         options.addOption("noSocketIngest", false, "Do not start socket server for ingest");
         options.addOption("webUseSSL", false, "Use SSL for web server");
         options.addOption("socketUseSSL", false, "Use SSL for socket server");
+        options.addOption("migrateToDictionary", false, "Copy existing logs into dictionary storage in the background");
+        options.addOption("relay", true, "Forward logs to the Logflow web server at this URL instead of storing them");
 
         try {
             return parser.parse(options, args);
@@ -0,0 +1,41 @@
+package at.shorty.logflow.util;
+
+public class StringInterner {
+
+    private final String[] table;
+    private final int mask;
+
+    public StringInterner(int capacity) {
+        var size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.table = new String[size];
+        this.mask = size - 1;
+    }
+
+    public String intern(char[] chars, int offset, int length) {
+        var hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        var index = (hash ^ (hash >>> 16)) & mask;
+        var cached = table[index];
+        if (cached != null && matches(cached, chars, offset, length)) {
+            return cached;
+        }
+        var value = new String(chars, offset, length);
+        table[index] = value;
+        return value;
+    }
+
+    private boolean matches(String cached, char[] chars, int offset, int length) {
+        if (cached.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,24 @@
+package at.shorty.logflow;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+
+import java.util.Date;
+
+public final class TestLogs {
+
+    private TestLogs() {
+    }
+
+    public static InPacketLog log(String context, String content) {
+        var inPacketLog = new InPacketLog();
+        inPacketLog.setTimestamp(new Date(1_700_000_000_000L));
+        inPacketLog.setLevel(Level.INFO);
+        inPacketLog.setSource("test");
+        inPacketLog.setContext(context);
+        inPacketLog.setTags(new String[0]);
+        inPacketLog.setContent(content);
+        return inPacketLog;
+    }
+
+}
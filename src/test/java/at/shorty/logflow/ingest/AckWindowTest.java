@@ -0,0 +1,77 @@
+package at.shorty.logflow.ingest;
+
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AckWindowTest {
+
+    @Test
+    void assignsSequencesAfterClientSuppliedOnes() {
+        var ackWindow = new AckWindow();
+
+        assertEquals(1, ackWindow.assign(null));
+        assertEquals(2, ackWindow.assign(null));
+        assertEquals(10, ackWindow.assign(10L));
+        assertEquals(11, ackWindow.assign(null));
+    }
+
+    @Test
+    void acksCumulativelyWithOneFlushPerWindow() {
+        var ackWindow = new AckWindow();
+
+        assertTrue(ackWindow.complete(1, response(true)));
+        assertFalse(ackWindow.complete(2, response(true)));
+        assertFalse(ackWindow.complete(3, response(true)));
+        var outPacketAck = ackWindow.drain();
+
+        assertEquals(3, outPacketAck.getAck());
+        assertTrue(outPacketAck.getNacks().isEmpty());
+        assertTrue(ackWindow.complete(4, response(true)));
+        assertEquals(4, ackWindow.drain().getAck());
+    }
+
+    @Test
+    void coalescesNacksIntoTheNextAck() {
+        var ackWindow = new AckWindow();
+        var rateLimited = response(false);
+        rateLimited.setMessage("Rate limited");
+        rateLimited.setRetryAfter(250L);
+
+        ackWindow.complete(1, response(true));
+        ackWindow.complete(2, rateLimited);
+        ackWindow.complete(3, response(true));
+        ackWindow.complete(4, response(false));
+        var outPacketAck = ackWindow.drain();
+
+        assertEquals(4, outPacketAck.getAck());
+        assertEquals(2, outPacketAck.getNacks().size());
+        var nack = outPacketAck.getNacks().get(0);
+        assertEquals(2L, nack.getSequence());
+        assertEquals("Rate limited", nack.getMessage());
+        assertEquals(250L, nack.getRetryAfter());
+        assertFalse(nack.isSuccess());
+        assertEquals(4L, outPacketAck.getNacks().get(1).getSequence());
+        assertTrue(ackWindow.drain().getNacks().isEmpty());
+    }
+
+    @Test
+    void keepsTheAckWhenDrainedWithoutNewCompletions() {
+        var ackWindow = new AckWindow();
+
+        ackWindow.complete(5, response(true));
+        ackWindow.drain();
+
+        assertEquals(5, ackWindow.drain().getAck());
+    }
+
+    private static OutPacketLogResponse response(boolean success) {
+        var outPacketLogResponse = new OutPacketLogResponse();
+        outPacketLogResponse.setSuccess(success);
+        return outPacketLogResponse;
+    }
+
+}
@@ -0,0 +1,197 @@
+package at.shorty.logflow.ingest.data;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import at.shorty.logflow.query.LogConsumer;
+import at.shorty.logflow.query.LogQuery;
+import at.shorty.logflow.store.LogStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static at.shorty.logflow.TestLogs.log;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogBatchWriterTest {
+
+    private static final ContextGroups NO_GROUPS = new ContextGroups(null, Map.of(), Map.of(), Map.of());
+
+    @Test
+    void writesLogsInBatchesOfAtMostBatchSize() {
+        var logStore = new RecordingLogStore();
+        var writer = new LogBatchWriter(List.of(logStore), null, null, new LogflowMetrics(), NO_GROUPS, 100, 50, 10_000);
+        writer.start(2);
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 1000; i++) {
+            futures.add(writer.submit(log("app", "log " + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).orTimeout(10, TimeUnit.SECONDS).join();
+        writer.close();
+
+        assertEquals(1000, logStore.batches.stream().mapToInt(List::size).sum());
+        assertTrue(logStore.batches.stream().allMatch(batch -> batch.size() <= 100));
+        // Writers linger for full batches, so the logs are committed in a few large batches instead of one by one
+        assertTrue(logStore.batches.size() <= 20, "Expected grouped commits, got " + logStore.batches.size() + " batches");
+    }
+
+    @Test
+    void lingersForMoreLogsBeforeWritingASmallBatch() throws InterruptedException {
+        var logStore = new RecordingLogStore();
+        var writer = new LogBatchWriter(List.of(logStore), null, null, new LogflowMetrics(), NO_GROUPS, 100, 200, 10_000);
+        writer.start(1);
+        var first = writer.submit(log("app", "first"));
+        Thread.sleep(20);
+        var second = writer.submit(log("app", "second"));
+        CompletableFuture.allOf(first, second).orTimeout(10, TimeUnit.SECONDS).join();
+        writer.close();
+
+        assertEquals(List.of(2), logStore.batches.stream().map(List::size).toList());
+    }
+
+    @Test
+    void failsEveryLogOfAFailedBatch() {
+        var logStore = new RecordingLogStore();
+        logStore.failure = new IOException("Database is down");
+        var writer = new LogBatchWriter(List.of(logStore), null, null, new LogflowMetrics(), NO_GROUPS, 10, 1, 1000);
+        writer.start(1);
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(writer.submit(log("app", "log " + i)));
+        }
+        for (var future : futures) {
+            var exception = assertThrows(CompletionException.class, () -> future.orTimeout(10, TimeUnit.SECONDS).join());
+            assertInstanceOf(IOException.class, exception.getCause());
+        }
+        writer.close();
+    }
+
+    @Test
+    void keepsWritingAfterAnUncheckedStoreFailure() {
+        var logStore = new RecordingLogStore();
+        logStore.uncheckedFailure = new IllegalStateException("Compressor failed");
+        var writer = new LogBatchWriter(List.of(logStore), null, null, new LogflowMetrics(), NO_GROUPS, 10, 1, 1000);
+        writer.start(1);
+
+        var failed = writer.submit(log("app", "first"));
+        var exception = assertThrows(CompletionException.class, () -> failed.orTimeout(10, TimeUnit.SECONDS).join());
+        var written = writer.submit(log("app", "second"));
+        written.orTimeout(10, TimeUnit.SECONDS).join();
+        writer.close();
+
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertEquals(1, logStore.batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void rejectsLogsWhenTheQueueOfTheGroupIsFull() throws InterruptedException {
+        var groups = new ContextGroups("noisy=spam", Map.of(), Map.of("noisy", 2), Map.of());
+        var noisyStore = new RecordingLogStore();
+        noisyStore.blocked = new CountDownLatch(1);
+        var writer = new LogBatchWriter(List.of(new RecordingLogStore(), noisyStore), null, null, new LogflowMetrics(), groups, 10, 1, 100);
+        writer.start(1);
+        var writing = writer.submit(log("spam", "1"));
+        await(() -> writer.getQueueSize(1) == 0);
+        writer.submit(log("spam", "2"));
+        writer.submit(log("spam", "3"));
+        var rejected = writer.submit(log("spam", "4"));
+        var accepted = writer.submit(log("app", "5"));
+
+        var exception = assertThrows(CompletionException.class, rejected::join);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(1, writer.getRejectedLogs(1));
+        assertEquals(0, writer.getRejectedLogs(0));
+        noisyStore.blocked.countDown();
+        CompletableFuture.allOf(writing, accepted).orTimeout(10, TimeUnit.SECONDS).join();
+        writer.close();
+    }
+
+    @Test
+    void closeWritesLogsThatAreStillQueued() {
+        var logStore = new RecordingLogStore();
+        var writer = new LogBatchWriter(List.of(logStore), null, null, new LogflowMetrics(), NO_GROUPS, 10, 1, 1000);
+        writer.start(1);
+        var futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 95; i++) {
+            futures.add(writer.submit(log("app", "log " + i)));
+        }
+        writer.close();
+
+        assertTrue(futures.stream().allMatch(future -> future.isDone() && !future.isCompletedExceptionally()));
+        assertEquals(95, logStore.batches.stream().mapToInt(List::size).sum());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private static class RecordingLogStore implements LogStore {
+
+        private final List<List<InPacketLog>> batches = new CopyOnWriteArrayList<>();
+        private volatile IOException failure;
+        private volatile RuntimeException uncheckedFailure;
+        private volatile CountDownLatch blocked;
+        private long nextId = 1;
+
+        @Override
+        public synchronized long[] append(List<InPacketLog> inPacketLogs) throws IOException {
+            if (failure != null) {
+                throw failure;
+            }
+            if (uncheckedFailure != null) {
+                var exception = uncheckedFailure;
+                uncheckedFailure = null;
+                throw exception;
+            }
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            batches.add(List.copyOf(inPacketLogs));
+            var ids = new long[inPacketLogs.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = nextId++;
+            }
+            return ids;
+        }
+
+        @Override
+        public void read(LogQuery logQuery, LogConsumer consumer) {
+        }
+
+        @Override
+        public void scan(long afterId, int limit, LogConsumer consumer) {
+        }
+
+        @Override
+        public boolean isSearchEnabled() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package at.shorty.logflow.ingest.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetadataExtractorTest {
+
+    @Test
+    void extractsConfiguredTopLevelFields() {
+        var metadataExtractor = new MetadataExtractor("user, status:long, duration:double", null);
+
+        var values = metadataExtractor.extract("app", """
+                {"user":"alice","nested":{"status":500},"status":200,"duration":1.5,"ignored":true}""");
+
+        assertEquals(List.of(
+                new MetadataValue("user", MetadataType.STRING, "alice"),
+                new MetadataValue("status", MetadataType.LONG, 200L),
+                new MetadataValue("duration", MetadataType.DOUBLE, 1.5)), values);
+    }
+
+    @Test
+    void addsContextFieldsToTheGlobalOnes() {
+        var metadataExtractor = new MetadataExtractor("user", "billing=invoice:long|amount:double,auth=method");
+
+        assertEquals(Map.of("user", MetadataType.STRING), metadataExtractor.rules("app"));
+        assertEquals(Map.of("user", MetadataType.STRING, "invoice", MetadataType.LONG, "amount", MetadataType.DOUBLE), metadataExtractor.rules("billing"));
+        assertEquals(List.of(new MetadataValue("invoice", MetadataType.LONG, 7L)), metadataExtractor.extract("billing", "{\"invoice\":7}"));
+        assertTrue(metadataExtractor.extract("app", "{\"invoice\":7}").isEmpty());
+    }
+
+    @Test
+    void skipsValuesThatDoNotFitTheirType() {
+        var metadataExtractor = new MetadataExtractor("status:long,user", null);
+
+        var values = metadataExtractor.extract("app", "{\"status\":\"oops\",\"user\":null}");
+        var converted = metadataExtractor.extract("app", "{\"status\":\" 404 \",\"user\":42}");
+
+        assertTrue(values.isEmpty());
+        assertEquals(List.of(new MetadataValue("status", MetadataType.LONG, 404L), new MetadataValue("user", MetadataType.STRING, "42")), converted);
+    }
+
+    @Test
+    void keepsTheFirstValueOfDuplicateKeys() {
+        var metadataExtractor = new MetadataExtractor("user", null);
+
+        assertEquals(List.of(new MetadataValue("user", MetadataType.STRING, "alice")), metadataExtractor.extract("app", "{\"user\":\"alice\",\"user\":\"bob\"}"));
+    }
+
+    @Test
+    void ignoresMetadataThatIsNotAJsonObject() {
+        var metadataExtractor = new MetadataExtractor("user", null);
+
+        assertTrue(metadataExtractor.extract("app", (String) null).isEmpty());
+        assertTrue(metadataExtractor.extract("app", "user=alice").isEmpty());
+        assertTrue(metadataExtractor.extract("app", "[{\"user\":\"alice\"}]").isEmpty());
+        assertEquals(List.of(new MetadataValue("user", MetadataType.STRING, "alice")), metadataExtractor.extract("app", "  {\"user\":\"alice\",\"broken\":"));
+    }
+
+    @Test
+    void rejectsInvalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> new MetadataExtractor("user-name", null));
+        assertThrows(IllegalArgumentException.class, () -> new MetadataExtractor("user:uuid", null));
+        assertThrows(IllegalArgumentException.class, () -> new MetadataExtractor("status:long", "app=status:string"));
+        assertThrows(IllegalArgumentException.class, () -> new MetadataExtractor(null, "status:long"));
+        assertFalse(new MetadataExtractor(null, null).isEnabled());
+    }
+
+}
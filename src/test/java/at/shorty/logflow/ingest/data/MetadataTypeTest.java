@@ -0,0 +1,27 @@
+package at.shorty.logflow.ingest.data;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MetadataTypeTest {
+
+    @Test
+    void convertsStringsToTheirType() {
+        assertEquals("alice", MetadataType.STRING.convert("alice"));
+        assertEquals(42L, MetadataType.LONG.convert(" 42 "));
+        assertEquals(1.5, MetadataType.DOUBLE.convert("1.5"));
+    }
+
+    @Test
+    void rejectsValuesThatCannotBeStored() {
+        assertNull(MetadataType.STRING.convert("x".repeat(MetadataType.MAX_STRING_LENGTH + 1)));
+        assertNull(MetadataType.LONG.convert("1.5"));
+        assertNull(MetadataType.LONG.convert("99999999999999999999"));
+        assertNull(MetadataType.DOUBLE.convert("NaN"));
+        assertNull(MetadataType.DOUBLE.convert("Infinity"));
+        assertNull(MetadataType.DOUBLE.convert("abc"));
+    }
+
+}
@@ -0,0 +1,115 @@
+package at.shorty.logflow.ingest.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WeightedFairQueueTest {
+
+    @Test
+    void splitsBatchesByWeightUnderLoad() throws InterruptedException {
+        var queue = new WeightedFairQueue<Integer>(new int[]{4, 1}, new int[]{1000, 1000}, 4);
+        fill(queue, 0, 1000);
+        fill(queue, 1, 1000);
+
+        var taken = new int[2];
+        for (int i = 0; i < 20; i++) {
+            var batch = new ArrayList<Integer>();
+            var lane = queue.poll(batch, 0, 0);
+            taken[lane] += batch.size();
+        }
+
+        assertEquals(40, taken[0]);
+        assertEquals(10, taken[1]);
+    }
+
+    @Test
+    void carriesFractionalCreditAcrossVisits() throws InterruptedException {
+        // Lane 1 earns 0.4 elements per visit and is served once every few rounds
+        var queue = new WeightedFairQueue<Integer>(new int[]{10, 1}, new int[]{1000, 1000}, 4);
+        fill(queue, 0, 1000);
+        fill(queue, 1, 1000);
+
+        var taken = new int[2];
+        while (taken[0] < 400) {
+            var batch = new ArrayList<Integer>();
+            taken[queue.poll(batch, 0, 0)] += batch.size();
+        }
+
+        assertTrue(taken[1] >= 39 && taken[1] <= 41, "lane 1 took " + taken[1]);
+    }
+
+    @Test
+    void givesAnIdleLaneNoBankedCredit() throws InterruptedException {
+        var queue = new WeightedFairQueue<Integer>(new int[]{1, 1}, new int[]{100, 100}, 4);
+        fill(queue, 0, 20);
+
+        var batch = new ArrayList<Integer>();
+        while (queue.size(0) > 8) {
+            batch.clear();
+            assertEquals(0, queue.poll(batch, 0, 0));
+            assertEquals(4, batch.size());
+        }
+        fill(queue, 1, 20);
+
+        var lanes = new ArrayList<Integer>();
+        for (int i = 0; i < 4; i++) {
+            batch.clear();
+            lanes.add(queue.poll(batch, 0, 0));
+            assertEquals(4, batch.size());
+        }
+        assertEquals(2, lanes.stream().filter(lane -> lane == 1).count());
+    }
+
+    @Test
+    void keepsBatchesWithinOneLaneInOrder() throws InterruptedException {
+        var queue = new WeightedFairQueue<Integer>(new int[]{1, 1}, new int[]{100, 100}, 8);
+        fill(queue, 0, 3);
+        fill(queue, 1, 3);
+
+        var batch = new ArrayList<Integer>();
+        var lane = queue.poll(batch, 0, 0);
+
+        assertEquals(List.of(lane * 1000, lane * 1000 + 1, lane * 1000 + 2), batch);
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void rejectsOffersToAFullLane() {
+        var queue = new WeightedFairQueue<Integer>(new int[]{1, 1}, new int[]{2, 2}, 4);
+
+        assertTrue(queue.offer(0, 1));
+        assertTrue(queue.offer(0, 2));
+        assertFalse(queue.offer(0, 3));
+        assertTrue(queue.offer(1, 4));
+        assertEquals(3, queue.size());
+    }
+
+    @Test
+    void returnsNoLaneWhenNothingArrives() throws InterruptedException {
+        var queue = new WeightedFairQueue<Integer>(new int[]{1}, new int[]{10}, 4);
+        var batch = new ArrayList<Integer>();
+
+        assertEquals(-1, queue.poll(batch, 1_000_000, 0));
+        assertTrue(batch.isEmpty());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void rejectsNonPositiveWeights() {
+        assertThrows(IllegalArgumentException.class, () -> new WeightedFairQueue<Integer>(new int[]{1, 0}, new int[]{1, 1}, 4));
+    }
+
+    private static void fill(WeightedFairQueue<Integer> queue, int lane, int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(queue.offer(lane, lane * 1000 + i));
+        }
+    }
+
+}
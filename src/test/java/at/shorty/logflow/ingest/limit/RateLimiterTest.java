@@ -0,0 +1,78 @@
+package at.shorty.logflow.ingest.limit;
+
+import at.shorty.logflow.log.Level;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final UUID TOKEN = UUID.fromString("11111111-1111-1111-1111-111111111111");
+
+    private RateLimiter rateLimiter;
+
+    @AfterEach
+    void close() {
+        rateLimiter.close();
+    }
+
+    @Test
+    void throttlesTokensAndIpsSeparately() {
+        // At 0.1 logs per second the burst is a single log and the next one waits ten seconds
+        rateLimiter = new RateLimiter(0.1, 0, 100);
+
+        assertSame(Admission.ADMITTED, rateLimiter.admit(TOKEN, "10.0.0.1", Level.INFO));
+        var throttled = rateLimiter.admit(TOKEN, "10.0.0.1", Level.INFO);
+        var otherToken = rateLimiter.admit(UUID.randomUUID(), "10.0.0.1", Level.INFO);
+
+        assertFalse(throttled.admitted());
+        assertEquals("Rate limit exceeded for token", throttled.message());
+        assertTrue(throttled.retryAfterMillis() > 9_000 && throttled.retryAfterMillis() <= 10_000);
+        assertTrue(otherToken.admitted());
+        assertEquals(1, rateLimiter.getThrottledLogs());
+        assertEquals(2, rateLimiter.getInFlight());
+    }
+
+    @Test
+    void throttlesBySourceIp() {
+        rateLimiter = new RateLimiter(0, 0.1, 100);
+
+        assertTrue(rateLimiter.admit(TOKEN, "10.0.0.1", Level.INFO).admitted());
+        var throttled = rateLimiter.admit(UUID.randomUUID(), "10.0.0.1", Level.INFO);
+
+        assertFalse(throttled.admitted());
+        assertEquals("Rate limit exceeded for 10.0.0.1", throttled.message());
+        assertTrue(rateLimiter.admit(TOKEN, "10.0.0.2", Level.INFO).admitted());
+        assertTrue(rateLimiter.admit(TOKEN, null, Level.INFO).admitted());
+    }
+
+    @Test
+    void shedsLowerLevelsFirstUnderLoad() {
+        rateLimiter = new RateLimiter(0, 0, 20);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(rateLimiter.admit(TOKEN, null, Level.DEBUG).admitted());
+        }
+        var debug = rateLimiter.admit(TOKEN, null, Level.DEBUG);
+
+        assertFalse(debug.admitted());
+        assertEquals(RateLimiter.SHED_RETRY_MILLIS, debug.retryAfterMillis());
+        assertTrue(rateLimiter.admit(TOKEN, null, Level.INFO).admitted());
+        for (int i = 0; i < 9; i++) {
+            assertTrue(rateLimiter.admit(TOKEN, null, Level.ERROR).admitted());
+        }
+        assertFalse(rateLimiter.admit(TOKEN, null, Level.ERROR).admitted());
+        assertEquals(2, rateLimiter.getShedLogs());
+
+        rateLimiter.release();
+        assertTrue(rateLimiter.admit(TOKEN, null, Level.ERROR).admitted());
+        assertEquals(20, rateLimiter.getInFlight());
+    }
+
+}
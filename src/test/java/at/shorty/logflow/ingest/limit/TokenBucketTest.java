@@ -0,0 +1,65 @@
+package at.shorty.logflow.ingest.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void admitsABurstThenPacesAtTheRate() {
+        var tokenBucket = new TokenBucket(10, 5);
+        var now = 100 * SECOND;
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, tokenBucket.tryAcquire(now));
+        }
+
+        assertEquals(SECOND / 10, tokenBucket.tryAcquire(now));
+        assertEquals(0, tokenBucket.tryAcquire(now + SECOND / 10));
+        assertEquals(SECOND / 10, tokenBucket.tryAcquire(now + SECOND / 10));
+    }
+
+    @Test
+    void doesNotChargeRejectedRequests() {
+        var tokenBucket = new TokenBucket(1, 1);
+        var now = 100 * SECOND;
+
+        assertEquals(0, tokenBucket.tryAcquire(now));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(SECOND, tokenBucket.tryAcquire(now));
+        }
+
+        assertEquals(0, tokenBucket.tryAcquire(now + SECOND));
+    }
+
+    @Test
+    void refillsNoMoreThanTheBurstWhileIdle() {
+        var tokenBucket = new TokenBucket(10, 3);
+        var now = 100 * SECOND;
+
+        tokenBucket.tryAcquire(now);
+        var later = now + 60 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, tokenBucket.tryAcquire(later));
+        }
+        assertTrue(tokenBucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void becomesIdleOnceItsArrivalTimeHasPassed() {
+        var tokenBucket = new TokenBucket(10, 3);
+        var now = 100 * SECOND;
+
+        tokenBucket.tryAcquire(now);
+
+        assertFalse(tokenBucket.isIdle(now));
+        assertTrue(tokenBucket.isIdle(now + SECOND));
+    }
+
+}
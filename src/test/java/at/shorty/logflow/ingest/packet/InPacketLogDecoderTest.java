@@ -0,0 +1,102 @@
+package at.shorty.logflow.ingest.packet;
+
+import at.shorty.logflow.log.Level;
+import com.fasterxml.jackson.core.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InPacketLogDecoderTest {
+
+    private final PacketHandler packetHandler = new PacketHandler();
+
+    @Test
+    void decodesAllFields() throws IOException {
+        var inPacketLog = packetHandler.handleLogInput("""
+                {"timestamp":1691572414000,"level":"WARN","source":"node-1","sourceIp":"10.0.0.1","context":"cluster-5",
+                 "tags":["node","status"],"metadata":"healthcheck:ok","content":"aGk=","sequence":42}""");
+
+        assertEquals(new Date(1691572414000L), inPacketLog.getTimestamp());
+        assertEquals(Level.WARN, inPacketLog.getLevel());
+        assertEquals("node-1", inPacketLog.getSource());
+        assertEquals("10.0.0.1", inPacketLog.getSourceIp());
+        assertEquals("cluster-5", inPacketLog.getContext());
+        assertArrayEquals(new String[]{"node", "status"}, inPacketLog.getTags());
+        assertEquals("healthcheck:ok", inPacketLog.getMetadata());
+        assertEquals("aGk=", inPacketLog.getContent());
+        assertEquals(42L, inPacketLog.getSequence());
+    }
+
+    @Test
+    void acceptsIsoTimestampsAndSkipsNulls() throws IOException {
+        var inPacketLog = packetHandler.handleLogInput("{\"timestamp\":\"2023-08-09T09:13:34.000Z\",\"level\":\"INFO\",\"metadata\":null,\"tags\":[]}");
+
+        assertEquals(new Date(1691572414000L), inPacketLog.getTimestamp());
+        assertNull(inPacketLog.getMetadata());
+        assertEquals(0, inPacketLog.getTags().length);
+    }
+
+    @Test
+    void decodesFromBytesWithOffset() throws IOException {
+        var bytes = "xx{\"level\":\"ERROR\",\"source\":\"a\"}yy".getBytes(StandardCharsets.UTF_8);
+
+        var inPacketLog = packetHandler.handleLogInput(bytes, 2, bytes.length - 4);
+
+        assertEquals(Level.ERROR, inPacketLog.getLevel());
+        assertEquals("a", inPacketLog.getSource());
+    }
+
+    @Test
+    void internsRepeatedSourcesContextsAndTags() throws IOException {
+        var first = packetHandler.handleLogInput("{\"source\":\"node-1\",\"context\":\"app\",\"tags\":[\"db\"]}");
+        var second = packetHandler.handleLogInput("{\"source\":\"node-1\",\"context\":\"app\",\"tags\":[\"db\"]}");
+
+        assertSame(first.getSource(), second.getSource());
+        assertSame(first.getContext(), second.getContext());
+        assertSame(first.getTags()[0], second.getTags()[0]);
+    }
+
+    @Test
+    void rejectsInvalidLogs() {
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"unknown\":1}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"level\":\"LOUD\"}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"tags\":\"node\"}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"source\":1}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"timestamp\":\"yesterday\"}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("[1]"));
+    }
+
+    @Test
+    void rejectsNestedValuesInStringFields() {
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"metadata\":{\"context\":\"x\"},\"level\":\"INFO\"}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"content\":[\"aGk=\"]}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"sourceIp\":{}}"));
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogInput("{\"metadata\":1}"));
+    }
+
+    @Test
+    void decodesArraysAndNewlineDelimitedStreams() throws IOException {
+        var array = packetHandler.handleLogStream(stream("[{\"source\":\"a\"},{\"source\":\"b\"}]"), 10);
+        var lines = packetHandler.handleLogStream(stream("{\"source\":\"a\"}\n{\"source\":\"b\"}\n"), 10);
+
+        assertEquals(2, array.size());
+        assertEquals("b", array.get(1).getSource());
+        assertEquals(2, lines.size());
+        assertEquals("b", lines.get(1).getSource());
+        assertThrows(JsonParseException.class, () -> packetHandler.handleLogStream(stream("[{},{},{}]"), 2));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,146 @@
+package at.shorty.logflow.ingest.packet.binary;
+
+import at.shorty.logflow.TestLogs;
+import at.shorty.logflow.ingest.packet.impl.OutPacketAck;
+import at.shorty.logflow.ingest.packet.impl.OutPacketLogResponse;
+import at.shorty.logflow.log.Level;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BinaryPacketCodecTest {
+
+    @Test
+    void roundTripsLogs() {
+        var inPacketLog = TestLogs.log("app", "aGVsbG8gd8O2cmxk");
+        inPacketLog.setLevel(Level.ERROR);
+        inPacketLog.setTags(new String[]{"db", "l\u00e4uft"});
+        inPacketLog.setMetadata("user:42");
+        inPacketLog.setSequence(300L);
+
+        var decoded = BinaryPacketCodec.decodeLog(payload(BinaryPacketCodec.encodeLog(inPacketLog)));
+
+        assertEquals(inPacketLog.getTimestamp(), decoded.getTimestamp());
+        assertEquals(Level.ERROR, decoded.getLevel());
+        assertEquals("test", decoded.getSource());
+        assertEquals("app", decoded.getContext());
+        assertArrayEquals(inPacketLog.getTags(), decoded.getTags());
+        assertEquals("user:42", decoded.getMetadata());
+        assertEquals(inPacketLog.getContent(), decoded.getContent());
+        assertEquals(300L, decoded.getSequence());
+    }
+
+    @Test
+    void keepsNullFieldsAndOmittedSequences() {
+        var inPacketLog = TestLogs.log("app", null);
+
+        var decoded = BinaryPacketCodec.decodeLog(payload(BinaryPacketCodec.encodeLog(inPacketLog)));
+
+        assertNull(decoded.getContent());
+        assertNull(decoded.getMetadata());
+        assertNull(decoded.getSequence());
+    }
+
+    @Test
+    void roundTripsResponsesAndAcks() {
+        var response = new OutPacketLogResponse();
+        response.setMessage("Rate limited");
+        response.setRetryAfter(0L);
+        var nack = new OutPacketLogResponse();
+        nack.setSequence(7L);
+        nack.setMessage("Invalid log");
+        var ack = new OutPacketAck();
+        ack.setAck(1L << 40);
+        ack.setNacks(List.of(nack));
+
+        var decodedResponse = BinaryPacketCodec.decodeResponse(payload(BinaryPacketCodec.encodeResponse(response)));
+        var decodedAck = BinaryPacketCodec.decodeAck(payload(BinaryPacketCodec.encodeAck(ack)));
+
+        assertEquals(response, decodedResponse);
+        assertEquals(1L << 40, decodedAck.getAck());
+        assertEquals(List.of(nack), decodedAck.getNacks());
+    }
+
+    @Test
+    void encodesFrameLengthsAsVarints() {
+        var inPacketLog = TestLogs.log("app", "x".repeat(200));
+
+        var frame = BinaryPacketCodec.encodeLog(inPacketLog);
+
+        // A payload of 128 bytes or more needs a second length byte
+        assertEquals(0x80, frame[0] & 0x80);
+        assertEquals(0, frame[1] & 0x80);
+        assertEquals(frame.length - 2, BinaryPacketCodec.readFrameLength(ByteBuffer.wrap(frame)));
+    }
+
+    @Test
+    void waitsForIncompleteFrameLengths() {
+        var buffer = ByteBuffer.wrap(new byte[]{(byte) 0x80, (byte) 0x80});
+
+        assertEquals(-1, BinaryPacketCodec.readFrameLength(buffer));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void rejectsOversizedAndMalformedFrameLengths() {
+        var tooLong = ByteBuffer.wrap(new byte[]{(byte) 0x81, (byte) 0x80, (byte) 0x40});
+        var malformed = ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01});
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryPacketCodec.readFrameLength(tooLong));
+        assertThrows(IllegalArgumentException.class, () -> BinaryPacketCodec.readFrameLength(malformed));
+    }
+
+    @Test
+    void readsConsecutiveFramesFromStreams() throws IOException {
+        var first = BinaryPacketCodec.encodeLog(TestLogs.log("app", "first"));
+        var second = BinaryPacketCodec.encodeLog(TestLogs.log("app", "second"));
+        var bytes = new byte[first.length + second.length];
+        System.arraycopy(first, 0, bytes, 0, first.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        var inputStream = new ByteArrayInputStream(bytes);
+
+        assertEquals("first", BinaryPacketCodec.decodeLog(ByteBuffer.wrap(BinaryPacketCodec.readFrame(inputStream))).getContent());
+        assertEquals("second", BinaryPacketCodec.decodeLog(ByteBuffer.wrap(BinaryPacketCodec.readFrame(inputStream))).getContent());
+        assertNull(BinaryPacketCodec.readFrame(inputStream));
+        assertThrows(EOFException.class, () -> BinaryPacketCodec.readFrame(new ByteArrayInputStream(Arrays.copyOf(first, first.length - 1))));
+    }
+
+    @Test
+    void rejectsTruncatedPayloads() {
+        var frame = BinaryPacketCodec.encodeLog(TestLogs.log("app", "content"));
+        var truncated = ByteBuffer.wrap(frame, 1, frame.length - 3).slice();
+
+        assertThrows(RuntimeException.class, () -> BinaryPacketCodec.decodeLog(truncated));
+    }
+
+    @Test
+    void rejectsNegativeStringLengths() {
+        var payload = payload(BinaryPacketCodec.encodeLog(TestLogs.log("app", null)));
+        var bytes = new byte[payload.remaining() + 9];
+        // Replace the empty metadata with a length varint that decodes to a negative number
+        payload.get(bytes, 0, payload.remaining() - 2);
+        Arrays.fill(bytes, bytes.length - 11, bytes.length - 2, (byte) 0xFF);
+        bytes[bytes.length - 2] = 0x01;
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryPacketCodec.decodeLog(ByteBuffer.wrap(bytes)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryPacketCodec.decodeLog(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip()));
+    }
+
+    private static ByteBuffer payload(byte[] frame) {
+        var buffer = ByteBuffer.wrap(frame);
+        var length = BinaryPacketCodec.readFrameLength(buffer);
+        assertEquals(buffer.remaining(), length);
+        return buffer.slice();
+    }
+
+}
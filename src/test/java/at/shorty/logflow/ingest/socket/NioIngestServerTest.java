@@ -0,0 +1,140 @@
+package at.shorty.logflow.ingest.socket;
+
+import at.shorty.logflow.auth.AuthHandler;
+import at.shorty.logflow.ingest.IngestHandler;
+import at.shorty.logflow.ingest.data.StorageMode;
+import at.shorty.logflow.ingest.packet.PacketHandler;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.ingest.limit.RateLimiter;
+import at.shorty.logflow.metrics.LogflowMetrics;
+import at.shorty.logflow.tail.TailBroadcaster;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NioIngestServerTest {
+
+    private static final String TOKEN = "11111111-1111-1111-1111-111111111111";
+    private static final PacketHandler PACKET_HANDLER = new PacketHandler();
+    private static final List<InPacketLog> RECEIVED = new CopyOnWriteArrayList<>();
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws IOException, InterruptedException {
+        var ingestHandler = new IngestHandler(PACKET_HANDLER, new AuthHandler(TOKEN, null, null), inPacketLog -> {
+            RECEIVED.add(inPacketLog);
+            return CompletableFuture.completedFuture(null);
+        }, new TailBroadcaster(PACKET_HANDLER.getObjectMapper(), 1024), new RateLimiter(0, 0, 10_000), new LogflowMetrics(), 10, Set.of(), StorageMode.PLAIN);
+        try (var socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        var server = new NioIngestServer(ingestHandler, 2);
+        var thread = new Thread(() -> {
+            try {
+                server.bind(port);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }, "Test Socket Server");
+        thread.setDaemon(true);
+        thread.start();
+        for (int i = 0; i < 100; i++) {
+            try (var ignored = new Socket("localhost", port)) {
+                return;
+            } catch (IOException e) {
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    @Test
+    void answersEveryLineInOrderAcrossPartialWrites() throws IOException, InterruptedException {
+        try (var socket = connect()) {
+            var out = socket.getOutputStream();
+            // Auth and the first logs arrive in one read, the last log is split in the middle of its line
+            out.write((auth(TOKEN) + logLine("ordered 1") + logLine("ordered 2") + logLine("ordered 3")).getBytes(StandardCharsets.UTF_8));
+            var last = logLine("ordered 4").getBytes(StandardCharsets.UTF_8);
+            out.write(last, 0, 20);
+            out.flush();
+            Thread.sleep(50);
+            out.write(last, 20, last.length - 20);
+            out.flush();
+            var in = reader(socket);
+
+            assertTrue(read(in).get("success").asBoolean());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(read(in).get("success").asBoolean());
+            }
+        }
+        var contents = RECEIVED.stream().map(InPacketLog::getContent).filter(content -> content.startsWith("ordered")).toList();
+        assertEquals(List.of("ordered 1", "ordered 2", "ordered 3", "ordered 4"), contents);
+    }
+
+    @Test
+    void skipsInvalidLinesWithoutClosingTheConnection() throws IOException {
+        try (var socket = connect()) {
+            socket.getOutputStream().write((auth(TOKEN) + "not json\n" + logLine("after invalid")).getBytes(StandardCharsets.UTF_8));
+            var in = reader(socket);
+
+            assertTrue(read(in).get("success").asBoolean());
+            // Without pipelining invalid lines are dropped, so the next response belongs to the valid log
+            assertTrue(read(in).get("success").asBoolean());
+        }
+        assertTrue(RECEIVED.stream().anyMatch(inPacketLog -> inPacketLog.getContent().equals("after invalid")));
+    }
+
+    @Test
+    void closesTheConnectionAfterAFailedAuthentication() throws IOException {
+        try (var socket = connect()) {
+            socket.getOutputStream().write((auth("22222222-2222-2222-2222-222222222222") + logLine("unauthenticated")).getBytes(StandardCharsets.UTF_8));
+            var in = reader(socket);
+
+            assertFalse(read(in).get("success").asBoolean());
+            assertNull(in.readLine());
+        }
+        assertTrue(RECEIVED.stream().noneMatch(inPacketLog -> inPacketLog.getContent().equals("unauthenticated")));
+    }
+
+    private static Socket connect() throws IOException {
+        var socket = new Socket("localhost", port);
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static JsonNode read(BufferedReader in) throws IOException {
+        var line = in.readLine();
+        assertTrue(line != null, "Connection closed");
+        return PACKET_HANDLER.getObjectMapper().readTree(line);
+    }
+
+    private static String auth(String token) {
+        return "{\"token\":\"" + token + "\"}\n";
+    }
+
+    private static String logLine(String content) {
+        return "{\"timestamp\":1700000000000,\"level\":\"INFO\",\"source\":\"test\",\"context\":\"app\",\"content\":\""
+                + Base64.getEncoder().encodeToString(content.getBytes(StandardCharsets.UTF_8)) + "\"}\n";
+    }
+
+}
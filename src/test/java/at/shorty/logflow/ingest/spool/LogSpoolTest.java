@@ -0,0 +1,140 @@
+package at.shorty.logflow.ingest.spool;
+
+import at.shorty.logflow.ingest.data.LogSink;
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static at.shorty.logflow.TestLogs.log;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void drainsJournaledLogsInOrder() throws Exception {
+        var sink = new RecordingSink();
+        var spool = new LogSpool(directory, sink, 10, 0, 0);
+        spool.start();
+        for (int i = 0; i < 25; i++) {
+            spool.submit(log("app", "log " + i)).join();
+        }
+        await(() -> sink.contents.size() == 25);
+        spool.close();
+
+        assertEquals("log 0", sink.contents.get(0));
+        assertEquals("log 24", sink.contents.get(24));
+        assertEquals(0, spool.stats().pendingLogs());
+    }
+
+    @Test
+    void replaysUndrainedLogsAfterRestart() throws Exception {
+        var spool = new LogSpool(directory, inPacketLog -> CompletableFuture.failedFuture(new IOException("Store unavailable")), 10, 0, 0);
+        spool.start();
+        spool.submit(log("app", "a")).join();
+        spool.submit(log("app", "b")).join();
+        spool.close();
+
+        var sink = new RecordingSink();
+        var restarted = new LogSpool(directory, sink, 10, 0, 0);
+        assertEquals(2, restarted.stats().pendingLogs());
+        restarted.start();
+        await(() -> sink.contents.size() == 2);
+        restarted.close();
+
+        assertEquals(List.of("a", "b"), sink.contents);
+        // The checkpoint keeps drained logs from being replayed again
+        assertEquals(0, new LogSpool(directory, sink, 10, 0, 0).stats().pendingLogs());
+    }
+
+    @Test
+    void recoversFromATornJournalTail() throws Exception {
+        var spool = new LogSpool(directory, inPacketLog -> CompletableFuture.failedFuture(new IOException("Store unavailable")), 10, 0, 0);
+        spool.start();
+        spool.submit(log("app", "a")).join();
+        spool.close();
+        try (var files = Files.list(directory)) {
+            var journal = files.filter(path -> path.getFileName().toString().startsWith("spool-")).findFirst().orElseThrow();
+            Files.write(journal, new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+        }
+
+        var sink = new RecordingSink();
+        var restarted = new LogSpool(directory, sink, 10, 0, 0);
+        restarted.start();
+        restarted.submit(log("app", "b")).join();
+        await(() -> sink.contents.size() == 2);
+        restarted.close();
+
+        assertEquals(List.of("a", "b"), sink.contents);
+    }
+
+    @Test
+    void deadLettersLogsAfterMaxAttempts() throws Exception {
+        var sink = new RecordingSink();
+        LogSink failingSink = inPacketLog -> inPacketLog.getContent().equals("bad") ? CompletableFuture.failedFuture(new IOException("Invalid log")) : sink.submit(inPacketLog);
+        var spool = new LogSpool(directory, failingSink, 10, 2, 0);
+        spool.start();
+        spool.submit(log("app", "good")).join();
+        spool.submit(log("app", "bad")).join();
+        await(() -> spool.stats().deadLetteredLogs() == 1);
+        spool.submit(log("app", "after")).join();
+        await(() -> sink.contents.size() == 2);
+        spool.close();
+
+        assertEquals(List.of("good", "after"), sink.contents);
+        assertEquals(0, spool.stats().pendingLogs());
+        assertTrue(Files.size(directory.resolve("dead-letter.journal")) > 0);
+    }
+
+    @Test
+    void rejectsLogsOnceTheSpoolIsFull() throws Exception {
+        var spool = new LogSpool(directory, inPacketLog -> CompletableFuture.failedFuture(new IOException("Store unavailable")), 10, 0, 1);
+        spool.start();
+        spool.submit(log("app", "a")).join();
+
+        var rejected = assertThrows(CompletionException.class, () -> spool.submit(log("app", "b")).join());
+        spool.close();
+
+        assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+        assertEquals(1, spool.stats().rejectedLogs());
+        assertEquals(1, spool.stats().pendingLogs());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    private static class RecordingSink implements LogSink {
+
+        private final List<String> contents = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<Void> submit(InPacketLog inPacketLog) {
+            contents.add(inPacketLog.getContent());
+            return CompletableFuture.completedFuture(null);
+        }
+
+    }
+
+}
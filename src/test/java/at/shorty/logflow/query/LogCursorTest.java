@@ -0,0 +1,34 @@
+package at.shorty.logflow.query;
+
+import at.shorty.logflow.log.Level;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LogCursorTest {
+
+    @Test
+    void roundTripsTheLastLogOfAPage() {
+        var storedLog = new StoredLog(42, 1_700_000_000_000L, "test", null, "app", new String[0], null, Level.INFO, "content");
+
+        var cursor = LogCursor.of(storedLog).toString();
+
+        assertEquals("1700000000000:42", cursor);
+        assertEquals(new LogCursor(1_700_000_000_000L, 42), LogCursor.parse(cursor));
+    }
+
+    @Test
+    void parsesSearchCursorsWithoutTimestamp() {
+        assertEquals(new LogCursor(0, 1234), LogCursor.parse("0:1234"));
+    }
+
+    @Test
+    void rejectsMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> LogCursor.parse("1234"));
+        assertThrows(IllegalArgumentException.class, () -> LogCursor.parse("abc:1"));
+        assertThrows(IllegalArgumentException.class, () -> LogCursor.parse("1:"));
+        assertThrows(IllegalArgumentException.class, () -> LogCursor.parse("1:2:3"));
+    }
+
+}
@@ -0,0 +1,202 @@
+package at.shorty.logflow.store;
+
+import at.shorty.logflow.ingest.packet.impl.InPacketLog;
+import at.shorty.logflow.log.Level;
+import at.shorty.logflow.query.LogQuery;
+import at.shorty.logflow.query.StoredLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static at.shorty.logflow.TestLogs.log;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentLogStoreTest {
+
+    private static final int SEGMENT_BYTES = 1024 * 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsRecords() {
+        var inPacketLog = log("app", "content");
+        inPacketLog.setLevel(Level.WARN);
+        inPacketLog.setSourceIp("10.0.0.1");
+        inPacketLog.setTags(new String[]{"db", "slow"});
+
+        var decoded = RecordCodec.decodePacket(ByteBuffer.wrap(RecordCodec.encode(inPacketLog)));
+
+        assertEquals(inPacketLog.getTimestamp(), decoded.getTimestamp());
+        assertEquals(Level.WARN, decoded.getLevel());
+        assertEquals("test", decoded.getSource());
+        assertEquals("10.0.0.1", decoded.getSourceIp());
+        assertEquals("app", decoded.getContext());
+        assertArrayEquals(new String[]{"db", "slow"}, decoded.getTags());
+        assertNull(decoded.getMetadata());
+        assertEquals("content", decoded.getContent());
+    }
+
+    @Test
+    void assignsAscendingIdsAndScansInIdOrder() throws IOException {
+        var logStore = open();
+        var first = logStore.append(List.of(log("app", "a"), log("app", "b")));
+        var second = logStore.append(List.of(log("app", "c")));
+
+        var scanned = new ArrayList<StoredLog>();
+        logStore.scan(1, 10, scanned::add);
+        logStore.close();
+
+        assertArrayEquals(new long[]{1, 2}, first);
+        assertArrayEquals(new long[]{3}, second);
+        assertEquals(List.of(2L, 3L), scanned.stream().map(StoredLog::id).toList());
+        assertEquals("b", scanned.get(0).content());
+    }
+
+    @Test
+    void pagesThroughLogsWithTimestampIdCursors() throws IOException {
+        var logStore = open();
+        var logs = new ArrayList<InPacketLog>();
+        for (int i = 0; i < 50; i++) {
+            // Out of order timestamps with many ties, so the cursor has to break ties by id
+            logs.add(logAt("app", "log " + i, 1_700_000_000_000L + (i * 7) % 5));
+        }
+        logStore.append(logs);
+
+        var pages = new ArrayList<StoredLog>();
+        Long cursorMillis = null;
+        Long cursorId = null;
+        while (true) {
+            var page = new ArrayList<StoredLog>();
+            logStore.read(new LogQuery(null, null, null, null, null, null, null, null, cursorMillis, cursorId, 7), page::add);
+            pages.addAll(page);
+            if (page.size() < 7) {
+                break;
+            }
+            cursorMillis = page.get(page.size() - 1).timestamp();
+            cursorId = page.get(page.size() - 1).id();
+        }
+        logStore.close();
+
+        assertEquals(50, pages.size());
+        assertEquals(50, pages.stream().map(StoredLog::id).distinct().count());
+        for (int i = 1; i < pages.size(); i++) {
+            var previous = pages.get(i - 1);
+            var current = pages.get(i);
+            assertTrue(previous.timestamp() < current.timestamp() || previous.timestamp() == current.timestamp() && previous.id() < current.id());
+        }
+    }
+
+    @Test
+    void filtersByContextLevelAndTimeRange() throws IOException {
+        var logStore = open();
+        var error = logAt("app", "error", 1_700_000_000_010L);
+        error.setLevel(Level.ERROR);
+        logStore.append(List.of(logAt("app", "early", 1_700_000_000_000L), error, logAt("other", "other", 1_700_000_000_010L), logAt("app", "late", 1_700_000_000_020L)));
+
+        var contextResults = new ArrayList<StoredLog>();
+        logStore.read(new LogQuery(null, List.of("app"), null, null, null, null, 1_700_000_000_005L, 1_700_000_000_020L, null, null, 10), contextResults::add);
+        var levelResults = new ArrayList<StoredLog>();
+        logStore.read(new LogQuery(null, null, null, List.of(Level.ERROR), null, null, null, null, null, null, 10), levelResults::add);
+        logStore.close();
+
+        assertEquals(List.of("error"), contextResults.stream().map(StoredLog::content).toList());
+        assertEquals(List.of("error"), levelResults.stream().map(StoredLog::content).toList());
+    }
+
+    @Test
+    void sealsFullSegmentsAndReadsThemAfterReopening() throws IOException {
+        var logStore = open();
+        var content = "x".repeat(1000);
+        for (int i = 0; i < 30; i++) {
+            var batch = new ArrayList<InPacketLog>();
+            for (int j = 0; j < 100; j++) {
+                batch.add(log("app", content + (i * 100 + j)));
+            }
+            logStore.append(batch);
+        }
+        logStore.close();
+
+        try (var files = Files.list(directory)) {
+            assertTrue(files.anyMatch(path -> path.getFileName().toString().endsWith(".seg")));
+        }
+        var reopened = open();
+        var scanned = new ArrayList<StoredLog>();
+        reopened.scan(0, 10_000, scanned::add);
+        var next = reopened.append(List.of(log("app", "next")));
+        reopened.close();
+
+        assertEquals(3000, scanned.size());
+        assertEquals(content + 2999, scanned.get(2999).content());
+        assertArrayEquals(new long[]{3001}, next);
+    }
+
+    @Test
+    void truncatesATornRecordOnRecovery() throws IOException {
+        var logStore = open();
+        logStore.append(List.of(log("app", "a"), log("app", "b"), log("app", "c")));
+        logStore.close();
+        corruptLastRecord(directory.resolve(ActiveSegment.fileName(1)));
+
+        var reopened = open();
+        var scanned = new ArrayList<StoredLog>();
+        reopened.scan(0, 10, scanned::add);
+        var next = reopened.append(List.of(log("app", "d")));
+        scanned.clear();
+        reopened.scan(0, 10, scanned::add);
+        reopened.close();
+
+        assertArrayEquals(new long[]{3}, next);
+        assertEquals(List.of("a", "b", "d"), scanned.stream().map(StoredLog::content).toList());
+    }
+
+    @Test
+    void keepsIdsAscendingWhenOnlyAnEmptySegmentIsLeft() throws IOException {
+        // As left behind when retention deleted every sealed segment before anything was appended to the active one
+        ActiveSegment.create(directory, 42, SEGMENT_BYTES);
+
+        open().close();
+        var reopened = open();
+        var next = reopened.append(List.of(log("app", "a")));
+        reopened.close();
+
+        assertArrayEquals(new long[]{42}, next);
+    }
+
+    private SegmentLogStore open() throws IOException {
+        return new SegmentLogStore(directory, SEGMENT_BYTES, 0, null, null);
+    }
+
+    private static InPacketLog logAt(String context, String content, long timestamp) {
+        var inPacketLog = log(context, content);
+        inPacketLog.setTimestamp(new Date(timestamp));
+        return inPacketLog;
+    }
+
+    private static void corruptLastRecord(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            var position = 0;
+            while (buffer.getInt(position) != 0) {
+                position += RecordCodec.HEADER_BYTES + buffer.getInt(position);
+            }
+            // Flip a byte of the last record's payload, as if the write was torn by a crash
+            var offset = position - 1;
+            buffer.put(offset, (byte) (buffer.get(offset) ^ 0xFF));
+            buffer.force();
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+package at.shorty.logflow.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StringInternerTest {
+
+    @Test
+    void returnsTheCachedInstanceForEqualCharacters() {
+        var stringInterner = new StringInterner(16);
+
+        var first = stringInterner.intern("xxcontextyy".toCharArray(), 2, 7);
+        var second = stringInterner.intern("context".toCharArray(), 0, 7);
+
+        assertEquals("context", first);
+        assertSame(first, second);
+    }
+
+    @Test
+    void replacesCollidingEntriesWithoutMixingThemUp() {
+        // A table with two slots forces most of these strings into the same slot
+        var stringInterner = new StringInterner(2);
+        for (int i = 0; i < 100; i++) {
+            var value = "value-" + i;
+            assertEquals(value, stringInterner.intern(value.toCharArray(), 0, value.length()));
+        }
+        // "Aa" and "BB" have the same hash code
+        var aa = stringInterner.intern("Aa".toCharArray(), 0, 2);
+        var bb = stringInterner.intern("BB".toCharArray(), 0, 2);
+        assertEquals("Aa", aa);
+        assertEquals("BB", bb);
+        assertNotSame(aa, stringInterner.intern("Aa".toCharArray(), 0, 2));
+    }
+
+}